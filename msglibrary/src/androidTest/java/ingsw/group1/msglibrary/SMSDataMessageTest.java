@@ -0,0 +1,63 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ingsw.group1.msglibrary.exceptions.InvalidMessageException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SMSDataMessageTest {
+
+    private SMSPeer peer;
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final byte[] EX_VALID_DATA = {0, 1, 2, (byte) 0xFF};
+
+    @Before
+    public void createValidPeer(){
+        peer = new SMSPeer(EX_VALID_ADDRESS);
+    }
+
+    @Test
+    public void isDataValidNull(){
+        assertEquals(
+                SMSMessage.MessageValidity.MESSAGE_EMPTY,
+                SMSDataMessage.isDataValid(null)
+        );
+    }
+
+    @Test
+    public void isDataValidTooLong(){
+        assertEquals(
+                SMSMessage.MessageValidity.MESSAGE_TOO_LONG,
+                SMSDataMessage.isDataValid(new byte[SMSDataMessage.MAX_DATA_LENGTH + 1])
+        );
+    }
+
+    @Test
+    public void isDataValid(){
+        assertEquals(
+                SMSMessage.MessageValidity.MESSAGE_VALID,
+                SMSDataMessage.isDataValid(new byte[SMSDataMessage.MAX_DATA_LENGTH])
+        );
+    }
+
+    @Test(expected = InvalidMessageException.class)
+    public void constructorFails(){
+        new SMSDataMessage(peer, new byte[0]);
+    }
+
+    @Test
+    public void dataIsCopied(){
+        byte[] data = EX_VALID_DATA.clone();
+        SMSDataMessage message = new SMSDataMessage(peer, data);
+        data[0] = 42;
+        assertArrayEquals(EX_VALID_DATA, message.getData());
+        assertTrue(message.isValid());
+    }
+}
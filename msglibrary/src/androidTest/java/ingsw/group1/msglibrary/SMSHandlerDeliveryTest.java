@@ -0,0 +1,59 @@
+package ingsw.group1.msglibrary;
+
+import android.content.Context;
+
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class SMSHandlerDeliveryTest {
+
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final SMSMessage EX_MESSAGE =
+            new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), SMSHandler.APP_KEY + "body");
+
+    private SMSHandler handler;
+
+    @Before
+    public void createHandler(){
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        handler = new SMSHandler(context);
+    }
+
+    @After
+    public void destroyHandler(){
+        handler.onContextDestroyed();
+    }
+
+    @Test
+    public void notDeliveredWithoutListeners(){
+        assertFalse(SMSHandler.deliverReceived(new SMSMessage[]{EX_MESSAGE}));
+    }
+
+    @Test
+    public void deliveredDirectlyToListener() throws InterruptedException{
+        final CountDownLatch received = new CountDownLatch(1);
+        handler.addReceivedListener(new ReceivedMessageListener<SMSMessage>() {
+            @Override
+            public void onMessageReceived(SMSMessage message) {
+                if(message == EX_MESSAGE) received.countDown();
+            }
+        }, false);
+        assertTrue(SMSHandler.deliverReceived(new SMSMessage[]{EX_MESSAGE}));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+    }
+}
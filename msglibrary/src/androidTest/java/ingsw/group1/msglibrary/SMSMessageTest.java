@@ -52,6 +52,27 @@ public class SMSMessageTest {
         );
     }
 
+    @Test
+    public void isMultipartMessageValidTooLong(){
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() <= SMSMessage.MAX_MULTIPART_MESSAGE_LENGTH) sb.append(sb.length());
+        assertEquals(
+                SMSMessage.MessageValidity.MESSAGE_TOO_LONG,
+                SMSMessage.isMultipartMessageValid(sb.toString())
+        );
+    }
+
+    @Test
+    public void isMultipartMessageValid(){
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() <= SMSMessage.MAX_MESSAGE_LENGTH) sb.append('a');
+        assertEquals(
+                SMSMessage.MessageValidity.MESSAGE_VALID,
+                SMSMessage.isMultipartMessageValid(sb.toString())
+        );
+        assertTrue(new SMSMessage(peer, sb.toString()).isMultipart());
+    }
+
     @Test
     public void isMessageValid(){
         assertEquals(
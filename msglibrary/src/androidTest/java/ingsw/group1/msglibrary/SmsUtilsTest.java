@@ -53,4 +53,29 @@ public class SmsUtilsTest {
         String message = "Hello" + SMSHandler.APP_KEY;
         assertFalse(SmsUtils.isMessagePertinent(message));
     }
+
+    @Test
+    public void isMessagePertinentShort(){
+        assertFalse(SmsUtils.isMessagePertinent(""));
+        assertFalse(SmsUtils.isMessagePertinent("<#"));
+        assertFalse(SmsUtils.isMessagePertinent((String) null));
+    }
+
+    @Test
+    public void isMessageUrgentTrue(){
+        String message = SMSHandler.APP_KEY + "Hello" + SMSHandler.WAKE_KEY;
+        assertTrue(SmsUtils.isMessageUrgent(message));
+    }
+
+    @Test
+    public void isMessageUrgentFalse(){
+        String message = SMSHandler.APP_KEY + SMSHandler.WAKE_KEY + "Hello";
+        assertFalse(SmsUtils.isMessageUrgent(message));
+        assertFalse(SmsUtils.isMessageUrgent(null));
+    }
+
+    @Test
+    public void assembleNoParts(){
+        assertEquals(0, SmsUtils.assemblePertinentMessages(null).length);
+    }
 }
\ No newline at end of file
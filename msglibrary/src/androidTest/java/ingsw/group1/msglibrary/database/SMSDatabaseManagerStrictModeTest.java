@@ -0,0 +1,123 @@
+package ingsw.group1.msglibrary.database;
+
+import android.content.Context;
+import android.os.StrictMode;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ingsw.group1.msglibrary.SMSMessage;
+import ingsw.group1.msglibrary.SMSPeer;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Test checking that the asynchronous methods of SMSDatabaseManager never touch the disk on the
+ * main Thread. StrictMode is set to kill the process on any disk access from the main Thread, so
+ * the test runs on a database file configured like the one of getInstance.
+ * @author Riccardo De Zen
+ */
+@RunWith(AndroidJUnit4.class)
+public class SMSDatabaseManagerStrictModeTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final String TEST_DB_NAME = "strict-mode-test-db";
+
+    private SMSDatabaseManager database;
+
+    /**
+     * Deleting the file left by a previous run gives every test an empty database.
+     */
+    @Before
+    public void deleteDatabase() {
+        ApplicationProvider.getApplicationContext().deleteDatabase(TEST_DB_NAME);
+    }
+
+    @Test
+    public void asyncMethods_noDiskAccessOnMainThread() throws InterruptedException {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final CountDownLatch written = new CountDownLatch(1);
+        final CountDownLatch counted = new CountDownLatch(1);
+        final boolean[] writeSuccessful = {false};
+        final int[] count = {-1};
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectAll()
+                        .penaltyDeath()
+                        .build());
+                database = SMSDatabaseManager.openFileInstance(context, TEST_DB_NAME);
+                database.addSMSAsync(new WriteCallback() {
+                    @Override
+                    public void onWriteFinished(boolean successful) {
+                        writeSuccessful[0] = successful;
+                        written.countDown();
+                    }
+                }, new SMSMessage(new SMSPeer("+39892424"), "text"));
+            }
+        });
+        assertTrue(written.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(writeSuccessful[0]);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                database.countAsync(new QueryCallback<Integer>() {
+                    @Override
+                    public void onQueryFinished(Integer result) {
+                        count[0] = result;
+                        counted.countDown();
+                    }
+
+                    @Override
+                    public void onQueryFailed(Exception error) {
+                        counted.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue(counted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, count[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void syncMethods_refusedOnMainThread() throws Throwable {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final Throwable[] failure = new Throwable[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    database = SMSDatabaseManager.openFileInstance(context, TEST_DB_NAME);
+                    database.count();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX);
+            }
+        });
+        if (database != null) database.close();
+        database = null;
+        ApplicationProvider.getApplicationContext().deleteDatabase(TEST_DB_NAME);
+    }
+}
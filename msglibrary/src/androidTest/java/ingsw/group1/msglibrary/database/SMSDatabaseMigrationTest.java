@@ -0,0 +1,80 @@
+package ingsw.group1.msglibrary.database;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import ingsw.group1.msglibrary.SMSMessage;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Test for the migrations of SMSDatabase, checked against the exported schemas.
+ * @author Riccardo De Zen
+ */
+@RunWith(AndroidJUnit4.class)
+public class SMSDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+    private static final String ADDRESS = "+39892424";
+    private static final String BODY = "text";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            SMSDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory()
+    );
+
+    /**
+     * Test for the migration from version 1, stored messages are kept and get the default values
+     */
+    @Test
+    public void migrate1To2_keepsMessages() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+        db.execSQL("INSERT INTO " + SMSMessage.SMS_TABLE_NAME + " (id, address, message) VALUES (1, '"
+                + ADDRESS + "', '" + BODY + "')");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 2, true, SMSDatabase.MIGRATION_1_2);
+        Cursor cursor = db.query("SELECT address, message, received_at, priority FROM " + SMSMessage.SMS_TABLE_NAME);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(ADDRESS, cursor.getString(0));
+        assertEquals(BODY, cursor.getString(1));
+        assertEquals(0, cursor.getLong(2));
+        assertEquals(0, cursor.getInt(3));
+        cursor.close();
+    }
+
+    /**
+     * Test for the migration from version 1 as run by Room, which checks the result against the
+     * entities it was compiled with
+     */
+    @Test
+    public void migrate1To2_openedByRoom() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+        db.execSQL("INSERT INTO " + SMSMessage.SMS_TABLE_NAME + " (id, address, message) VALUES (1, '"
+                + ADDRESS + "', '" + BODY + "')");
+        db.close();
+
+        SMSDatabase database = Room.databaseBuilder(ApplicationProvider.getApplicationContext(),
+                SMSDatabase.class, TEST_DB)
+                .addMigrations(SMSDatabase.MIGRATION_1_2)
+                .build();
+        assertEquals(1, database.access().count());
+        helper.closeWhenFinished(database);
+    }
+}
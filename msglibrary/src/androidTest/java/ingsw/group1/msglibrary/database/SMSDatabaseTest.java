@@ -96,5 +96,62 @@ public class SMSDatabaseTest {
         int countAfterDelete = countBeforeDelete-1;
         assertEquals(countAfterDelete, dbAccess.count());
     }
-}
 
+    /**
+     * Test for the lookup of the messages coming from a single Peer
+     */
+    @Test
+    public void getByPeer_onlyMessagesFromPeer() {
+        SMSDao dbAccess = smsDatabase.access();
+        SMSPeer otherPeer = new SMSPeer("+39892425");
+        dbAccess.insert(
+                new SMSMessage(0, peer, bodyMessage, 20, false),
+                new SMSMessage(0, otherPeer, bodyMessage, 10, false),
+                new SMSMessage(0, peer, bodyMessage, 10, true)
+        );
+        List<SMSMessage> messages = dbAccess.getByPeer(peer);
+        assertEquals(2, messages.size());
+        assertEquals(2, dbAccess.countByPeer(peer));
+        assertEquals(10, messages.get(0).getReceivedAt());
+        assertEquals(true, messages.get(0).isPriority());
+    }
+
+    /**
+     * Test for the paged drain of the messages coming from a single Peer
+     */
+    @Test
+    public void getPageByPeer_otherPeersUntouched() {
+        SMSDao dbAccess = smsDatabase.access();
+        SMSPeer otherPeer = new SMSPeer("+39892425");
+        dbAccess.insert(
+                new SMSMessage(1, peer, bodyMessage),
+                new SMSMessage(2, otherPeer, bodyMessage),
+                new SMSMessage(3, peer, bodyMessage),
+                new SMSMessage(4, peer, bodyMessage)
+        );
+        int lastId = dbAccess.getMaxId();
+        assertEquals(3, dbAccess.countByPeerUpTo(peer, lastId));
+        List<SMSMessage> page = dbAccess.getPageByPeer(peer, 0, lastId, 2);
+        assertEquals(2, page.size());
+        assertEquals(3, page.get(1).getId());
+        assertEquals(2, dbAccess.deleteRangeByPeer(peer, 0, 3));
+        assertEquals(1, dbAccess.countByPeer(peer));
+        assertEquals(1, dbAccess.countByPeer(otherPeer));
+    }
+
+    /**
+     * Test for the lookup of the messages received in a time range
+     */
+    @Test
+    public void getReceivedBetween_rangeIsHalfOpen() {
+        SMSDao dbAccess = smsDatabase.access();
+        dbAccess.insert(
+                new SMSMessage(0, peer, bodyMessage, 10, false),
+                new SMSMessage(0, peer, bodyMessage, 20, false),
+                new SMSMessage(0, peer, bodyMessage, 30, false)
+        );
+        List<SMSMessage> messages = dbAccess.getReceivedBetween(10, 30);
+        assertEquals(2, messages.size());
+        assertEquals(20, messages.get(1).getReceivedAt());
+    }
+}
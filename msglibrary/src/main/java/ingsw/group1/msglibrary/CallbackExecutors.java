@@ -0,0 +1,106 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class providing the Executors listeners can be registered with, deciding the Thread their
+ * callbacks run on.
+ * @author Riccardo De Zen
+ */
+public final class CallbackExecutors {
+
+    private static final String SERIAL_THREAD_NAME = "SMSCallbackSerial-";
+    private static final String POOL_THREAD_NAME = "SMSCallbackPool-";
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private static ExecutorService parallelPool;
+
+    private CallbackExecutors(){
+    }
+
+    /**
+     * @return an Executor running callbacks on the Thread producing the event, which must not be
+     * blocked by the callback.
+     */
+    @NonNull
+    public static Executor sameThread(){
+        return SAME_THREAD;
+    }
+
+    /**
+     * @return an Executor running callbacks on the main Thread, in order.
+     */
+    @NonNull
+    public static Executor mainThread(){
+        return MainThreadExecutor.getInstance();
+    }
+
+    /**
+     * Method to create an Executor running callbacks on a dedicated background Thread, one at a time
+     * and in order. The Thread is a daemon Thread, it ends with the process.
+     * @return a new serial background Executor.
+     */
+    @NonNull
+    public static Executor newSerialBackground(){
+        return Executors.newSingleThreadExecutor(newThreadFactory(SERIAL_THREAD_NAME));
+    }
+
+    /**
+     * @return an Executor shared by the whole library, running callbacks on a pool of background
+     * Threads as large as the number of processors. Callbacks can run concurrently and out of order.
+     */
+    @NonNull
+    public static synchronized Executor parallelPool(){
+        if(parallelPool == null){
+            parallelPool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    newThreadFactory(POOL_THREAD_NAME)
+            );
+        }
+        return parallelPool;
+    }
+
+    /**
+     * @param handler the Handler the callbacks should be posted to.
+     * @return an Executor running callbacks on the Thread of the Handler, in order.
+     */
+    @NonNull
+    public static Executor fromHandler(@NonNull final Handler handler){
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * @param prefix the prefix of the names of the created Threads.
+     * @return a ThreadFactory creating daemon Threads.
+     */
+    private static ThreadFactory newThreadFactory(final String prefix){
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
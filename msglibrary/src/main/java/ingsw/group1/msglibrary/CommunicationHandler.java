@@ -13,6 +13,21 @@ public abstract class CommunicationHandler<M extends Message> {
      */
     public abstract boolean sendMessage(M message);
 
+    /**
+     * method to send a Message to its associated Peer without waiting for the outcome. By default the
+     * message is sent through {@link #sendMessage(Message)} and the outcome is not tracked: the
+     * futures of the handle are completed right away with {@link SendResult#RESULT_UNTRACKED} if the
+     * message has been sent, {@link SendResult#RESULT_REJECTED} otherwise.
+     * @param message the valid message to send
+     * @return a handle whose futures are completed when the message is sent and delivered, or
+     * immediately if the message is invalid or cannot be sent
+     */
+    public SendHandle<M> sendMessageAsync(M message){
+        SendHandle<M> handle = new SendHandle<>(message);
+        handle.onNotSent(sendMessage(message) ? SendResult.RESULT_UNTRACKED : SendResult.RESULT_REJECTED);
+        return handle;
+    }
+
     /**
      * method that adds a listener to wait for incoming messages directed to the library
      * @param listener the listener to wake up when a message is received
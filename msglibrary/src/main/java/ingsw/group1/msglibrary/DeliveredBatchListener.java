@@ -0,0 +1,17 @@
+package ingsw.group1.msglibrary;
+
+import java.util.List;
+
+/**
+ * Listener receiving the delivery reports of sent messages in batches instead of one by one.
+ * @author Riccardo De Zen
+ * @param <M> The type of Message delivered.
+ */
+public interface DeliveredBatchListener<M extends Message> {
+    /**
+     * Called when the delivery reports for a batch of messages have arrived
+     * @param results the messages with the result code of their deliver operation, in order of
+     *                arrival, never empty
+     */
+    void onMessagesDelivered(List<MessageResult<M>> results);
+}
@@ -0,0 +1,153 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Class coalescing events into batches. A batch is handed over when the time window opened by its
+ * first event ends or as soon as it reaches its maximum size, whichever comes first. Every batch,
+ * including the ones handed over by {@link #flush()}, reaches the {@link Sink} through the same
+ * Executor, the main Thread unless stated otherwise, so the Sink is always called on one Thread.
+ * @author Riccardo De Zen
+ * @param <E> The type of the events.
+ */
+class EventBatcher<E> {
+
+    private static final String WINDOW_ERROR = "The window must be at least 0 milliseconds.";
+    private static final String SIZE_ERROR = "The maximum batch size must be at least 1.";
+
+    /**
+     * Interface for the object receiving the batches.
+     */
+    interface Sink<E> {
+        /**
+         * @param batch the events, in the order they were added, never empty.
+         */
+        void onBatch(List<E> batch);
+    }
+
+    private final Sink<E> sink;
+    private final Executor executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private List<E> pending = new ArrayList<>();
+    private long windowMillis;
+    private int maxSize;
+
+    /**
+     * @param sink the object receiving the batches.
+     * @param windowMillis how long the first event of a batch can wait for others.
+     * @param maxSize the number of events causing a batch to be handed over immediately.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    EventBatcher(@NonNull Sink<E> sink, long windowMillis, int maxSize){
+        this(sink, windowMillis, maxSize, MainThreadExecutor.getInstance());
+    }
+
+    /**
+     * @param sink the object receiving the batches.
+     * @param windowMillis how long the first event of a batch can wait for others.
+     * @param maxSize the number of events causing a batch to be handed over immediately.
+     * @param executor the Executor the batches are handed over on.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    EventBatcher(@NonNull Sink<E> sink, long windowMillis, int maxSize, @NonNull Executor executor){
+        this.sink = sink;
+        this.executor = executor;
+        setWindow(windowMillis, maxSize);
+    }
+
+    /**
+     * Method to change the window, applied starting from the next batch.
+     * @param windowMillis how long the first event of a batch can wait for others.
+     * @param maxSize the number of events causing a batch to be handed over immediately.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    synchronized void setWindow(long windowMillis, int maxSize){
+        checkWindow(windowMillis, maxSize);
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Method to check the parameters of a window.
+     * @param windowMillis how long the first event of a batch can wait for others.
+     * @param maxSize the number of events causing a batch to be handed over immediately.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    static void checkWindow(long windowMillis, int maxSize){
+        if(windowMillis < 0) throw new IllegalArgumentException(WINDOW_ERROR);
+        if(maxSize < 1) throw new IllegalArgumentException(SIZE_ERROR);
+    }
+
+    /**
+     * Method to add an event to the current batch, opening a new one if needed.
+     * @param event the event.
+     */
+    void add(E event){
+        List<E> full = null;
+        synchronized(this){
+            pending.add(event);
+            if(pending.size() >= maxSize){
+                handler.removeCallbacks(flushTask);
+                full = takePending();
+            }
+            else if(pending.size() == 1) handler.postDelayed(flushTask, windowMillis);
+        }
+        if(full != null) handOver(full);
+    }
+
+    /**
+     * Method to hand the current batch over immediately, through the Executor of the batcher. Does
+     * nothing if no event is waiting.
+     */
+    void flush(){
+        List<E> batch;
+        synchronized(this){
+            handler.removeCallbacks(flushTask);
+            if(pending.isEmpty()) return;
+            batch = takePending();
+        }
+        handOver(batch);
+    }
+
+    /**
+     * Method to hand a batch to the Sink on the Executor of the batcher.
+     * @param batch the batch.
+     */
+    private void handOver(final List<E> batch){
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                sink.onBatch(batch);
+            }
+        });
+    }
+
+    /**
+     * @return the number of events waiting in the current batch.
+     */
+    synchronized int size(){
+        return pending.size();
+    }
+
+    /**
+     * @return the current batch, replaced by an empty one.
+     */
+    private List<E> takePending(){
+        List<E> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+}
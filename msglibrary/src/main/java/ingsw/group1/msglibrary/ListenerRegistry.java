@@ -0,0 +1,202 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free copy-on-write registry of listeners, each one registered by an owner.
+ * Readers only take a snapshot of the registered listeners with a single volatile read, so
+ * notifying them never blocks and never sees a registration half done. Every change copies the
+ * snapshot and publishes the copy with a compare-and-set, retrying if another change came first.
+ * Listeners can be held through a WeakReference, so that an Activity registered as a listener and
+ * never removed can still be collected. Collected listeners are dropped the next time they are met.
+ * Each listener can be registered with an Executor its notifications are run on.
+ * @author Riccardo De Zen
+ * @param <L> The type of the listeners.
+ */
+class ListenerRegistry<L> {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    /**
+     * Interface for the action performed on every listener when notifying them.
+     */
+    interface Action<L> {
+        /**
+         * @param listener a live listener.
+         */
+        void run(L listener);
+    }
+
+    /**
+     * Class holding a listener, strongly or weakly, together with its owner and its Executor.
+     */
+    private static class Entry {
+        private final Object owner;
+        private final Object strongListener;
+        private final WeakReference<Object> weakListener;
+        //Null when the listener is notified on the calling Thread.
+        private final Executor executor;
+
+        private Entry(Object owner, Object listener, boolean weak, Executor executor){
+            this.owner = owner;
+            this.executor = executor;
+            this.strongListener = weak ? null : listener;
+            this.weakListener = weak ? new WeakReference<>(listener) : null;
+        }
+
+        /**
+         * @return the listener, null if it was weakly held and has been collected.
+         */
+        private Object get(){
+            return weakListener != null ? weakListener.get() : strongListener;
+        }
+    }
+
+    private final AtomicReference<Entry[]> entries = new AtomicReference<>(EMPTY);
+
+    /**
+     * Method to register a listener. A listener is registered at most once for each owner.
+     * @param owner the object the listener is registered by.
+     * @param listener the listener.
+     * @param weak whether the listener should be held through a WeakReference.
+     * @return true if the listener has been registered, false if it already was for this owner.
+     */
+    boolean add(@NonNull Object owner, @NonNull L listener, boolean weak){
+        return add(owner, listener, weak, null);
+    }
+
+    /**
+     * Method to register a listener notified through an Executor. A listener is registered at most
+     * once for each owner.
+     * @param owner the object the listener is registered by.
+     * @param listener the listener.
+     * @param weak whether the listener should be held through a WeakReference.
+     * @param executor the Executor notifications are run on, null to run them on the calling Thread.
+     * @return true if the listener has been registered, false if it already was for this owner.
+     */
+    boolean add(@NonNull Object owner, @NonNull L listener, boolean weak, Executor executor){
+        Entry entry = new Entry(owner, listener, weak, executor);
+        while(true){
+            Entry[] current = entries.get();
+            for(Entry existing : current){
+                if(existing.owner == owner && existing.get() == listener) return false;
+            }
+            Entry[] updated = new Entry[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = entry;
+            if(entries.compareAndSet(current, updated)) return true;
+        }
+    }
+
+    /**
+     * Method to unregister a listener.
+     * @param owner the object the listener was registered by.
+     * @param listener the listener.
+     * @return true if the listener was registered for this owner, false otherwise.
+     */
+    boolean remove(@NonNull Object owner, @NonNull L listener){
+        return removeWhere(owner, listener, false);
+    }
+
+    /**
+     * Method to unregister all the listeners of an owner.
+     * @param owner the object the listeners were registered by.
+     */
+    void removeAll(@NonNull Object owner){
+        removeWhere(owner, null, false);
+    }
+
+    /**
+     * @return true if no listener is registered, only takes a single volatile read. Weakly held
+     * listeners that have been collected but not yet dropped still count.
+     */
+    boolean isEmpty(){
+        return entries.get().length == 0;
+    }
+
+    /**
+     * @return true if at least one registered listener has not been collected.
+     */
+    boolean hasLiveListeners(){
+        for(Entry entry : entries.get()){
+            if(entry.get() != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param owner the object the listeners are registered by.
+     * @return true if at least one listener, live or collected, is registered by the owner.
+     */
+    boolean hasListeners(@NonNull Object owner){
+        for(Entry entry : entries.get()){
+            if(entry.owner == owner) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to notify all the live listeners of an owner, on their Executor or on the calling Thread
+     * if they have none. The listeners are the ones registered when the method is called, changes
+     * made by the listeners themselves apply from the next call. Collected listeners are dropped.
+     * @param owner the object the listeners are registered by.
+     * @param action the action to perform on every listener.
+     * @return the number of listeners notified.
+     */
+    @SuppressWarnings("unchecked")
+    int forEach(@NonNull Object owner, @NonNull final Action<L> action){
+        int notified = 0;
+        boolean collected = false;
+        for(Entry entry : entries.get()){
+            if(entry.owner != owner) continue;
+            Object listener = entry.get();
+            if(listener == null){
+                collected = true;
+                continue;
+            }
+            if(entry.executor == null) action.run((L) listener);
+            else{
+                //The Runnable keeps a weakly held listener alive until it has been notified.
+                final L held = (L) listener;
+                entry.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        action.run(held);
+                    }
+                });
+            }
+            notified++;
+        }
+        if(collected) removeWhere(owner, null, true);
+        return notified;
+    }
+
+    /**
+     * Method to unregister the listeners of an owner matching the given criteria.
+     * @param owner the object the listeners were registered by.
+     * @param listener the listener to remove, null to remove all of them.
+     * @param collectedOnly whether only collected listeners should be removed.
+     * @return true if at least one listener was removed.
+     */
+    private boolean removeWhere(Object owner, Object listener, boolean collectedOnly){
+        while(true){
+            Entry[] current = entries.get();
+            int kept = 0;
+            Entry[] updated = new Entry[current.length];
+            for(Entry entry : current){
+                Object held = entry.get();
+                boolean matches = entry.owner == owner
+                        && (collectedOnly ? held == null : listener == null || held == listener);
+                if(!matches) updated[kept++] = entry;
+            }
+            if(kept == current.length) return false;
+            Entry[] trimmed = kept == 0 ? EMPTY : new Entry[kept];
+            System.arraycopy(updated, 0, trimmed, 0, kept);
+            if(entries.compareAndSet(current, trimmed)) return true;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor running tasks on the main Thread, in the order they are submitted.
+ * @author Riccardo De Zen
+ */
+class MainThreadExecutor implements Executor {
+
+    private static final MainThreadExecutor instance = new MainThreadExecutor();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor(){
+    }
+
+    /**
+     * @return the only instance of this class.
+     */
+    static MainThreadExecutor getInstance(){
+        return instance;
+    }
+
+    /**
+     * @param command the task to run on the main Thread.
+     */
+    @Override
+    public void execute(@NonNull Runnable command){
+        handler.post(command);
+    }
+}
@@ -0,0 +1,47 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Class pairing a message with the result code of an operation on it, used to report sent and
+ * delivered events in batches.
+ * @author Riccardo De Zen
+ * @param <M> The type of Message.
+ */
+public final class MessageResult<M extends Message> {
+
+    private final int resultCode;
+    private final M message;
+
+    /**
+     * @param resultCode result code of the operation (success or failure)
+     * @param message the message the operation was performed on
+     */
+    MessageResult(int resultCode, @NonNull M message){
+        this.resultCode = resultCode;
+        this.message = message;
+    }
+
+    /**
+     * @return result code of the operation (success or failure)
+     */
+    public int getResultCode(){
+        return resultCode;
+    }
+
+    /**
+     * @return the message the operation was performed on
+     */
+    @NonNull
+    public M getMessage(){
+        return message;
+    }
+
+    /**
+     * @return the String type representation of this object
+     */
+    @NonNull
+    public String toString(){
+        return "Result: "+resultCode+"; Message: "+message.toString();
+    }
+}
@@ -0,0 +1,342 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Subscription handing events to a {@link MessageSubscriber} only as fast as it asks for them.
+ * Events arriving while there is no demand wait in a buffer, handled according to a
+ * {@link StreamOverflowPolicy} when full. The subscriber is called by a single task at a time on the
+ * given Executor, so it is never called concurrently. A subscriber throwing from onNext ends the
+ * stream, receiving what it threw through onError.
+ * A stream can have a {@link Backlog} of older events, handed over before the offered ones. Backlog
+ * events are read only when the subscriber asks for them and are never dropped.
+ * @author Riccardo De Zen
+ * @param <E> The type of the events.
+ */
+class MessageStream<E> implements MessageSubscription {
+
+    private static final String CAPACITY_ERROR = "The capacity of the stream must be at least 1.";
+    private static final String REQUEST_ERROR = "The number of requested events must be positive.";
+
+    /**
+     * Interface for a source of events older than the ones offered to the stream.
+     * @param <E> The type of the events.
+     */
+    interface Backlog<E> {
+        /**
+         * Method to read more events and hand them to {@link #onBacklogRead(List)}, on any Thread.
+         * An empty list means the backlog is exhausted.
+         * @param max the maximum number of events to read.
+         * @param stream the stream the events are handed to.
+         */
+        void read(int max, @NonNull MessageStream<E> stream);
+
+        /**
+         * Method called once an event read from the backlog has been handed to the subscriber.
+         * @param event the event.
+         */
+        void delivered(@NonNull E event);
+
+        /**
+         * Method called once when the stream stops reading from the backlog. Events read and not
+         * handed over must be kept for someone else.
+         */
+        void close();
+    }
+
+    private final MessageSubscriber<? super E> subscriber;
+    private final StreamOverflowPolicy policy;
+    private final int capacity;
+    private final Executor executor;
+    //Called once when the stream stops, to detach it from the source of the events.
+    private final Runnable onStop;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private final ArrayDeque<E> buffer = new ArrayDeque<>();
+    //Null once exhausted or detached.
+    private Backlog<E> backlog;
+    private final ArrayDeque<E> backlogBuffer = new ArrayDeque<>();
+    private boolean reading = false;
+    private boolean subscribed = false;
+    private boolean draining = false;
+    private boolean stopped = false;
+    private boolean completing = false;
+    private Throwable error;
+    private long demand = 0;
+    private long dropped = 0;
+
+    /**
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with events arriving while the buffer is full.
+     * @param capacity the maximum number of events waiting in the buffer.
+     * @param executor the Executor the subscriber is called on.
+     * @param onStop called once when the stream is cancelled or ends.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    MessageStream(@NonNull MessageSubscriber<? super E> subscriber, @NonNull StreamOverflowPolicy policy,
+                  int capacity, @NonNull Executor executor, @NonNull Runnable onStop){
+        this(subscriber, policy, capacity, executor, onStop, null);
+    }
+
+    /**
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with events arriving while the buffer is full.
+     * @param capacity the maximum number of events waiting in the buffer.
+     * @param executor the Executor the subscriber is called on.
+     * @param onStop called once when the stream is cancelled or ends.
+     * @param backlog the events handed over before the offered ones, can be null.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    MessageStream(@NonNull MessageSubscriber<? super E> subscriber, @NonNull StreamOverflowPolicy policy,
+                  int capacity, @NonNull Executor executor, @NonNull Runnable onStop, Backlog<E> backlog){
+        if(capacity < 1) throw new IllegalArgumentException(CAPACITY_ERROR);
+        this.subscriber = subscriber;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.onStop = onStop;
+        this.backlog = backlog;
+    }
+
+    /**
+     * Method to hand the subscription to the subscriber, events offered before are kept for it.
+     */
+    void start(){
+        synchronized(this){
+            draining = true;
+        }
+        executor.execute(drainTask);
+    }
+
+    /**
+     * Method to add an event to the stream, never blocks.
+     * @param event the event.
+     * @return false if the stream has stopped or the event has been discarded, true otherwise.
+     */
+    boolean offer(@NonNull E event){
+        synchronized(this){
+            if(stopped || completing) return false;
+            if(policy != StreamOverflowPolicy.BUFFER && buffer.size() >= capacity){
+                dropped++;
+                if(policy == StreamOverflowPolicy.DROP_NEWEST) return false;
+                buffer.poll();
+            }
+            buffer.add(event);
+            if(!shouldSchedule()) return true;
+        }
+        executor.execute(drainTask);
+        return true;
+    }
+
+    /**
+     * Method to end the stream once the events waiting in the buffer have been handed over. The
+     * backlog is closed right away, leaving the events not handed over yet to it.
+     */
+    void complete(){
+        Backlog<E> detached;
+        boolean schedule;
+        synchronized(this){
+            if(stopped || completing) return;
+            completing = true;
+            detached = detachBacklog();
+            schedule = shouldSchedule();
+        }
+        if(detached != null) detached.close();
+        if(schedule) executor.execute(drainTask);
+    }
+
+    /**
+     * Method to hand over the events read from the backlog.
+     * @param events the events, an empty list if the backlog is exhausted.
+     */
+    void onBacklogRead(@NonNull List<E> events){
+        Backlog<E> exhausted = null;
+        boolean schedule;
+        synchronized(this){
+            //A backlog detached meanwhile keeps the events itself.
+            if(backlog == null) return;
+            reading = false;
+            if(events.isEmpty()) exhausted = detachBacklog();
+            else backlogBuffer.addAll(events);
+            schedule = shouldSchedule();
+        }
+        if(exhausted != null) exhausted.close();
+        if(schedule) executor.execute(drainTask);
+    }
+
+    /**
+     * @param n the number of events, must be positive.
+     */
+    @Override
+    public void request(long n){
+        synchronized(this){
+            if(stopped) return;
+            if(n <= 0) error = new IllegalArgumentException(REQUEST_ERROR);
+            //Demand is capped at Long.MAX_VALUE, which means no limit.
+            else demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            if(!shouldSchedule()) return;
+        }
+        executor.execute(drainTask);
+    }
+
+    @Override
+    public void cancel(){
+        Backlog<E> detached;
+        synchronized(this){
+            if(stopped) return;
+            stopped = true;
+            buffer.clear();
+            detached = detachBacklog();
+        }
+        onStop.run();
+        if(detached != null) detached.close();
+    }
+
+    @Override
+    public synchronized long getDroppedCount(){
+        return dropped;
+    }
+
+    /**
+     * @return the number of events waiting to be requested.
+     */
+    synchronized int size(){
+        return buffer.size();
+    }
+
+    /**
+     * Method to decide whether a drain task is needed, marking it as running. Must be called holding
+     * the lock.
+     * @return true if a drain task must be submitted.
+     */
+    private boolean shouldSchedule(){
+        if(draining || !subscribed) return false;
+        boolean work = error != null || (completing && buffer.isEmpty()) || (demand > 0 && hasNext());
+        if(work) draining = true;
+        return work;
+    }
+
+    /**
+     * Method to tell whether there is an event to hand over or to read from the backlog, older
+     * events first. Must be called holding the lock.
+     */
+    private boolean hasNext(){
+        if(!backlogBuffer.isEmpty()) return true;
+        if(backlog != null) return !reading;
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * Method to stop reading from the backlog, dropping the events read and not handed over, which
+     * the backlog keeps. Must be called holding the lock.
+     * @return the backlog to close, null if there is none.
+     */
+    private Backlog<E> detachBacklog(){
+        Backlog<E> detached = backlog;
+        backlog = null;
+        reading = false;
+        backlogBuffer.clear();
+        return detached;
+    }
+
+    /**
+     * Method to end the stream because the subscriber threw, handing it what it threw. Called by the
+     * drain task.
+     * @param thrown what the subscriber threw.
+     */
+    private void fail(RuntimeException thrown){
+        Backlog<E> detached;
+        synchronized(this){
+            draining = false;
+            if(stopped) return;
+            stopped = true;
+            buffer.clear();
+            detached = detachBacklog();
+        }
+        onStop.run();
+        if(detached != null) detached.close();
+        subscriber.onError(thrown);
+    }
+
+    /**
+     * Task calling the subscriber until there is no demand or no event left.
+     */
+    private void drain(){
+        boolean first;
+        synchronized(this){
+            first = !subscribed;
+            subscribed = true;
+        }
+        if(first) subscriber.onSubscribe(this);
+        while(true){
+            E next = null;
+            //The backlog the next event comes from, if any.
+            Backlog<E> source = null;
+            Backlog<E> toRead = null;
+            int readMax = 0;
+            Backlog<E> detached = null;
+            Throwable failure = null;
+            boolean finished = false;
+            synchronized(this){
+                if(stopped){
+                    draining = false;
+                    return;
+                }
+                if(error != null) failure = error;
+                else if(demand > 0 && !backlogBuffer.isEmpty()){
+                    next = backlogBuffer.poll();
+                    source = backlog;
+                    if(demand != Long.MAX_VALUE) demand--;
+                }
+                else if(demand > 0 && backlog != null && !reading){
+                    reading = true;
+                    toRead = backlog;
+                    readMax = (int) Math.min(demand, Integer.MAX_VALUE);
+                }
+                else if(demand > 0 && backlog == null && !buffer.isEmpty()){
+                    next = buffer.poll();
+                    if(demand != Long.MAX_VALUE) demand--;
+                }
+                else if(completing && buffer.isEmpty()) finished = true;
+                else{
+                    draining = false;
+                    return;
+                }
+                if(failure != null || finished){
+                    stopped = true;
+                    draining = false;
+                    buffer.clear();
+                    detached = detachBacklog();
+                }
+            }
+            if(toRead != null){
+                //The events might be handed back right away, they are taken on the next iteration.
+                toRead.read(readMax, this);
+                continue;
+            }
+            if(failure != null || finished){
+                onStop.run();
+                if(detached != null) detached.close();
+                if(failure != null) subscriber.onError(failure);
+                else subscriber.onComplete();
+                return;
+            }
+            try{
+                subscriber.onNext(next);
+            }
+            catch(RuntimeException e){
+                fail(e);
+                return;
+            }
+            if(source != null) source.delivered(next);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ingsw.group1.msglibrary;
+
+/**
+ * Interface for an object consuming a stream of events at its own rate. No event is handed to it
+ * before it asks for it through {@link MessageSubscription#request(long)}. All the methods are called
+ * on the Executor chosen when subscribing, one at a time.
+ * @author Riccardo De Zen
+ * @param <E> The type of the events.
+ */
+public interface MessageSubscriber<E> {
+
+    /**
+     * Called once, before any other method.
+     * @param subscription the subscription used to ask for events or to cancel the stream.
+     */
+    void onSubscribe(MessageSubscription subscription);
+
+    /**
+     * Called for every event, never more times than the events requested.
+     * @param event the next event.
+     */
+    void onNext(E event);
+
+    /**
+     * Called at most once when the stream ends because of an error, no other method is called after.
+     * @param error the cause.
+     */
+    void onError(Throwable error);
+
+    /**
+     * Called at most once when the stream ends normally, no other method is called after.
+     */
+    void onComplete();
+}
@@ -0,0 +1,28 @@
+package ingsw.group1.msglibrary;
+
+/**
+ * Interface for the link between a stream of events and its {@link MessageSubscriber}.
+ * Its methods can be called from any Thread.
+ * @author Riccardo De Zen
+ */
+public interface MessageSubscription {
+
+    /**
+     * Method to ask for more events. Requests add up, Long.MAX_VALUE asks for all the events.
+     * @param n the number of events, must be positive. Otherwise the stream ends with an
+     *          IllegalArgumentException handed to {@link MessageSubscriber#onError(Throwable)}.
+     */
+    void request(long n);
+
+    /**
+     * Method to stop the stream. Events waiting to be handed over are discarded, the subscriber might
+     * still receive events already on their way.
+     */
+    void cancel();
+
+    /**
+     * @return how many events have been discarded because the subscriber was not asking for them
+     * and the buffer was full.
+     */
+    long getDroppedCount();
+}
@@ -0,0 +1,196 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Class representing a text or data message waiting in the outbound queue to be handed to the system.
+ * @author Riccardo De Zen
+ */
+class OutgoingSMS {
+
+    private final Message<?, SMSPeer> message;
+    private final String body;
+    private final boolean urgent;
+    private final boolean multipart;
+    private final SendHandle<?> handle;
+    private final int attempt;
+    private volatile int subscriptionId = SubscriptionSelector.NO_SUBSCRIPTION;
+
+    /**
+     * @param message the valid message, its data must not contain any library code.
+     * @param urgent whether this message should contain the code to fire a broadcast.
+     */
+    OutgoingSMS(@NonNull SMSMessage message, boolean urgent){
+        this(message, urgent, false);
+    }
+
+    /**
+     * @param message the valid message, its data must not contain any library code.
+     * @param urgent whether this message should contain the code to fire a broadcast.
+     * @param multipart whether this message can be split in more than one SMS.
+     */
+    OutgoingSMS(@NonNull SMSMessage message, boolean urgent, boolean multipart){
+        this(message, urgent, multipart, null);
+    }
+
+    /**
+     * @param message the valid message, its data must not contain any library code.
+     * @param urgent whether this message should contain the code to fire a broadcast.
+     * @param multipart whether this message can be split in more than one SMS.
+     * @param handle the handle to complete with the outcome of the message, null if none.
+     */
+    OutgoingSMS(@NonNull SMSMessage message, boolean urgent, boolean multipart,
+                @Nullable SendHandle<SMSMessage> handle){
+        this(message, urgent, multipart, handle, message.getData());
+    }
+
+    /**
+     * @param message the valid message, its data must not contain any library code.
+     * @param urgent whether this message should contain the code to fire a broadcast.
+     * @param multipart whether this message can be split in more than one SMS.
+     * @param handle the handle to complete with the outcome of the message, null if none.
+     * @param body the text actually sent in place of the data of the message, such as its
+     *             compressed form, without library codes.
+     */
+    OutgoingSMS(@NonNull SMSMessage message, boolean urgent, boolean multipart,
+                @Nullable SendHandle<SMSMessage> handle, @NonNull String body){
+        this(message, body, urgent, multipart, handle, 1);
+    }
+
+    /**
+     * @param message the valid data message.
+     * @param handle the handle to complete with the outcome of the message, null if none.
+     */
+    OutgoingSMS(@NonNull SMSDataMessage message, @Nullable SendHandle<SMSDataMessage> handle){
+        this(message, null, false, false, handle, 1);
+    }
+
+    /**
+     * @param message the valid text or data message, text must not contain any library code.
+     * @param body the text to send for a text message, null for a data message.
+     * @param urgent whether this message should contain the code to fire a broadcast.
+     * @param multipart whether this message can be split in more than one SMS.
+     * @param handle the handle to complete with the outcome of the message, null if none.
+     * @param attempt the number of the attempt this object represents, starting from 1.
+     */
+    private OutgoingSMS(@NonNull Message<?, SMSPeer> message, @Nullable String body, boolean urgent,
+                        boolean multipart, @Nullable SendHandle<?> handle, int attempt){
+        this.message = message;
+        this.body = body;
+        this.urgent = urgent;
+        this.multipart = multipart;
+        this.handle = handle;
+        this.attempt = attempt;
+    }
+
+    /**
+     * @return the message to be sent.
+     */
+    Message<?, SMSPeer> getMessage(){
+        return message;
+    }
+
+    /**
+     * @return true if this is a data message, false if it is a text message.
+     */
+    boolean isData(){
+        return message instanceof SMSDataMessage;
+    }
+
+    /**
+     * @return the text message to be sent, null if this is a data message.
+     */
+    @Nullable
+    SMSMessage getTextMessage(){
+        return isData() ? null : (SMSMessage) message;
+    }
+
+    /**
+     * @return the data message to be sent, null if this is a text message.
+     */
+    @Nullable
+    SMSDataMessage getDataMessage(){
+        return isData() ? (SMSDataMessage) message : null;
+    }
+
+    /**
+     * @return the destination address for this message.
+     */
+    String getDestination(){
+        return message.getPeer().getAddress();
+    }
+
+    /**
+     * @return the text to send for this text message, without any library code, null for a data
+     * message. It differs from the data of the message if the message is compressed.
+     */
+    @Nullable
+    String getBody(){
+        return body;
+    }
+
+    /**
+     * @return whether this message should contain the code to fire a broadcast.
+     */
+    boolean isUrgent(){
+        return urgent;
+    }
+
+    /**
+     * @return whether this message can be split in more than one SMS.
+     */
+    boolean isMultipart(){
+        return multipart;
+    }
+
+    /**
+     * @return the handle to complete with the outcome of this message, null if it was not sent
+     * asynchronously.
+     */
+    @Nullable
+    SendHandle<?> getHandle(){
+        return handle;
+    }
+
+    /**
+     * @return how many times this message has been handed to the system, counting this attempt.
+     */
+    int getAttempt(){
+        return attempt;
+    }
+
+    /**
+     * @return a copy of this message representing the next attempt at sending it.
+     */
+    OutgoingSMS nextAttempt(){
+        return new OutgoingSMS(message, body, urgent, multipart, handle, attempt + 1);
+    }
+
+    /**
+     * Method to be called when this attempt is handed to the system.
+     * @param subscriptionId the subscription used to send the message,
+     *                       {@link SubscriptionSelector#NO_SUBSCRIPTION} for the default one.
+     */
+    void onDispatched(int subscriptionId){
+        this.subscriptionId = subscriptionId;
+        if(handle != null) handle.onDispatched();
+    }
+
+    /**
+     * @return the subscription this attempt was sent through,
+     * {@link SubscriptionSelector#NO_SUBSCRIPTION} if the default one was used.
+     */
+    int getSubscriptionId(){
+        return subscriptionId;
+    }
+
+    /**
+     * Method to be called when this message leaves the queue without being sent, or when its events
+     * will never arrive. Events already reported are left untouched.
+     * @param resultCode the reason why the message has not been sent, one of the SendResult codes.
+     */
+    void onNotSent(int resultCode){
+        if(handle != null) handle.onNotSent(resultCode);
+    }
+}
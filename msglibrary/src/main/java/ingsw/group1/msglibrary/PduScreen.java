@@ -0,0 +1,207 @@
+package ingsw.group1.msglibrary;
+
+import android.content.Intent;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Class inspecting the raw PDUs of a received SMS, without decoding them into SmsMessage objects,
+ * in order to discard as early as possible the messages not meant for the library.
+ * Only the header fields needed to find the user data and the first characters of the body are
+ * read. Any PDU that can't be read this way, such as 3GPP2 PDUs or compressed bodies, is considered
+ * possibly pertinent and left to the full decoding.
+ * @author Riccardo De Zen
+ */
+class PduScreen {
+
+    //Keys of the extras of an SMS_RECEIVED Intent, as read by Telephony.Sms.Intents.getMessagesFromIntent.
+    private static final String PDUS_EXTRA = "pdus";
+    private static final String FORMAT_EXTRA = "format";
+    private static final String FORMAT_3GPP = "3gpp";
+
+    //The body of the PDU starts with SMSHandler.APP_KEY.
+    static final int PERTINENT = 0;
+    //The body of the PDU does not start with SMSHandler.APP_KEY.
+    static final int FOREIGN = 1;
+    //The PDU is a part, other than the first, of a concatenated message.
+    static final int CONTINUATION = 2;
+    //The PDU can't be inspected without decoding it.
+    static final int UNKNOWN = 3;
+
+    private static final int MTI_MASK = 0x03;
+    private static final int MTI_DELIVER = 0x00;
+    private static final int UDHI_MASK = 0x40;
+    private static final int ADDRESS_TYPE_LENGTH = 1;
+    private static final int TIMESTAMP_LENGTH = 7;
+    private static final int IEI_CONCATENATED_8_BIT = 0x00;
+    private static final int IEI_CONCATENATED_16_BIT = 0x08;
+
+    private static final int ENCODING_GSM_7 = 0;
+    private static final int ENCODING_8_BIT = 1;
+    private static final int ENCODING_UCS_2 = 2;
+    private static final int ENCODING_UNKNOWN = 3;
+
+    private PduScreen(){
+    }
+
+    /**
+     * Method to tell whether a received Intent can contain a message pertinent to the library.
+     * The Intent is considered pertinent if the PDU starting any of its messages is, or if it can't
+     * be inspected.
+     * @param intent an Intent with the SMS_RECEIVED action or carrying its extras.
+     * @return false only if the messages in the Intent are certainly not pertinent.
+     */
+    static boolean mayBePertinent(@NonNull Intent intent){
+        Object extra;
+        try{
+            extra = intent.getSerializableExtra(PDUS_EXTRA);
+        }
+        catch(RuntimeException e){
+            //Unreadable extras are left to the full decoding.
+            return true;
+        }
+        if(!(extra instanceof Object[])) return true;
+        if(!FORMAT_3GPP.equals(intent.getStringExtra(FORMAT_EXTRA))) return true;
+        Object[] pdus = (Object[]) extra;
+        for(Object pdu : pdus){
+            if(!(pdu instanceof byte[])) return true;
+            int result = screen((byte[]) pdu);
+            if(result == PERTINENT || result == UNKNOWN) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to inspect a single 3GPP SMS-DELIVER PDU.
+     * @param pdu the raw PDU, starting with the length of the service center address.
+     * @return {@link #PERTINENT}, {@link #FOREIGN}, {@link #CONTINUATION} or {@link #UNKNOWN}.
+     */
+    static int screen(@NonNull byte[] pdu){
+        try{
+            int index = 0;
+            //Service center address, its length is in octets.
+            index += 1 + (pdu[index] & 0xFF);
+            int firstOctet = pdu[index++] & 0xFF;
+            if((firstOctet & MTI_MASK) != MTI_DELIVER) return UNKNOWN;
+            boolean hasHeader = (firstOctet & UDHI_MASK) != 0;
+            //Originating address, its length is in semi-octets.
+            int addressDigits = pdu[index++] & 0xFF;
+            index += ADDRESS_TYPE_LENGTH + (addressDigits + 1) / 2;
+            //Protocol identifier.
+            index++;
+            int encoding = getEncoding(pdu[index++] & 0xFF);
+            index += TIMESTAMP_LENGTH;
+            int userDataLength = pdu[index++] & 0xFF;
+            int userDataStart = index;
+            if(encoding == ENCODING_UNKNOWN) return UNKNOWN;
+
+            int headerLength = 0;
+            if(hasHeader){
+                headerLength = 1 + (pdu[userDataStart] & 0xFF);
+                if(isContinuation(pdu, userDataStart + 1, userDataStart + headerLength))
+                    return CONTINUATION;
+            }
+            if(encoding == ENCODING_GSM_7)
+                return screenGsm7(pdu, userDataStart, userDataLength, headerLength);
+            if(encoding == ENCODING_UCS_2)
+                return screenUcs2(pdu, userDataStart + headerLength, userDataLength - headerLength);
+            return screen8Bit(pdu, userDataStart + headerLength, userDataLength - headerLength);
+        }
+        catch(ArrayIndexOutOfBoundsException e){
+            //Malformed PDU, the platform decides what to do with it.
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * @param dataCodingScheme the TP-DCS octet of the PDU.
+     * @return the encoding of the user data, {@link #ENCODING_UNKNOWN} if it is compressed or
+     * reserved.
+     */
+    private static int getEncoding(int dataCodingScheme){
+        int group = dataCodingScheme >> 4;
+        if(group <= 0x03){
+            //General data coding, bit 5 marks compressed text.
+            if((dataCodingScheme & 0x20) != 0) return ENCODING_UNKNOWN;
+            switch((dataCodingScheme >> 2) & 0x03){
+                case 0: return ENCODING_GSM_7;
+                case 1: return ENCODING_8_BIT;
+                case 2: return ENCODING_UCS_2;
+                default: return ENCODING_UNKNOWN;
+            }
+        }
+        //Message waiting indication groups.
+        if(group == 0x0C || group == 0x0D) return ENCODING_GSM_7;
+        if(group == 0x0E) return ENCODING_UCS_2;
+        if(group == 0x0F) return (dataCodingScheme & 0x04) == 0 ? ENCODING_GSM_7 : ENCODING_8_BIT;
+        return ENCODING_UNKNOWN;
+    }
+
+    /**
+     * @return true if the header between the given indexes marks a part, other than the first, of a
+     * concatenated message.
+     */
+    private static boolean isContinuation(byte[] pdu, int start, int end){
+        int index = start;
+        while(index + 1 < end){
+            int iei = pdu[index] & 0xFF;
+            int length = pdu[index + 1] & 0xFF;
+            int data = index + 2;
+            if(iei == IEI_CONCATENATED_8_BIT && length == 3) return (pdu[data + 2] & 0xFF) > 1;
+            if(iei == IEI_CONCATENATED_16_BIT && length == 4) return (pdu[data + 3] & 0xFF) > 1;
+            index = data + length;
+        }
+        return false;
+    }
+
+    /**
+     * Compares the first septets of the body with the key. Septets are packed starting from the
+     * least significant bit, the body starts at the first septet boundary after the header.
+     * @param septetCount the user data length, in septets, including the header.
+     * @param headerLength the length of the header in octets, 0 if there is none.
+     */
+    private static int screenGsm7(byte[] pdu, int start, int septetCount, int headerLength){
+        String key = SMSHandler.APP_KEY;
+        int headerSeptets = (headerLength * 8 + 6) / 7;
+        if(septetCount - headerSeptets < key.length()) return FOREIGN;
+        int bitOffset = headerSeptets * 7;
+        for(int i = 0; i < key.length(); i++){
+            int byteIndex = start + bitOffset / 8;
+            int shift = bitOffset % 8;
+            int septet = (pdu[byteIndex] & 0xFF) >> shift;
+            if(shift > 1) septet |= (pdu[byteIndex + 1] & 0xFF) << (8 - shift);
+            septet &= 0x7F;
+            //The characters of the key have the same code in ASCII and in the GSM 7 bit alphabet.
+            if(septet != key.charAt(i)) return FOREIGN;
+            bitOffset += 7;
+        }
+        return PERTINENT;
+    }
+
+    /**
+     * Compares the first UTF-16 code units of the body with the key.
+     * @param length the length of the body in octets.
+     */
+    private static int screenUcs2(byte[] pdu, int start, int length){
+        String key = SMSHandler.APP_KEY;
+        if(length < key.length() * 2) return FOREIGN;
+        for(int i = 0; i < key.length(); i++){
+            int unit = ((pdu[start + 2 * i] & 0xFF) << 8) | (pdu[start + 2 * i + 1] & 0xFF);
+            if(unit != key.charAt(i)) return FOREIGN;
+        }
+        return PERTINENT;
+    }
+
+    /**
+     * Compares the first octets of the body with the key.
+     * @param length the length of the body in octets.
+     */
+    private static int screen8Bit(byte[] pdu, int start, int length){
+        String key = SMSHandler.APP_KEY;
+        if(length < key.length()) return FOREIGN;
+        for(int i = 0; i < key.length(); i++){
+            if((pdu[start + i] & 0xFF) != key.charAt(i)) return FOREIGN;
+        }
+        return PERTINENT;
+    }
+}
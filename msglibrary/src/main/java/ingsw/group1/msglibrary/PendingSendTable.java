@@ -0,0 +1,277 @@
+package ingsw.group1.msglibrary;
+
+import android.app.Activity;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Table of the messages that have been handed to the system and are waiting for their sent and/or
+ * delivered broadcasts. Every message is identified by a number taken from a process-wide sequence.
+ * A message sent in more than one part reserves one number per part, used as the request codes of the
+ * PendingIntents of its parts, so two sends can never share one.
+ * Broadcasts only need to carry the id and the part, the message is looked up here when they arrive.
+ * The events of a message are reported once all its parts have reported them, with the result of
+ * the first part that failed, if any.
+ * Entries waiting longer than their timeout are purged by a task posted on a Handler, which runs as
+ * long as the table is not empty, so their events complete even if nothing else is ever sent.
+ * @author Riccardo De Zen
+ */
+class PendingSendTable {
+
+    //Delivery reports are not guaranteed to arrive, entries older than this are discarded by default.
+    static final long ENTRY_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    //Shared by all tables, request codes must be unique in the whole process.
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    //Null if entries are only purged through purge(long).
+    private final Handler purgeHandler;
+    private final long entryTimeoutMillis;
+    private final long purgeIntervalMillis;
+    private final AtomicBoolean purgeScheduled = new AtomicBoolean(false);
+    private final Runnable purgeTask = new Runnable() {
+        @Override
+        public void run() {
+            purgeScheduled.set(false);
+            purge(System.currentTimeMillis());
+            if(!entries.isEmpty()) schedulePurge();
+        }
+    };
+
+    /**
+     * Constructor for a table whose entries are only purged through {@link #purge(long)}.
+     */
+    PendingSendTable(){
+        this(null, ENTRY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param purgeHandler the Handler the purge of old entries runs on.
+     */
+    PendingSendTable(@NonNull Handler purgeHandler){
+        this(purgeHandler, ENTRY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param purgeHandler the Handler the purge of old entries runs on, null to only purge them
+     *                     through {@link #purge(long)}.
+     * @param entryTimeoutMillis how long an entry waits for its events.
+     */
+    PendingSendTable(@Nullable Handler purgeHandler, long entryTimeoutMillis){
+        this.purgeHandler = purgeHandler;
+        this.entryTimeoutMillis = entryTimeoutMillis;
+        this.purgeIntervalMillis = Math.min(PURGE_INTERVAL_MILLIS, entryTimeoutMillis);
+    }
+
+    /**
+     * Class holding a message together with the events it is still waiting for.
+     */
+    static class Entry {
+        private final OutgoingSMS message;
+        private final long creationTime;
+        private final boolean awaitingDelivery;
+        //Parts whose events arrived, guarded by the entry.
+        private final boolean[] sentParts;
+        private final boolean[] deliveredParts;
+        private int sentPartsLeft;
+        private int deliveredPartsLeft;
+        private int sentResult = Activity.RESULT_OK;
+        private int deliveredResult = Activity.RESULT_OK;
+        private volatile long sentAtNanos = 0;
+
+        private Entry(OutgoingSMS message, int parts, boolean awaitingDelivery){
+            this.message = message;
+            this.awaitingDelivery = awaitingDelivery;
+            this.sentParts = new boolean[parts];
+            this.deliveredParts = new boolean[parts];
+            this.sentPartsLeft = parts;
+            this.deliveredPartsLeft = parts;
+            this.creationTime = System.currentTimeMillis();
+        }
+
+        /**
+         * @return the message waiting for its events.
+         */
+        OutgoingSMS getMessage(){
+            return message;
+        }
+
+        /**
+         * @return the System.nanoTime() at which the sent broadcast for the message arrived, 0 if it
+         * did not.
+         */
+        long getSentAtNanos(){
+            return sentAtNanos;
+        }
+
+        /**
+         * @return the result of the first part whose sending failed, Activity.RESULT_OK if none did.
+         */
+        synchronized int getSentResult(){
+            return sentResult;
+        }
+
+        /**
+         * @return the result of the first part whose delivery failed, Activity.RESULT_OK if none did.
+         */
+        synchronized int getDeliveredResult(){
+            return deliveredResult;
+        }
+
+        /**
+         * Records the sent event of a part.
+         * @return true if this was the last part waiting for it.
+         */
+        private synchronized boolean partSent(int part, int resultCode){
+            if(part < 0 || part >= sentParts.length || sentParts[part]) return false;
+            sentParts[part] = true;
+            if(resultCode != Activity.RESULT_OK && sentResult == Activity.RESULT_OK) sentResult = resultCode;
+            return --sentPartsLeft == 0;
+        }
+
+        /**
+         * Records the delivered event of a part.
+         * @return true if this was the last part waiting for it.
+         */
+        private synchronized boolean partDelivered(int part, int resultCode){
+            if(part < 0 || part >= deliveredParts.length || deliveredParts[part]) return false;
+            deliveredParts[part] = true;
+            if(resultCode != Activity.RESULT_OK && deliveredResult == Activity.RESULT_OK)
+                deliveredResult = resultCode;
+            return --deliveredPartsLeft == 0;
+        }
+    }
+
+    /**
+     * @param count how many consecutive ids are needed.
+     * @return the first of count new consecutive ids, never returned before by any table in this
+     * process. The value is always non negative, wrapping around after Integer.MAX_VALUE ids.
+     */
+    static int nextIds(int count){
+        return sequence.getAndAdd(count) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Method to add a message sent as a single SMS and waiting for its events to the table.
+     * @see #register(OutgoingSMS, int, boolean, boolean)
+     */
+    int register(@NonNull OutgoingSMS message, boolean awaitingSent, boolean awaitingDelivery){
+        return register(message, 1, awaitingSent, awaitingDelivery);
+    }
+
+    /**
+     * Method to add a message waiting for its events to the table.
+     * @param message the message handed to the system.
+     * @param parts the number of SMS the message is sent as, at least 1.
+     * @param awaitingSent whether sent broadcasts are expected for the message.
+     * @param awaitingDelivery whether delivered broadcasts are expected for the message.
+     * @return the id assigned to the message. The PendingIntents of the part i use id + i as their
+     * request code.
+     */
+    int register(@NonNull OutgoingSMS message, int parts, boolean awaitingSent, boolean awaitingDelivery){
+        int id = nextIds(parts);
+        if(awaitingSent || awaitingDelivery){
+            entries.put(id, new Entry(message, parts, awaitingDelivery));
+            schedulePurge();
+        }
+        return id;
+    }
+
+    /**
+     * Method to be called when the sent broadcast for a part of a message arrives. Once all the
+     * parts reported it the message is removed from the table, unless it is still waiting for its
+     * delivery. A message with a failed part is never delivered.
+     * @param id the id of the message.
+     * @param part the index of the part.
+     * @param resultCode the result code of the broadcast.
+     * @return the entry of the message with the given id if this was the last part waiting for the
+     * event, null otherwise or if no such message is waiting.
+     */
+    @Nullable
+    Entry onSent(int id, int part, int resultCode){
+        Entry entry = entries.get(id);
+        if(entry == null || !entry.partSent(part, resultCode)) return null;
+        entry.sentAtNanos = System.nanoTime();
+        if(entry.getSentResult() == Activity.RESULT_OK && entry.awaitingDelivery) return entry;
+        //An entry purged in the meantime has already been completed.
+        return entries.remove(id, entry) ? entry : null;
+    }
+
+    /**
+     * Method to be called when the delivered broadcast for a part of a message arrives. Once all the
+     * parts reported it the message is removed from the table.
+     * @param id the id of the message.
+     * @param part the index of the part.
+     * @param resultCode the result code of the broadcast.
+     * @return the entry of the message with the given id if this was the last part waiting for the
+     * event, holding the time its sent broadcasts arrived. Null otherwise or if no such message is
+     * waiting.
+     */
+    @Nullable
+    Entry onDelivered(int id, int part, int resultCode){
+        Entry entry = entries.get(id);
+        if(entry == null || !entry.partDelivered(part, resultCode)) return null;
+        return entries.remove(id, entry) ? entry : null;
+    }
+
+    /**
+     * Method to remove a message whose broadcasts will never arrive, without completing its events.
+     * @param id the id of the message.
+     */
+    void remove(int id){
+        entries.remove(id);
+    }
+
+    /**
+     * @return the number of messages waiting for at least one event.
+     */
+    int size(){
+        return entries.size();
+    }
+
+    /**
+     * Method to empty the table. The events the messages were waiting for are completed with
+     * {@link SendResult#RESULT_CANCELLED}.
+     */
+    void clear(){
+        if(purgeHandler != null) purgeHandler.removeCallbacks(purgeTask);
+        purgeScheduled.set(false);
+        for(Map.Entry<Integer, Entry> pending : entries.entrySet()){
+            if(entries.remove(pending.getKey(), pending.getValue()))
+                pending.getValue().message.onNotSent(SendResult.RESULT_CANCELLED);
+        }
+    }
+
+    /**
+     * Posts the purge of old entries, unless it is already waiting to run. The purge runs once every
+     * {@link #PURGE_INTERVAL_MILLIS}, or once every timeout if the timeout is shorter.
+     */
+    private void schedulePurge(){
+        if(purgeHandler != null && purgeScheduled.compareAndSet(false, true))
+            purgeHandler.postDelayed(purgeTask, purgeIntervalMillis);
+    }
+
+    /**
+     * Removes the entries older than the timeout of the table at the given time. The events
+     * they were waiting for are completed with {@link SendResult#RESULT_EXPIRED}.
+     * @param now the current time, in milliseconds since the epoch.
+     */
+    void purge(long now){
+        for(Map.Entry<Integer, Entry> pending : entries.entrySet()){
+            Entry entry = pending.getValue();
+            //An entry removed by its broadcast in the meantime has already been completed.
+            if(now - entry.creationTime > entryTimeoutMillis && entries.remove(pending.getKey(), entry))
+                entry.message.onNotSent(SendResult.RESULT_EXPIRED);
+        }
+    }
+}
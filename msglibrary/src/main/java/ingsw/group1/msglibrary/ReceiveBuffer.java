@@ -0,0 +1,158 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded ring buffer between the arrival of messages and their dispatch to the listeners.
+ * Adding a message never blocks: it either finds room or is refused, so the caller can keep it
+ * somewhere else. Messages are handed to a {@link Consumer} by a single drain task at a time, run
+ * on an Executor, in the order they were added.
+ * @author Riccardo De Zen
+ * @param <E> The type of the buffered elements.
+ */
+class ReceiveBuffer<E> {
+
+    private static final String CAPACITY_ERROR = "The capacity of the buffer must be at least 1.";
+
+    /**
+     * Interface for the object the buffered elements are handed to.
+     */
+    interface Consumer<E> {
+        /**
+         * Called on the Executor of the buffer for every element leaving it.
+         * @param element the element.
+         */
+        void consume(E element);
+    }
+
+    private final Object[] ring;
+    private final Consumer<E> consumer;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private volatile Executor executor;
+    private int head = 0;
+    private int size = 0;
+    private boolean draining = false;
+
+    /**
+     * @param capacity the maximum number of elements waiting in the buffer.
+     * @param consumer the object the elements are handed to.
+     * @param executor the Executor running the drain task.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    ReceiveBuffer(int capacity, @NonNull Consumer<E> consumer, @NonNull Executor executor){
+        if(capacity < 1) throw new IllegalArgumentException(CAPACITY_ERROR);
+        this.ring = new Object[capacity];
+        this.consumer = consumer;
+        this.executor = executor;
+    }
+
+    /**
+     * @param executor the Executor running the drain task from its next run.
+     */
+    void setExecutor(@NonNull Executor executor){
+        this.executor = executor;
+    }
+
+    /**
+     * Method to add an element to the buffer, never blocks.
+     * @param element the element.
+     * @return true if the element has been added, false if the buffer is full.
+     */
+    boolean offer(@NonNull E element){
+        synchronized(this){
+            if(size == ring.length) return false;
+            ring[(head + size) % ring.length] = element;
+            size++;
+            if(draining) return true;
+            draining = true;
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * Method to empty the buffer.
+     * @return the elements that were waiting, in order.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<E> clear(){
+        List<E> elements = new ArrayList<>(size);
+        while(size > 0) elements.add((E) poll());
+        return elements;
+    }
+
+    /**
+     * @return the number of elements waiting in the buffer.
+     */
+    synchronized int size(){
+        return size;
+    }
+
+    /**
+     * @return the maximum number of elements waiting in the buffer.
+     */
+    int getCapacity(){
+        return ring.length;
+    }
+
+    /**
+     * Method to submit the drain task, if the Executor refuses it the elements wait for the next one.
+     */
+    private void schedule(){
+        try{
+            executor.execute(drainTask);
+        }
+        catch(RejectedExecutionException e){
+            synchronized(this){
+                draining = false;
+            }
+        }
+    }
+
+    /**
+     * Task handing all the elements to the consumer, until the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    private void drain(){
+        while(true){
+            E element;
+            synchronized(this){
+                if(size == 0){
+                    draining = false;
+                    return;
+                }
+                element = (E) poll();
+            }
+            boolean consumed = false;
+            try{
+                consumer.consume(element);
+                consumed = true;
+            }
+            finally{
+                //The consumer threw, a new task takes care of the remaining elements.
+                if(!consumed) schedule();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, must be called holding the lock with the buffer not empty.
+     */
+    private Object poll(){
+        Object element = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        return element;
+    }
+}
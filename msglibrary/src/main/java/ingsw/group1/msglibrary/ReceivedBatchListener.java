@@ -0,0 +1,16 @@
+package ingsw.group1.msglibrary;
+
+import java.util.List;
+
+/**
+ * Listener receiving incoming messages in batches instead of one by one.
+ * @author Riccardo De Zen
+ * @param <M> The type of Message received.
+ */
+public interface ReceivedBatchListener<M extends Message> {
+    /**
+     * Called when a batch of messages has been received
+     * @param messages the received messages, in order of arrival, never empty
+     */
+    void onMessagesReceived(List<M> messages);
+}
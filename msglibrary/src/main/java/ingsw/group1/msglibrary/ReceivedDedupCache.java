@@ -0,0 +1,97 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class remembering the messages received recently, in order to recognize the ones the carrier
+ * delivers more than once. A message is identified by a 64 bit fingerprint of its sender, the time
+ * the service center received it, and its body, so the cache holds a fixed amount of memory per
+ * message whatever its length. Fingerprints are forgotten after {@link #DEFAULT_WINDOW_MILLIS} or
+ * when more than {@link #DEFAULT_CAPACITY} are held, whichever comes first.
+ * @author Riccardo De Zen
+ */
+class ReceivedDedupCache {
+
+    static final int DEFAULT_CAPACITY = 512;
+    static final long DEFAULT_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ReceivedDedupCache instance =
+            new ReceivedDedupCache(DEFAULT_CAPACITY, DEFAULT_WINDOW_MILLIS);
+
+    private final int capacity;
+    private final long windowMillis;
+    //Fingerprints mapped to the time they were first seen, in order of arrival.
+    private final LinkedHashMap<Long, Long> seen;
+
+    /**
+     * @param capacity the maximum number of fingerprints held.
+     * @param windowMillis how long a fingerprint is held.
+     */
+    ReceivedDedupCache(final int capacity, long windowMillis){
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.seen = new LinkedHashMap<Long, Long>(16, 0.75f, false){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > ReceivedDedupCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by the whole process.
+     */
+    static ReceivedDedupCache getInstance(){
+        return instance;
+    }
+
+    /**
+     * Method to record a received message.
+     * @param address the address of the sender.
+     * @param timestamp the time the service center received the message, as reported by its PDU.
+     * @param body the full body of the message.
+     * @return true if the message had not been seen within the window, false if it is a duplicate.
+     */
+    boolean markIfNew(@NonNull String address, long timestamp, @NonNull String body){
+        return markIfNew(fingerprint(address, timestamp, body), System.currentTimeMillis());
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the message.
+     * @param now the current time.
+     * @return true if the fingerprint had not been seen within the window, false otherwise.
+     */
+    synchronized boolean markIfNew(long fingerprint, long now){
+        Iterator<Long> times = seen.values().iterator();
+        while(times.hasNext() && now - times.next() > windowMillis) times.remove();
+        if(seen.containsKey(fingerprint)) return false;
+        seen.put(fingerprint, now);
+        return true;
+    }
+
+    /**
+     * @return the number of fingerprints held.
+     */
+    synchronized int size(){
+        return seen.size();
+    }
+
+    /**
+     * Computes the 64 bit FNV-1a hash of the sender, the timestamp and the body.
+     */
+    static long fingerprint(@NonNull String address, long timestamp, @NonNull String body){
+        long hash = FNV_OFFSET_BASIS;
+        for(int i = 0; i < address.length(); i++) hash = (hash ^ address.charAt(i)) * FNV_PRIME;
+        for(int shift = 0; shift < 64; shift += 8) hash = (hash ^ ((timestamp >>> shift) & 0xFF)) * FNV_PRIME;
+        for(int i = 0; i < body.length(); i++) hash = (hash ^ body.charAt(i)) * FNV_PRIME;
+        return hash;
+    }
+}
@@ -0,0 +1,204 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class compressing message bodies so that they take fewer SMS.
+ * The body is deflated against a dictionary shared by the sender and the receiver, then written
+ * with an alphabet of characters taking a single septet in the GSM 7 bit alphabet, so that even
+ * bodies that would need UCS-2 are sent as GSM 7 bit text.
+ * Compressed bodies start with {@link #COMPRESSED_KEY}, right after SMSHandler.APP_KEY, and carry a
+ * checksum of the original text: bodies that can't be decompressed are treated as plain text, so
+ * plain messages are never affected.
+ * @author Riccardo De Zen
+ */
+public final class SMSCompression {
+
+    public static final String COMPRESSED_KEY = "<z>";
+
+    /**
+     * Dictionary used when none is set. It holds fragments common in structured text, deflate
+     * finds them more easily near its end.
+     */
+    public static final String DEFAULT_DICTIONARY =
+            "the and for with this that from have are you not your will all can " +
+            "true,false,null,\"id\":\"type\":\"name\":\"value\":\"data\":\"time\":\"status\":" +
+            "\"message\":\"key\":\"address\":\"peer\":\"code\":\"count\":\"list\":[{\"},{\"}]}" +
+            "=&id=type=name=value=data=time=status=message=key=address=peer=code=count=list=";
+
+    /*
+     * Characters taking a single septet and never altered by carriers: no '@', which is the zero
+     * septet, no whitespace, and no '<' or '>', so library codes can never appear in the output.
+     */
+    private static final String ALPHABET =
+            "!\"#$%&'()*+,-./0123456789:;=?ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz" +
+            "¡£¤¥§¿ÄÅÆÇÉÑÖØÜßàäåæèéìñòöøùüΓΔΘΛΞΠΣΦΨΩ";
+    private static final int RADIX = ALPHABET.length();
+    //Every block of up to 6 bytes is written as one character more than its bytes.
+    private static final int BLOCK_BYTES = 6;
+    private static final int CHECKSUM_BYTES = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    //No valid body is longer than this once expanded, whatever characters it is made of.
+    private static final int MAX_EXPANDED_BYTES = SMSMessage.MAX_MULTIPART_MESSAGE_LENGTH * 4;
+
+    private static volatile byte[] dictionary = DEFAULT_DICTIONARY.getBytes(UTF_8);
+
+    private SMSCompression(){
+    }
+
+    /**
+     * Method to change the dictionary used to compress and decompress messages. Messages compress
+     * best when the dictionary contains the fragments they are most likely to share, the most
+     * frequent ones at its end. Both the sender and the receiver must use the same dictionary,
+     * messages compressed with a different one are received as plain text.
+     * @param newDictionary the new dictionary, null to go back to {@link #DEFAULT_DICTIONARY}.
+     */
+    public static void setDictionary(@Nullable String newDictionary){
+        dictionary = (newDictionary != null ? newDictionary : DEFAULT_DICTIONARY).getBytes(UTF_8);
+    }
+
+    /**
+     * Method to compress the body of a message.
+     * @param text the body of the message, without library codes.
+     * @return the compressed body, starting with {@link #COMPRESSED_KEY}.
+     */
+    @NonNull
+    static String compress(@NonNull String text){
+        byte[] input = text.getBytes(UTF_8);
+        byte[] dictionary = SMSCompression.dictionary;
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length + CHECKSUM_BYTES);
+        int checksum = checksum(input);
+        output.write(checksum >>> 8);
+        output.write(checksum);
+        try{
+            deflater.setDictionary(dictionary);
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[256];
+            while(!deflater.finished()){
+                int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+        }
+        finally{
+            deflater.end();
+        }
+        return COMPRESSED_KEY + encode(output.toByteArray());
+    }
+
+    /**
+     * Method to restore the body of a received message.
+     * @param body the full body of the message, including the library codes.
+     * @return the body with the compressed text replaced by the original one, or the same body if it
+     * is not compressed or can't be decompressed.
+     */
+    @NonNull
+    static String expand(@NonNull String body){
+        String head = SMSHandler.APP_KEY + COMPRESSED_KEY;
+        if(!body.startsWith(head)) return body;
+        String tail = body.endsWith(SMSHandler.WAKE_KEY) ? SMSHandler.WAKE_KEY : "";
+        String text = decompress(body.substring(head.length(), body.length() - tail.length()));
+        if(text == null) return body;
+        return SMSHandler.APP_KEY + text + tail;
+    }
+
+    /**
+     * @param encoded the compressed text, without {@link #COMPRESSED_KEY}.
+     * @return the original text, null if the given text is not a valid compressed text or expands
+     * past the longest valid body.
+     */
+    @Nullable
+    static String decompress(@NonNull String encoded){
+        byte[] bytes = decode(encoded);
+        if(bytes == null || bytes.length <= CHECKSUM_BYTES) return null;
+        int checksum = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 4);
+        try{
+            inflater.setDictionary(dictionary);
+            inflater.setInput(bytes, CHECKSUM_BYTES, bytes.length - CHECKSUM_BYTES);
+            byte[] buffer = new byte[256];
+            while(!inflater.finished()){
+                int count = inflater.inflate(buffer);
+                if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) return null;
+                output.write(buffer, 0, count);
+                if(output.size() > MAX_EXPANDED_BYTES) return null;
+            }
+        }
+        catch(DataFormatException | IllegalArgumentException e){
+            return null;
+        }
+        finally{
+            inflater.end();
+        }
+        byte[] text = output.toByteArray();
+        if(checksum(text) != checksum) return null;
+        return new String(text, UTF_8);
+    }
+
+    /**
+     * @return the lower 16 bits of the CRC32 of the given bytes.
+     */
+    private static int checksum(byte[] bytes){
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) (crc.getValue() & 0xFFFF);
+    }
+
+    /**
+     * Method writing bytes with {@link #ALPHABET}. Every block of up to 6 bytes is read as a big
+     * endian number and written in base {@link #RADIX} with one more digit than its bytes, which is
+     * always enough since RADIX is at least 2^(48/7).
+     * @param bytes the bytes to write.
+     * @return the text representing the bytes.
+     */
+    static String encode(byte[] bytes){
+        StringBuilder text = new StringBuilder(bytes.length + bytes.length / BLOCK_BYTES + 1);
+        char[] digits = new char[BLOCK_BYTES + 1];
+        for(int start = 0; start < bytes.length; start += BLOCK_BYTES){
+            int length = Math.min(BLOCK_BYTES, bytes.length - start);
+            long value = 0;
+            for(int i = 0; i < length; i++) value = (value << 8) | (bytes[start + i] & 0xFF);
+            for(int i = length; i >= 0; i--){
+                digits[i] = ALPHABET.charAt((int) (value % RADIX));
+                value /= RADIX;
+            }
+            text.append(digits, 0, length + 1);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Method reading bytes written by {@link #encode(byte[])}.
+     * @param text the text to read.
+     * @return the bytes, null if the text was not written by encode.
+     */
+    @Nullable
+    static byte[] decode(String text){
+        int blockChars = BLOCK_BYTES + 1;
+        if(text.length() % blockChars == 1) return null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length());
+        for(int start = 0; start < text.length(); start += blockChars){
+            int length = Math.min(blockChars, text.length() - start);
+            long value = 0;
+            for(int i = 0; i < length; i++){
+                int digit = ALPHABET.indexOf(text.charAt(start + i));
+                if(digit < 0) return null;
+                value = value * RADIX + digit;
+            }
+            int byteCount = length - 1;
+            if((value >>> (8 * byteCount)) != 0) return null;
+            for(int i = byteCount - 1; i >= 0; i--) bytes.write((int) (value >>> (8 * i)));
+        }
+        return bytes.toByteArray();
+    }
+}
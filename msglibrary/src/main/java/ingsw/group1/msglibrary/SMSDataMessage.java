@@ -0,0 +1,96 @@
+package ingsw.group1.msglibrary;
+
+import android.telephony.SmsMessage;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import ingsw.group1.msglibrary.exceptions.InvalidMessageException;
+
+/**
+ * Class implementing Message to represent a binary SMS, sent to the port of the library instead of
+ * being shown to the user. The payload is not encoded as text and needs no library code, so the
+ * whole user data of the SMS is available to the application.
+ * @author Riccardo De Zen
+ */
+public class SMSDataMessage extends Message<byte[], SMSPeer> {
+
+    private static final String CON_ERROR =
+            "The given data is invalid, refer to SMSDataMessage.isDataValid(byte[] data)";
+
+    //140 bytes of user data, minus the 7 bytes of the header carrying the ports.
+    public static final int MAX_DATA_LENGTH = 133;
+
+    private final SMSPeer peer;
+    private final byte[] data;
+
+    /**
+     * @param peer the Peer associated with this Message
+     * @param data the payload of the message, it is copied
+     * @throws InvalidMessageException if the data for the message is not valid
+     */
+    public SMSDataMessage(@NonNull SMSPeer peer, byte[] data){
+        if(isDataValid(data) != SMSMessage.MessageValidity.MESSAGE_VALID)
+            throw new InvalidMessageException(CON_ERROR);
+        this.peer = peer;
+        this.data = Arrays.copyOf(data, data.length);
+    }
+
+    /**
+     * Constructor from a valid data SmsMessage
+     * @param message the message to be converted
+     */
+    public SMSDataMessage(@NonNull SmsMessage message){
+        this(
+                new SMSPeer(message.getOriginatingAddress()),
+                message.getUserData()
+        );
+    }
+
+    /**
+     * @return the payload of this message. The array is not copied and should not be modified.
+     */
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the peer of this message
+     */
+    @Override
+    public SMSPeer getPeer() {
+        return peer;
+    }
+
+    /**
+     * @return true if this message is not empty and has a valid peer
+     */
+    @Override
+    public boolean isValid() {
+        return peer.isValid() && isDataValid(data) == SMSMessage.MessageValidity.MESSAGE_VALID;
+    }
+
+    /**
+     * @param data the payload whose validity should be checked
+     * @return An enum value to indicate what is wrong with the payload or that nothing is wrong
+     */
+    public static SMSMessage.MessageValidity isDataValid(byte[] data){
+        if(data == null || data.length == 0)
+            return SMSMessage.MessageValidity.MESSAGE_EMPTY;
+
+        if(data.length > MAX_DATA_LENGTH)
+            return SMSMessage.MessageValidity.MESSAGE_TOO_LONG;
+
+        return SMSMessage.MessageValidity.MESSAGE_VALID;
+    }
+
+    /**
+     * @return the String type representation of this object
+     */
+    @NonNull
+    public String toString(){
+        return "Peer: "+peer.toString()+"; Data: "+data.length+" bytes";
+    }
+}
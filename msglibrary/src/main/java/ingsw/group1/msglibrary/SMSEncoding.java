@@ -0,0 +1,244 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Utility class to compute how a text is encoded when sent as an SMS.
+ * A text made only of characters of the GSM 03.38 default alphabet is sent as 7 bit septets, where
+ * characters of the extension table take two septets. A single character outside the alphabet
+ * switches the whole text to UCS-2, which has less than half the room per message.
+ * Concatenated messages lose some room in every part to the header linking the parts together, and
+ * neither an escaped character nor a surrogate pair is ever split between two parts.
+ * No method allocates any object, so they can be called on every send and receive.
+ * National language shift tables are not considered, the results are the ones of the default
+ * alphabet.
+ * @author Riccardo De Zen
+ */
+public final class SMSEncoding {
+
+    //Room in a single SMS and in every part of a concatenated one, in septets.
+    public static final int GSM_7_SINGLE_LENGTH = 160;
+    public static final int GSM_7_PART_LENGTH = 153;
+    //Room in a single SMS and in every part of a concatenated one, in UTF-16 code units.
+    public static final int UCS_2_SINGLE_LENGTH = 70;
+    public static final int UCS_2_PART_LENGTH = 67;
+
+    //Returned by getGsm7Length when a text cannot be encoded with the GSM 7 bit alphabet.
+    public static final int NOT_GSM_7 = -1;
+
+    private SMSEncoding(){
+    }
+
+    /**
+     * @param c the character to encode.
+     * @return how many septets the character takes in the GSM 7 bit alphabet: 1 for the default
+     * table, 2 for the extension table, 0 if it cannot be encoded.
+     */
+    public static int getGsm7Width(char c){
+        if(c >= ' ' && c <= '~'){
+            switch(c){
+                case '`':
+                    return 0;
+                case '[':
+                case '\\':
+                case ']':
+                case '^':
+                case '{':
+                case '|':
+                case '}':
+                case '~':
+                    return 2;
+                default:
+                    return 1;
+            }
+        }
+        switch(c){
+            case '\n':
+            case '\r':
+            case '¡': //inverted exclamation mark
+            case '£': //pound sign
+            case '¤': //currency sign
+            case '¥': //yen sign
+            case '§': //section sign
+            case '¿': //inverted question mark
+            case 'Ä':
+            case 'Å':
+            case 'Æ':
+            case 'Ç':
+            case 'É':
+            case 'Ñ':
+            case 'Ö':
+            case 'Ø':
+            case 'Ü':
+            case 'ß':
+            case 'à':
+            case 'ä':
+            case 'å':
+            case 'æ':
+            case 'è':
+            case 'é':
+            case 'ì':
+            case 'ñ':
+            case 'ò':
+            case 'ö':
+            case 'ø':
+            case 'ù':
+            case 'ü':
+            case 'Γ': //greek capital letters
+            case 'Δ':
+            case 'Θ':
+            case 'Λ':
+            case 'Ξ':
+            case 'Π':
+            case 'Σ':
+            case 'Φ':
+            case 'Ψ':
+            case 'Ω':
+                return 1;
+            case '\f':
+            case '€': //euro sign
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return how many septets the text takes in the GSM 7 bit alphabet, {@link #NOT_GSM_7} if it
+     * contains a character that cannot be encoded with it.
+     */
+    public static int getGsm7Length(@Nullable CharSequence text){
+        return getGsm7Length(text, null, null);
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return true if the text can be sent with the GSM 7 bit alphabet, false if it needs UCS-2.
+     */
+    public static boolean isGsm7(@Nullable CharSequence text){
+        return getGsm7Length(text) != NOT_GSM_7;
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return the length of the encoded text, in septets if it can be sent with the GSM 7 bit
+     * alphabet, in UTF-16 code units otherwise.
+     */
+    public static int getEncodedLength(@Nullable CharSequence text){
+        int septets = getGsm7Length(text);
+        return septets != NOT_GSM_7 ? septets : length(text);
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return how many bytes the encoded text takes, with septets packed together as they are on the
+     * air. Headers of concatenated messages are not counted.
+     */
+    public static int getEncodedByteCount(@Nullable CharSequence text){
+        int septets = getGsm7Length(text);
+        return septets != NOT_GSM_7 ? (septets * 7 + 7) / 8 : length(text) * 2;
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return how many SMS are needed to send the text, 0 if it is empty.
+     */
+    public static int getSegmentCount(@Nullable CharSequence text){
+        return getSegmentCount(text, null, null);
+    }
+
+    /**
+     * @param text the text to encode, null is treated as empty.
+     * @return how many more septets, or code units if the text needs UCS-2, fit in the last SMS
+     * needed to send the text. Adding a character that does not fit, or a character switching the
+     * text to UCS-2, requires one more SMS.
+     */
+    public static int getRemainingLength(@Nullable CharSequence text){
+        return (int) measure(text, null, null);
+    }
+
+    /**
+     * Method to count the SMS needed to send the concatenation of the given texts, without building
+     * it. Any of the texts can be null, which is treated as empty.
+     * @param head the first text.
+     * @param body the second text.
+     * @param tail the last text.
+     * @return how many SMS are needed to send the whole text, 0 if it is empty.
+     */
+    static int getSegmentCount(@Nullable CharSequence head, @Nullable CharSequence body,
+                               @Nullable CharSequence tail){
+        return (int) (measure(head, body, tail) >>> 32);
+    }
+
+    /**
+     * @return the septets taken by the concatenation of the given texts, {@link #NOT_GSM_7} if it
+     * cannot be encoded with the GSM 7 bit alphabet.
+     */
+    private static int getGsm7Length(CharSequence head, CharSequence body, CharSequence tail){
+        int headLength = length(head);
+        int total = headLength + length(body) + length(tail);
+        int septets = 0;
+        for(int i = 0; i < total; i++){
+            int width = getGsm7Width(charAt(head, body, tail, headLength, i));
+            if(width == 0) return NOT_GSM_7;
+            septets += width;
+        }
+        return septets;
+    }
+
+    /**
+     * Method splitting the concatenation of the given texts in SMS the same way the system does.
+     * @return the number of SMS in the upper 32 bits, the room left in the last one in the lower 32.
+     */
+    private static long measure(CharSequence head, CharSequence body, CharSequence tail){
+        int headLength = length(head);
+        int total = headLength + length(body) + length(tail);
+        int septets = getGsm7Length(head, body, tail);
+        boolean gsm7 = septets != NOT_GSM_7;
+        int encodedLength = gsm7 ? septets : total;
+        int singleLength = gsm7 ? GSM_7_SINGLE_LENGTH : UCS_2_SINGLE_LENGTH;
+        if(encodedLength <= singleLength){
+            long segments = encodedLength == 0 ? 0 : 1;
+            return (segments << 32) | (singleLength - encodedLength);
+        }
+        int partLength = gsm7 ? GSM_7_PART_LENGTH : UCS_2_PART_LENGTH;
+        long segments = 1;
+        int used = 0;
+        int i = 0;
+        while(i < total){
+            char c = charAt(head, body, tail, headLength, i);
+            int width;
+            if(gsm7) width = getGsm7Width(c);
+            else if(Character.isHighSurrogate(c) && i + 1 < total
+                    && Character.isLowSurrogate(charAt(head, body, tail, headLength, i + 1))) width = 2;
+            else width = 1;
+            if(used + width > partLength){
+                segments++;
+                used = 0;
+            }
+            used += width;
+            i += gsm7 ? 1 : width;
+        }
+        return (segments << 32) | (partLength - used);
+    }
+
+    /**
+     * @return the character at the given index of the concatenation of the given texts.
+     */
+    private static char charAt(CharSequence head, CharSequence body, CharSequence tail,
+                               int headLength, int index){
+        if(index < headLength) return head.charAt(index);
+        index -= headLength;
+        int bodyLength = length(body);
+        if(index < bodyLength) return body.charAt(index);
+        return tail.charAt(index - bodyLength);
+    }
+
+    /**
+     * @return the length of the text, 0 if it is null.
+     */
+    private static int length(CharSequence text){
+        return text == null ? 0 : text.length();
+    }
+}
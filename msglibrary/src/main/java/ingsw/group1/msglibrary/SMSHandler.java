@@ -7,14 +7,28 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.provider.Telephony;
 import android.telephony.SmsManager;
 import android.telephony.SmsMessage;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import ingsw.group1.msglibrary.database.SMSDatabaseManager;
 
@@ -30,34 +44,84 @@ public class SMSHandler {
     public static final String APP_KEY = "<#>";
     public static final String WAKE_KEY = "<urgent>";
 
+    //Port data messages are sent to and received from, must match the one in the library manifest.
+    public static final short DATA_PORT = 6740;
+
     static final String RECEIVED_BROADCAST = "SMS_HANDLER_NEW_SMS";
+    static final String DATA_RECEIVED_BROADCAST = "SMS_HANDLER_NEW_DATA_SMS";
     static final String SENT_BROADCAST = "SMS_HANDLER_SMS_SENT";
     static final String DELIVERED_BROADCAST = "SMS_HANDLER_SMS_DELIVERED";
 
+    private static final String LOG_TAG = "SMSHandler";
+    private static final String RECEIVER_THREAD_NAME = "SMSHandlerReceiver";
     public static final String UNREAD_SMS_DATABASE_NAME = "sms-database";
     static final String PREFERENCES_FILE_NAME = "smshandler.PREFERENCES_FILE_NAME";
     static final String PREFERENCE_WAKE_ACTION_KEY = "smshandler.WAKE_ACTION";
 
-    private static final String EXTRA_ADDRESS_KEY = "address";
-    private static final String EXTRA_MESSAGE_KEY = "message";
-    private static final int PI_DEFAULT_REQUEST_CODE = 0;
+    private static final String EXTRA_ID_KEY = "id";
+    private static final String EXTRA_PART_KEY = "part";
+    private static final int INVALID_ID = -1;
+
+    static final int DEFAULT_SEND_QUEUE_CAPACITY = 1024;
+    static final double DEFAULT_SEND_RATE = 1.0;
+    static final int DEFAULT_SEND_BURST = 5;
+    static final long DEFAULT_BATCH_WINDOW_MILLIS = 1000;
+    static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    static final int DEFAULT_RECEIVE_BUFFER_CAPACITY = 256;
+    static final int DEFAULT_STREAM_CAPACITY = 256;
 
     private static final String[] ERRORS = {
             "A ReceivedMessageListener is already attached to this instance.",
             "A SentMessageListener is already attached to this instance.",
-            "A DeliveredMessageListener is already attached to this instance."
+            "A DeliveredMessageListener is already attached to this instance.",
+            "A ReceivedMessageListener for data messages is already attached to this instance."
     };
-    //Contains references to all listeners to incoming sms.
-    private static List<ReceivedMessageListener> activeReceivedListeners = new ArrayList<>();
+    //Contains the listeners to incoming sms of all instances, each one registered by its instance.
+    private static final ListenerRegistry<ReceivedMessageListener<SMSMessage>> receivedListeners = new ListenerRegistry<>();
+    //Contains the listeners to incoming data sms of all instances, each one registered by its instance.
+    private static final ListenerRegistry<ReceivedMessageListener<SMSDataMessage>> dataListeners = new ListenerRegistry<>();
+    //Contains the streams limited to a single Peer of all instances, each one registered by its instance.
+    private static final ListenerRegistry<PeerStream> peerStreams = new ListenerRegistry<>();
+    //Contains the instances whose context is still valid, messages are handed to them directly.
+    private static final ListenerRegistry<SMSHandler> liveHandlers = new ListenerRegistry<>();
+    //Handler of the Thread all the instances receive their broadcasts on, created when first needed.
+    private static Handler receiverHandler;
 
     private String scAddress;
 
     private Context currentContext;
+    //Kept after the context is destroyed, messages still waiting to be dispatched are stored with it.
+    private final Context applicationContext;
     private SmsManager smsManager;
     private ReceivedMessageListener<SMSMessage> receivedListener;
-    private SentMessageListener<SMSMessage> sentListener;
-    private DeliveredMessageListener<SMSMessage> deliveredListener;
+    private ReceivedMessageListener<SMSDataMessage> receivedDataListener;
+    private volatile SentMessageListener<SMSMessage> sentListener;
+    private volatile DeliveredMessageListener<SMSMessage> deliveredListener;
+    private volatile Executor sentExecutor = MainThreadExecutor.getInstance();
+    private volatile Executor deliveredExecutor = MainThreadExecutor.getInstance();
     private SmsEventReceiver smsEventReceiver;
+    private SMSSendQueue sendQueue;
+    private PendingSendTable pendingSends = new PendingSendTable(getReceiverHandler());
+    private SMSRetryScheduler retryScheduler;
+    private volatile boolean multipartEnabled = false;
+    private volatile boolean multiSimEnabled = false;
+    private volatile boolean compressionEnabled = false;
+    private SubscriptionSelector subscriptionSelector = new SubscriptionSelector();
+    private ConcurrentHashMap<Integer, SmsManager> subscriptionManagers = new ConcurrentHashMap<>();
+    private long batchWindowMillis = DEFAULT_BATCH_WINDOW_MILLIS;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    //Only present when the corresponding listener has been set as a batch listener.
+    private EventBatcher<SMSMessage> receivedBatcher;
+    private EventBatcher<MessageResult<SMSMessage>> sentBatcher;
+    private EventBatcher<MessageResult<SMSMessage>> deliveredBatcher;
+    private final TopicRouter<ReceivedMessageListener<SMSMessage>> topicRouter = new TopicRouter<>();
+    //Received messages waiting to be handed to the listeners.
+    private final ReceiveBuffer<SMSMessage> receiveBuffer;
+    private final AtomicLong spilledReceiveCount = new AtomicLong();
+    //Contains all the open streams of this instance, completed when its context is destroyed.
+    private final ListenerRegistry<MessageStream<?>> streams = new ListenerRegistry<>();
+    private final ListenerRegistry<MessageStream<MessageResult<SMSMessage>>> sentStreams = new ListenerRegistry<>();
+    private final ListenerRegistry<MessageStream<MessageResult<SMSMessage>>> deliveredStreams = new ListenerRegistry<>();
     /**
      * SmsManager.getDefault() can behave unpredictably if called from a
      * background thread in multi-SIM systems.
@@ -65,18 +129,75 @@ public class SMSHandler {
      */
     public SMSHandler(Context context){
         currentContext = context;
+        applicationContext = context.getApplicationContext();
         smsManager = SmsManager.getDefault();
         smsEventReceiver = new SmsEventReceiver();
+        sendQueue = new SMSSendQueue(
+                new SMSSendQueue.Sender() {
+                    @Override
+                    public void send(OutgoingSMS sms) {
+                        dispatchSMS(sms);
+                    }
+                },
+                DEFAULT_SEND_QUEUE_CAPACITY,
+                SendOverflowPolicy.REJECT_NEW,
+                new TokenBucket(DEFAULT_SEND_RATE, DEFAULT_SEND_BURST)
+        );
+        retryScheduler = new SMSRetryScheduler(
+                new SMSRetryScheduler.Resubmitter() {
+                    @Override
+                    public void resubmit(List<OutgoingSMS> messages) {
+                        sendQueue.requeue(messages);
+                    }
+                },
+                SendRetryPolicy.DEFAULT
+        );
+        sendQueue.start();
+        receiveBuffer = new ReceiveBuffer<>(
+                DEFAULT_RECEIVE_BUFFER_CAPACITY,
+                new ReceiveBuffer.Consumer<SMSMessage>() {
+                    @Override
+                    public void consume(SMSMessage message) {
+                        dispatchReceived(message);
+                    }
+                },
+                MainThreadExecutor.getInstance()
+        );
+        retryScheduler.start();
         registerReceiver();
+        liveHandlers.add(SMSHandler.class, this, true);
     }
 
     /**
      * Method to be called only when the context that instantiated the object ceases to be valid,
      * this instance becomes invalid as well and will throw an exception when used.
+     * Messages still waiting in the outbound queue or waiting for a retry are discarded, events
+     * waiting in a batch are handed to the batch listeners, received messages still waiting to be
+     * dispatched are stored and can be retrieved with {@link #loadUnread()}. Open streams complete
+     * once their buffered events have been requested.
      * The user is responsible for creating a new instance of this class with a new valid context.
      */
     public void onContextDestroyed(){
+        liveHandlers.remove(SMSHandler.class, this);
+        flushBatches();
+        streams.forEach(this, new ListenerRegistry.Action<MessageStream<?>>() {
+            @Override
+            public void run(MessageStream<?> stream) {
+                stream.complete();
+            }
+        });
+        receivedListeners.removeAll(this);
+        peerStreams.removeAll(this);
+        dataListeners.removeAll(this);
+        topicRouter.clear();
+        receivedListener = null;
+        receivedDataListener = null;
+        //Unregistered first, so that no new failure is scheduled for a retry that would never happen.
         currentContext.unregisterReceiver(smsEventReceiver);
+        retryScheduler.shutdown();
+        sendQueue.shutdown();
+        pendingSends.clear();
+        store(receiveBuffer.clear());
         currentContext = null;
     }
 
@@ -92,27 +213,58 @@ public class SMSHandler {
         @Override
         public void onReceive(Context context, Intent intent) {
             if(intent.getAction() != null){
+                //SMSReceiver already decoded and filtered the messages, duplicates included.
                 if(intent.getAction().equals(RECEIVED_BROADCAST)) {
-                    if (receivedListener != null){
-                        for(SmsMessage message : Telephony.Sms.Intents.getMessagesFromIntent(intent)){
-                            if(SmsUtils.isMessagePertinent(message))
-                                receivedListener.onMessageReceived(new SMSMessage(message));
-                        }
+                    if (isReceiving())
+                        enqueueReceived(SmsUtils.getReceivedMessages(intent));
+                }
+                if(intent.getAction().equals(DATA_RECEIVED_BROADCAST)) {
+                    if (dataListeners.hasListeners(SMSHandler.this)){
+                        SmsMessage[] messages = Telephony.Sms.Intents.getMessagesFromIntent(intent);
+                        notifyData(SmsUtils.getDataMessages(messages));
                     }
                 }
+                //Broadcasts for messages sent by another instance are not found in the table.
                 if(intent.getAction().equals(SENT_BROADCAST)){
-                    SMSMessage m = new SMSMessage(
-                            new SMSPeer(intent.getStringExtra(EXTRA_ADDRESS_KEY)),
-                            intent.getStringExtra(EXTRA_MESSAGE_KEY)
+                    //Every part reports its own event, the message is handled once all of them did.
+                    PendingSendTable.Entry entry = pendingSends.onSent(
+                            intent.getIntExtra(EXTRA_ID_KEY, INVALID_ID),
+                            intent.getIntExtra(EXTRA_PART_KEY, 0),
+                            getResultCode()
                     );
-                    if(sentListener != null) sentListener.onMessageSent(getResultCode(),m);
+                    if(entry == null) return;
+                    OutgoingSMS sms = entry.getMessage();
+                    int resultCode = entry.getSentResult();
+                    boolean successful = resultCode == Activity.RESULT_OK;
+                    if(sms.getSubscriptionId() != SubscriptionSelector.NO_SUBSCRIPTION)
+                        subscriptionSelector.onSendResult(sms.getSubscriptionId(), successful);
+                    //Intermediate failures are hidden, only the outcome of the last attempt is reported.
+                    if(!successful && retryScheduler.onSendFailed(sms, resultCode)) return;
+                    SendHandle<?> handle = sms.getHandle();
+                    if(handle != null){
+                        handle.onSent(resultCode);
+                        if(!successful) handle.onDelivered(resultCode);
+                    }
+                    //Outcomes of data messages are only reported through their handles.
+                    if(!sms.isData()) notifySent(resultCode, sms.getTextMessage());
                 }
                 if(intent.getAction().equals(DELIVERED_BROADCAST)){
-                    SMSMessage m = new SMSMessage(
-                            new SMSPeer(intent.getStringExtra(EXTRA_ADDRESS_KEY)),
-                            intent.getStringExtra(EXTRA_MESSAGE_KEY)
+                    PendingSendTable.Entry entry = pendingSends.onDelivered(
+                            intent.getIntExtra(EXTRA_ID_KEY, INVALID_ID),
+                            intent.getIntExtra(EXTRA_PART_KEY, 0),
+                            getResultCode()
                     );
-                    if(deliveredListener != null) deliveredListener.onMessageDelivered(getResultCode(),m);
+                    if(entry == null) return;
+                    OutgoingSMS sms = entry.getMessage();
+                    int resultCode = entry.getDeliveredResult();
+                    //Latency is measured from the sent event, the time spent before it is not the carrier's.
+                    if(sms.getSubscriptionId() != SubscriptionSelector.NO_SUBSCRIPTION
+                            && resultCode == Activity.RESULT_OK && entry.getSentAtNanos() != 0){
+                        long latency = System.nanoTime() - entry.getSentAtNanos();
+                        subscriptionSelector.onDelivered(sms.getSubscriptionId(), TimeUnit.NANOSECONDS.toMillis(latency));
+                    }
+                    if(sms.getHandle() != null) sms.getHandle().onDelivered(resultCode);
+                    if(!sms.isData()) notifyDelivered(resultCode, sms.getTextMessage());
                 }
             }
         }
@@ -124,58 +276,407 @@ public class SMSHandler {
     private void registerReceiver(){
         IntentFilter filter = new IntentFilter();
         filter.addAction(RECEIVED_BROADCAST);
+        filter.addAction(DATA_RECEIVED_BROADCAST);
         filter.addAction(SENT_BROADCAST);
         filter.addAction(DELIVERED_BROADCAST);
-        currentContext.registerReceiver(smsEventReceiver,filter);
+        //Broadcasts are parsed on a background Thread, listeners are notified on their Executors.
+        currentContext.registerReceiver(smsEventReceiver, filter, null, getReceiverHandler());
+    }
+
+    /**
+     * @return the Handler of the Thread broadcasts are received on, created if needed.
+     */
+    private static synchronized Handler getReceiverHandler(){
+        if(receiverHandler == null){
+            HandlerThread thread = new HandlerThread(RECEIVER_THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            receiverHandler = new Handler(thread.getLooper());
+        }
+        return receiverHandler;
+    }
+
+    /**
+     * Method to notify the SentMessageListener, if any, on its Executor, and the sent streams.
+     * @param resultCode the result code of the sent event.
+     * @param message the sent message.
+     */
+    private void notifySent(final int resultCode, final SMSMessage message){
+        offerResult(sentStreams, resultCode, message);
+        final SentMessageListener<SMSMessage> listener = sentListener;
+        if(listener == null) return;
+        sentExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onMessageSent(resultCode, message);
+            }
+        });
+    }
+
+    /**
+     * Method to notify the DeliveredMessageListener, if any, on its Executor, and the delivered
+     * streams.
+     * @param resultCode the result code of the delivered event.
+     * @param message the delivered message.
+     */
+    private void notifyDelivered(final int resultCode, final SMSMessage message){
+        offerResult(deliveredStreams, resultCode, message);
+        final DeliveredMessageListener<SMSMessage> listener = deliveredListener;
+        if(listener == null) return;
+        deliveredExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onMessageDelivered(resultCode, message);
+            }
+        });
     }
 
     /**
-     * Method that sends a text message through SmsManager
+     * Method that queues a text message to be sent through SmsManager. The method returns
+     * immediately, the message is sent by the worker of the outbound queue as soon as the rate limit
+     * allows it.
      * @param destination the valid destination address for the message, in phone number format
      * @param message the valid body of the message to be sent
      * @param urgent whether this message should contain the code to fire a broadcast
+     * @return true if the message is valid and has been queued, false if it is invalid or the queue
+     * is full and its policy is {@link SendOverflowPolicy#REJECT_NEW}.
+     */
+    public boolean sendSMS(String destination, @NonNull String message, boolean urgent){
+        if(SMSPeer.isAddressValid(destination) != SMSPeer.PhoneNumberValidity.ADDRESS_VALID) return false;
+        if(SMSMessage.isMultipartMessageValid(message) != SMSMessage.MessageValidity.MESSAGE_VALID) return false;
+        return sendSMS(new SMSMessage(new SMSPeer(destination), message), urgent);
+    }
+
+    /**
+     * Method that queues a valid SMSMessage to be sent through SmsManager. The method returns
+     * immediately.
+     * @param message the valid message to be sent
+     * @param urgent whether this message should contain the code to fire a broadcast
+     * @return true if the message has been queued, false if its body is too long, the context has been
+     * destroyed or the queue is full and its policy is {@link SendOverflowPolicy#REJECT_NEW}.
+     */
+    boolean sendSMS(@NonNull SMSMessage message, boolean urgent){
+        boolean multipart = multipartEnabled;
+        String body = SmsUtils.prepareBody(message.getData(),urgent,multipart,compressionEnabled);
+        if(body == null) return false;
+        return sendQueue.enqueue(new OutgoingSMS(message, urgent, multipart, null, body));
+    }
+
+    /**
+     * Method that queues a valid SMSMessage to be sent through SmsManager and returns a handle to
+     * follow its outcome. The sent and delivered events are always requested for such messages,
+     * independently of the attached listeners, which are still notified.
+     * @param message the valid message to be sent
+     * @param urgent whether this message should contain the code to fire a broadcast
+     * @return the handle for the message. If the message is not queued, because its body is too long,
+     * the context has been destroyed or the queue is full, both its futures are already complete with
+     * {@link SendResult#RESULT_REJECTED}.
+     */
+    public SendHandle<SMSMessage> sendSMSAsync(@NonNull SMSMessage message, boolean urgent){
+        boolean multipart = multipartEnabled;
+        SendHandle<SMSMessage> handle = new SendHandle<>(message);
+        String body = SmsUtils.prepareBody(message.getData(),urgent,multipart,compressionEnabled);
+        if(body == null)
+            handle.onNotSent(SendResult.RESULT_REJECTED);
+        else
+            sendQueue.enqueue(new OutgoingSMS(message, urgent, multipart, handle, body));
+        return handle;
+    }
+
+    /**
+     * Method that queues a valid data message to be sent to {@link #DATA_PORT} of its Peer.
+     * @param message the valid data message to be sent
+     * @return the handle for the message. If the message is not queued, because the context has been
+     * destroyed or the queue is full, both its futures are already complete with
+     * {@link SendResult#RESULT_REJECTED}.
+     */
+    public SendHandle<SMSDataMessage> sendDataSMSAsync(@NonNull SMSDataMessage message){
+        SendHandle<SMSDataMessage> handle = new SendHandle<>(message);
+        sendQueue.enqueue(new OutgoingSMS(message, handle));
+        return handle;
+    }
+
+    /**
+     * Method that queues a valid data message to be sent to {@link #DATA_PORT} of its Peer, without
+     * following its outcome.
+     * @param message the valid data message to be sent
+     * @return true if the message has been queued, false if the context has been destroyed or the
+     * queue is full and its policy is {@link SendOverflowPolicy#REJECT_NEW}.
+     */
+    public boolean sendDataSMS(@NonNull SMSDataMessage message){
+        return sendQueue.enqueue(new OutgoingSMS(message, null));
+    }
+
+    /**
+     * Method that actually hands a message to SmsManager, called by the worker of the outbound queue.
+     * @param sms the message leaving the queue
+     */
+    private void dispatchSMS(OutgoingSMS sms){
+        String destination = sms.getDestination();
+        boolean tracked = sms.getHandle() != null;
+        boolean retryable = sms.getAttempt() < retryScheduler.getPolicy().getMaxAttempts();
+        boolean awaitingDelivery = tracked
+                || ((deliveredListener != null || !deliveredStreams.isEmpty()) && !sms.isData());
+        //The delivery latency of a subscription is measured from the sent event.
+        boolean awaitingSent = tracked || retryable || (awaitingDelivery && multiSimEnabled)
+                || ((sentListener != null || !sentStreams.isEmpty()) && !sms.isData());
+        int subscriptionId = multiSimEnabled ? subscriptionSelector.select() : SubscriptionSelector.NO_SUBSCRIPTION;
+        SmsManager manager = subscriptionManagers.get(subscriptionId);
+        if(manager == null){
+            manager = smsManager;
+            subscriptionId = SubscriptionSelector.NO_SUBSCRIPTION;
+        }
+        int id = INVALID_ID;
+        try{
+            String body = null;
+            ArrayList<String> parts = null;
+            if(!sms.isData()){
+                body = SmsUtils.composeMessage(sms.getBody(),sms.isUrgent());
+                if(sms.isMultipart() && SMSEncoding.getSegmentCount(body) > 1){
+                    parts = manager.divideMessage(body);
+                    if(parts.size() < 2) parts = null;
+                }
+            }
+            int partCount = parts == null ? 1 : parts.size();
+            id = pendingSends.register(sms, partCount, awaitingSent, awaitingDelivery);
+            ArrayList<PendingIntent> sentIntents = awaitingSent
+                    ? getPartIntents(SENT_BROADCAST, id, partCount) : null;
+            ArrayList<PendingIntent> deliveryIntents = awaitingDelivery
+                    ? getPartIntents(DELIVERED_BROADCAST, id, partCount) : null;
+            sms.onDispatched(subscriptionId);
+            if(parts != null){
+                manager.sendMultipartTextMessage(destination,scAddress,parts,sentIntents,deliveryIntents);
+                return;
+            }
+            PendingIntent sentIntent = sentIntents == null ? null : sentIntents.get(0);
+            PendingIntent deliveryIntent = deliveryIntents == null ? null : deliveryIntents.get(0);
+            if(sms.isData()){
+                byte[] data = sms.getDataMessage().getData();
+                manager.sendDataMessage(destination,scAddress,DATA_PORT,data,sentIntent,deliveryIntent);
+                return;
+            }
+            manager.sendTextMessage(destination,scAddress,body,sentIntent,deliveryIntent);
+        }
+        catch(RuntimeException e){
+            //No broadcast will ever arrive for this message.
+            if(id != INVALID_ID) pendingSends.remove(id);
+            sms.onNotSent(SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+            throw e;
+        }
+    }
+
+    /**
+     * Method to build the PendingIntents for an event of every part of a message. Each one carries
+     * the id of the message and the index of its part, so that a failure of any part is reported.
+     * @param action the action of the broadcast, {@link #SENT_BROADCAST} or {@link #DELIVERED_BROADCAST}
+     * @param id the id of the message in the pending table
+     * @param parts the number of parts of the message
+     * @return the PendingIntents, in the order of the parts
+     */
+    private ArrayList<PendingIntent> getPartIntents(String action, int id, int parts){
+        ArrayList<PendingIntent> intents = new ArrayList<>(parts);
+        for(int i = 0; i < parts; i++){
+            Intent intent = new Intent(action).putExtra(EXTRA_ID_KEY,id).putExtra(EXTRA_PART_KEY,i);
+            intents.add(getPertinentPendingIntent(intent,id + i));
+        }
+        return intents;
+    }
+
+    /**
+     * Method to enable or disable multipart mode. When enabled messages that do not fit in a single
+     * SMS are split and sent as a concatenated message, up to {@link SMSMessage#MAX_MESSAGE_PARTS}
+     * SMS. When disabled such messages are
+     * refused. Incoming concatenated messages are always joined back together.
+     * @param enabled whether multipart mode should be enabled.
+     */
+    public void setMultipartEnabled(boolean enabled){
+        multipartEnabled = enabled;
+    }
+
+    /**
+     * @return true if messages longer than a single SMS can be sent, false otherwise.
+     */
+    public boolean isMultipartEnabled(){
+        return multipartEnabled;
+    }
+
+    /**
+     * Method to enable or disable compression. When enabled the body of every text message is
+     * compressed and sent that way if it takes fewer SMS, see {@link SMSCompression}. Received
+     * messages are always decompressed before reaching the listener or the unread store, whether
+     * compression is enabled or not.
+     * @param enabled whether compression should be enabled.
+     */
+    public void setCompressionEnabled(boolean enabled){
+        compressionEnabled = enabled;
+    }
+
+    /**
+     * @return true if outgoing messages are compressed when it saves SMS, false otherwise.
+     */
+    public boolean isCompressionEnabled(){
+        return compressionEnabled;
+    }
+
+    /**
+     * Method to enable or disable multi-SIM mode. When enabled outgoing messages are spread across
+     * all the active subscriptions, favouring the ones with fewer send failures and faster delivery
+     * reports. The subscriptions are read when the mode is enabled, call this method again to refresh
+     * them. Reading them requires Android 5.1 and the READ_PHONE_STATE permission, without which the
+     * default subscription keeps being used. The send rate limit applies to the overall traffic.
+     * @param enabled whether multi-SIM mode should be enabled.
+     * @return true if more than one subscription is being used, false otherwise.
+     */
+    public boolean setMultiSimEnabled(boolean enabled){
+        if(!enabled){
+            multiSimEnabled = false;
+            return false;
+        }
+        int[] subscriptionIds = getActiveSubscriptionIds();
+        subscriptionSelector.setSubscriptions(subscriptionIds);
+        subscriptionManagers.clear();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1){
+            for(int id : subscriptionIds)
+                subscriptionManagers.put(id, SmsManager.getSmsManagerForSubscriptionId(id));
+        }
+        multiSimEnabled = subscriptionIds.length > 1;
+        return multiSimEnabled;
+    }
+
+    /**
+     * @return true if messages are being spread across more than one subscription.
      */
-    public void sendSMS(String destination, @NonNull String message, boolean urgent){
-        if(!SmsUtils.isMessageValid(message,urgent)) return;
-        String body = SmsUtils.composeMessage(message,urgent);
-        PendingIntent sentIntent;
-        PendingIntent deliveryIntent;
-        if(sentListener != null){
-            Intent intent = new Intent(SENT_BROADCAST)
-                    .putExtra(EXTRA_ADDRESS_KEY,destination)
-                    .putExtra(EXTRA_MESSAGE_KEY,message);
-            sentIntent = getPertinentPendingIntent(intent);
+    public boolean isMultiSimEnabled(){
+        return multiSimEnabled;
+    }
+
+    /**
+     * @return the ids of the active subscriptions, an empty array if they can't be read.
+     */
+    private int[] getActiveSubscriptionIds(){
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) return new int[0];
+        try{
+            SubscriptionManager subscriptionManager = SubscriptionManager.from(currentContext);
+            List<SubscriptionInfo> infoList = subscriptionManager.getActiveSubscriptionInfoList();
+            if(infoList == null) return new int[0];
+            int[] ids = new int[infoList.size()];
+            for(int i = 0; i < ids.length; i++) ids[i] = infoList.get(i).getSubscriptionId();
+            return ids;
         }
-        else sentIntent = null;
-        if(deliveredListener != null){
-            Intent intent = new Intent(DELIVERED_BROADCAST)
-                    .putExtra(EXTRA_ADDRESS_KEY,destination)
-                    .putExtra(EXTRA_MESSAGE_KEY,message);
-            deliveryIntent = getPertinentPendingIntent(intent);
+        catch(SecurityException e){
+            Log.w(LOG_TAG, "READ_PHONE_STATE is required to use more than one subscription.", e);
+            return new int[0];
         }
-        else deliveryIntent = null;
-        smsManager.sendTextMessage(destination,scAddress,body,sentIntent,deliveryIntent);
+    }
+
+    /**
+     * Method to set the Executor received messages are handed to the listeners on. A single message
+     * at a time is dispatched, in the order they have been received. Topic listeners and
+     * ReceivedMessageListeners registered without an Executor are notified on this one.
+     * @param executor the new Executor, null to go back to the main Thread.
+     */
+    public void setReceiveExecutor(Executor executor){
+        receiveBuffer.setExecutor(executor != null ? executor : MainThreadExecutor.getInstance());
+    }
+
+    /**
+     * @return the number of received messages waiting to be handed to the listeners.
+     */
+    public int getReceiveQueueDepth(){
+        return receiveBuffer.size();
+    }
+
+    /**
+     * @return how many received messages have been stored because the receive buffer was full.
+     */
+    public long getSpilledReceiveCount(){
+        return spilledReceiveCount.get();
+    }
+
+    /**
+     * @return the number of messages waiting in the outbound queue.
+     */
+    public int getSendQueueDepth(){
+        return sendQueue.size();
+    }
+
+    /**
+     * @return how many queued messages have been discarded to make room for newer ones.
+     */
+    public long getDroppedSendCount(){
+        return sendQueue.getDroppedCount();
+    }
+
+    /**
+     * @return how many messages have been refused because the outbound queue was full.
+     */
+    public long getRejectedSendCount(){
+        return sendQueue.getRejectedCount();
+    }
+
+    /**
+     * Method to set the maximum rate at which queued messages are handed to the system.
+     * @param messagesPerSecond how many messages can be sent every second on average.
+     * @param burst how many messages can be sent at once after the queue has been idle.
+     * @throws IllegalArgumentException if the rate is not positive or the burst is less than 1.
+     */
+    public void setSendRateLimit(double messagesPerSecond, int burst){
+        sendQueue.setRate(messagesPerSecond, burst);
+    }
+
+    /**
+     * Method to set the maximum number of messages that can wait in the outbound queue.
+     * @param capacity the new capacity, at least 1.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public void setSendQueueCapacity(int capacity){
+        sendQueue.setCapacity(capacity);
+    }
+
+    /**
+     * Method to set what happens when a message is sent while the outbound queue is full.
+     * @param policy the new policy.
+     */
+    public void setSendOverflowPolicy(@NonNull SendOverflowPolicy policy){
+        sendQueue.setOverflowPolicy(policy);
     }
 
     /**
      * Method to return an appropriate PendingIntent
      * @param intent the base intent
+     * @param requestCode the id of the part in the pending table, unique in the process so that
+     *                    FLAG_CANCEL_CURRENT never cancels the PendingIntent of another part
      * @return the PendingIntent in charge of firing the given intent as a Broadcast
      */
-    private PendingIntent getPertinentPendingIntent(Intent intent){
+    private PendingIntent getPertinentPendingIntent(Intent intent, int requestCode){
         return PendingIntent.getBroadcast(
                 currentContext,
-                generateRequestCode(),intent,
+                requestCode,intent,
                 PendingIntent.FLAG_CANCEL_CURRENT
         );
     }
 
     /**
-     * Method to generate a unique request code based on current system time
-     * @return an int value ranging from 0 to Integer.MAX_VALUE
+     * Method to set how messages whose sending failed are retried. The default policy is
+     * {@link SendRetryPolicy#DEFAULT}, {@link SendRetryPolicy#NO_RETRY} disables retries.
+     * Listeners and handles are only notified of the outcome of the last attempt.
+     * @param policy the new policy, applied to messages failing from now on.
+     */
+    public void setRetryPolicy(@NonNull SendRetryPolicy policy){
+        retryScheduler.setPolicy(policy);
+    }
+
+    /**
+     * @return the number of failed messages waiting to be retried.
      */
-    private int generateRequestCode(){
-        return (int)(System.currentTimeMillis()%Integer.MAX_VALUE);
+    public int getPendingRetryCount(){
+        return retryScheduler.size();
+    }
+
+    /**
+     * @return the number of sent messages still waiting for their sent or delivered broadcast.
+     */
+    public int getPendingSendCount(){
+        return pendingSends.size();
     }
 
     /**
@@ -184,9 +685,454 @@ public class SMSHandler {
      * @throws IllegalStateException if a listener is already attached to this instance.
      */
     public void setReceivedListener(@NonNull ReceivedMessageListener<SMSMessage> newReceivedListener) throws IllegalStateException{
+        setReceivedListener(newReceivedListener, null);
+    }
+
+    /**
+     * Method to set the ReceivedMessageListener for this instance, notified on the given Executor.
+     * Listener needs to be cleared before a new one is set.
+     * @param newReceivedListener non-null new ReceivedMessageListener.
+     * @param executor the Executor the listener is notified on, null to notify it on the receive
+     *                 Executor set through {@link #setReceiveExecutor(Executor)}.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setReceivedListener(@NonNull ReceivedMessageListener<SMSMessage> newReceivedListener, Executor executor) throws IllegalStateException{
         if(receivedListener != null) throw new IllegalStateException(ERRORS[0]);
         receivedListener = newReceivedListener;
-        activeReceivedListeners.add(receivedListener);
+        receivedListeners.add(this, receivedListener, false, executor);
+    }
+
+    /**
+     * Method to add a ReceivedMessageListener to this instance, alongside the one set through
+     * {@link #setReceivedListener(ReceivedMessageListener)} and any other added one. Every incoming
+     * message is forwarded to all of them.
+     * @param listener non-null listener to add.
+     * @param weakReference whether the listener should be held through a WeakReference. A weakly held
+     *                      listener, such as an Activity, is dropped once it is no longer used
+     *                      elsewhere, even if it is never removed.
+     * @return true if the listener has been added, false if it already was.
+     */
+    public boolean addReceivedListener(@NonNull ReceivedMessageListener<SMSMessage> listener, boolean weakReference){
+        return receivedListeners.add(this, listener, weakReference, null);
+    }
+
+    /**
+     * Method to add a ReceivedMessageListener to this instance, notified on the given Executor.
+     * @param listener non-null listener to add.
+     * @param weakReference whether the listener should be held through a WeakReference.
+     * @param executor the Executor the listener is notified on, null to notify it on the receive
+     *                 Executor set through {@link #setReceiveExecutor(Executor)}.
+     * @return true if the listener has been added, false if it already was.
+     */
+    public boolean addReceivedListener(@NonNull ReceivedMessageListener<SMSMessage> listener, boolean weakReference, Executor executor){
+        return receivedListeners.add(this, listener, weakReference, executor);
+    }
+
+    /**
+     * Method to remove a ReceivedMessageListener added through
+     * {@link #addReceivedListener(ReceivedMessageListener, boolean)}.
+     * @param listener the listener to remove.
+     * @return true if the listener was attached to this instance, false otherwise.
+     */
+    public boolean removeReceivedListener(@NonNull ReceivedMessageListener<SMSMessage> listener){
+        if(listener == receivedListener){
+            clearReceivedListener();
+            return true;
+        }
+        return receivedListeners.remove(this, listener);
+    }
+
+    /**
+     * Method to subscribe a listener to a topic. Incoming messages whose body continues with the
+     * topic right after {@link #APP_KEY} are forwarded to the listeners of the longest such topic
+     * instead of the ReceivedMessageListeners, which act as the default route for all the messages
+     * not matching any topic. The message is forwarded whole, library code and topic included.
+     * @param topic the non-empty topic, for example "chat:" to receive messages starting with "&lt;#&gt;chat:".
+     * @param listener non-null listener to subscribe.
+     * @return true if the listener has been subscribed, false if it already was to this topic.
+     * @throws IllegalArgumentException if the topic is empty.
+     */
+    public boolean addTopicListener(@NonNull String topic, @NonNull ReceivedMessageListener<SMSMessage> listener){
+        return topicRouter.add(topic, listener, false, null);
+    }
+
+    /**
+     * Method to subscribe a listener to a topic, notified on the given Executor.
+     * @param topic the non-empty topic.
+     * @param listener non-null listener to subscribe.
+     * @param weakReference whether the listener should be held through a WeakReference. A topic whose
+     *                      listeners have all been collected no longer matches.
+     * @param executor the Executor the listener is notified on, null to notify it on the receive
+     *                 Executor set through {@link #setReceiveExecutor(Executor)}.
+     * @return true if the listener has been subscribed, false if it already was to this topic.
+     * @throws IllegalArgumentException if the topic is empty.
+     */
+    public boolean addTopicListener(@NonNull String topic, @NonNull ReceivedMessageListener<SMSMessage> listener,
+                                    boolean weakReference, Executor executor){
+        return topicRouter.add(topic, listener, weakReference, executor);
+    }
+
+    /**
+     * Method to unsubscribe a listener from a topic.
+     * @param topic the topic the listener was subscribed to.
+     * @param listener the listener to unsubscribe.
+     * @return true if the listener was subscribed to the topic, false otherwise.
+     */
+    public boolean removeTopicListener(@NonNull String topic, @NonNull ReceivedMessageListener<SMSMessage> listener){
+        return topicRouter.remove(topic, listener);
+    }
+
+    /**
+     * Method to add an outcome to all the streams of a kind.
+     * @param source the streams.
+     * @param resultCode the result code of the event.
+     * @param message the message the event refers to.
+     */
+    private void offerResult(ListenerRegistry<MessageStream<MessageResult<SMSMessage>>> source,
+                             int resultCode, SMSMessage message){
+        if(source.isEmpty()) return;
+        final MessageResult<SMSMessage> result = new MessageResult<>(resultCode, message);
+        source.forEach(this, new ListenerRegistry.Action<MessageStream<MessageResult<SMSMessage>>>() {
+            @Override
+            public void run(MessageStream<MessageResult<SMSMessage>> stream) {
+                stream.offer(result);
+            }
+        });
+    }
+
+    /**
+     * Method to open a stream of received messages, handed to the subscriber only as fast as it
+     * requests them. Messages taken by topic listeners are not part of the stream.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with messages arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of messages waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @param includeStored whether the messages stored in the database should be part of the stream.
+     *                      They are read only when requested, handed over before the new ones and
+     *                      never dropped, and removed from the database once handed over.
+     * @return the subscription, also handed to the subscriber.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    @NonNull
+    public MessageSubscription subscribeReceived(@NonNull MessageSubscriber<? super SMSMessage> subscriber,
+                                                 @NonNull StreamOverflowPolicy policy, int capacity,
+                                                 Executor executor, boolean includeStored){
+        final AtomicReference<MessageStream<SMSMessage>> holder = new AtomicReference<>();
+        final ReceivedMessageListener<SMSMessage> adapter = new ReceivedMessageListener<SMSMessage>() {
+            @Override
+            public void onMessageReceived(SMSMessage message) {
+                holder.get().offer(message);
+            }
+        };
+        MessageStream<SMSMessage> stream = new MessageStream<>(
+                subscriber, policy, capacity,
+                executor != null ? executor : MainThreadExecutor.getInstance(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        receivedListeners.remove(SMSHandler.this, adapter);
+                        streams.remove(SMSHandler.this, holder.get());
+                    }
+                },
+                includeStored ? openStoredBacklog(null) : null
+        );
+        holder.set(stream);
+        streams.add(this, stream, false);
+        //The stream never blocks, so it takes messages right on the receive Executor.
+        receivedListeners.add(this, adapter, false);
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Method to open a stream of the messages received from a single Peer, handed to the subscriber
+     * only as fast as it requests them. Messages from the Peer are part of the stream even if a topic
+     * listener or another listener takes them too, messages from other Peers are left to the
+     * listeners or stored.
+     * @param peer the Peer the messages come from.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with messages arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of messages waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @param includeStored whether the messages from the Peer stored in the database should be part
+     *                      of the stream. They are read only when requested, handed over before the
+     *                      new ones and never dropped, and removed from the database once handed
+     *                      over. Stored messages from other Peers are left untouched.
+     * @return the subscription, also handed to the subscriber.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    @NonNull
+    public MessageSubscription subscribeReceivedFrom(@NonNull SMSPeer peer,
+                                                     @NonNull MessageSubscriber<? super SMSMessage> subscriber,
+                                                     @NonNull StreamOverflowPolicy policy, int capacity,
+                                                     Executor executor, boolean includeStored){
+        final AtomicReference<PeerStream> holder = new AtomicReference<>();
+        MessageStream<SMSMessage> stream = new MessageStream<>(
+                subscriber, policy, capacity,
+                executor != null ? executor : MainThreadExecutor.getInstance(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        peerStreams.remove(SMSHandler.this, holder.get());
+                        streams.remove(SMSHandler.this, holder.get().stream);
+                    }
+                },
+                includeStored ? openStoredBacklog(peer) : null
+        );
+        PeerStream peerStream = new PeerStream(peer, stream);
+        holder.set(peerStream);
+        streams.add(this, stream, false);
+        peerStreams.add(this, peerStream, false);
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Method to open a backlog of stored messages for a stream.
+     * @param peer the Peer the messages come from, null for all of them.
+     * @return the backlog.
+     */
+    private StoredMessageBacklog openStoredBacklog(SMSPeer peer){
+        return new StoredMessageBacklog(SMSDatabaseManager.getInstance(currentContext)
+                .openCursor(peer, SMSDatabaseManager.DEFAULT_FORWARD_PAGE_SIZE));
+    }
+
+    /**
+     * Class holding a stream together with the Peer whose messages it takes.
+     */
+    private static class PeerStream {
+        private final SMSPeer peer;
+        private final MessageStream<SMSMessage> stream;
+
+        private PeerStream(SMSPeer peer, MessageStream<SMSMessage> stream){
+            this.peer = peer;
+            this.stream = stream;
+        }
+    }
+
+    /**
+     * Method to open a stream of the outcomes of sent messages, handed to the subscriber only as fast
+     * as it requests them.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with outcomes arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of outcomes waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @return the subscription, also handed to the subscriber.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    @NonNull
+    public MessageSubscription subscribeSent(@NonNull MessageSubscriber<? super MessageResult<SMSMessage>> subscriber,
+                                             @NonNull StreamOverflowPolicy policy, int capacity, Executor executor){
+        return openResultStream(sentStreams, subscriber, policy, capacity, executor);
+    }
+
+    /**
+     * Method to open a stream of the delivery reports of sent messages, handed to the subscriber only
+     * as fast as it requests them.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with reports arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of reports waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @return the subscription, also handed to the subscriber.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    @NonNull
+    public MessageSubscription subscribeDelivered(@NonNull MessageSubscriber<? super MessageResult<SMSMessage>> subscriber,
+                                                  @NonNull StreamOverflowPolicy policy, int capacity, Executor executor){
+        return openResultStream(deliveredStreams, subscriber, policy, capacity, executor);
+    }
+
+    /**
+     * Method to open a stream of outcomes and add it to the streams of its kind.
+     * @param source the streams of the same kind.
+     * @return the started stream.
+     */
+    private MessageStream<MessageResult<SMSMessage>> openResultStream(
+            final ListenerRegistry<MessageStream<MessageResult<SMSMessage>>> source,
+            MessageSubscriber<? super MessageResult<SMSMessage>> subscriber,
+            StreamOverflowPolicy policy, int capacity, Executor executor){
+        final AtomicReference<MessageStream<MessageResult<SMSMessage>>> holder = new AtomicReference<>();
+        MessageStream<MessageResult<SMSMessage>> stream = new MessageStream<>(
+                subscriber, policy, capacity,
+                executor != null ? executor : MainThreadExecutor.getInstance(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        source.remove(SMSHandler.this, holder.get());
+                        streams.remove(SMSHandler.this, holder.get());
+                    }
+                }
+        );
+        holder.set(stream);
+        streams.add(this, stream, false);
+        source.add(this, stream, false);
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Method to hand received messages to every instance of this class in this process that is
+     * listening for them, without going through a broadcast. Called by SMSReceiver, which has already
+     * decoded and filtered the messages.
+     * @param messages the pertinent messages, not received before.
+     * @return true if at least one instance has taken the messages, false if none was listening in
+     * this process.
+     */
+    static boolean deliverReceived(@NonNull final SMSMessage[] messages){
+        final AtomicInteger taken = new AtomicInteger();
+        liveHandlers.forEach(SMSHandler.class, new ListenerRegistry.Action<SMSHandler>() {
+            @Override
+            public void run(SMSHandler handler) {
+                if(!handler.isReceiving()) return;
+                taken.incrementAndGet();
+                handler.enqueueReceived(messages);
+            }
+        });
+        return taken.get() > 0;
+    }
+
+    /**
+     * Method to hand received data messages to every instance of this class in this process with a
+     * listener for them, without going through a broadcast. The listeners are notified on their
+     * Executors.
+     * @param messages the data messages.
+     * @return true if at least one instance has taken the messages, false otherwise.
+     */
+    static boolean deliverData(@NonNull final SMSDataMessage[] messages){
+        final AtomicInteger taken = new AtomicInteger();
+        liveHandlers.forEach(SMSHandler.class, new ListenerRegistry.Action<SMSHandler>() {
+            @Override
+            public void run(SMSHandler handler) {
+                if(!dataListeners.hasListeners(handler)) return;
+                taken.incrementAndGet();
+                handler.notifyData(messages);
+            }
+        });
+        return taken.get() > 0;
+    }
+
+    /**
+     * Method to put received messages in the receive buffer, messages not fitting in it are stored.
+     * @param messages the received messages.
+     */
+    private void enqueueReceived(SMSMessage[] messages){
+        List<SMSMessage> spilled = new ArrayList<>(0);
+        for(SMSMessage message : messages){
+            if(!receiveBuffer.offer(message)) spilled.add(message);
+        }
+        if(!spilled.isEmpty()){
+            //The listeners are falling behind, the messages are kept for loadUnread.
+            spilledReceiveCount.addAndGet(spilled.size());
+            Log.w(LOG_TAG, "Receive buffer full, " + spilled.size() + " messages stored.");
+            store(spilled);
+        }
+    }
+
+    /**
+     * Method to notify the data listeners of this instance, on their Executors.
+     * @param messages the received data messages.
+     */
+    private void notifyData(final SMSDataMessage[] messages){
+        dataListeners.forEach(this, new ListenerRegistry.Action<ReceivedMessageListener<SMSDataMessage>>() {
+            @Override
+            public void run(ReceivedMessageListener<SMSDataMessage> listener) {
+                for(SMSDataMessage message : messages) listener.onMessageReceived(message);
+            }
+        });
+    }
+
+    /**
+     * Method called by the receive buffer for every message leaving it. Messages no listener is left
+     * to take are stored.
+     * @param message the received message.
+     */
+    private void dispatchReceived(SMSMessage message){
+        int taken = routeReceived(message) + offerToPeerStreams(message);
+        if(taken == 0 && !receivedListeners.hasLiveListeners()){
+            List<SMSMessage> unhandled = new ArrayList<>(1);
+            unhandled.add(message);
+            store(unhandled);
+        }
+    }
+
+    /**
+     * Method to store received messages, so that they can be retrieved with {@link #loadUnread()}.
+     * @param messages the messages to store.
+     */
+    private void store(List<SMSMessage> messages){
+        if(messages.isEmpty()) return;
+        SMSWritePipeline.getInstance(applicationContext).write(messages.toArray(new SMSMessage[0]), null);
+    }
+
+    /**
+     * Method to hand a message to the streams of this instance limited to the Peer it comes from.
+     * Streams never block, so they are offered the message on the calling Thread.
+     * @param message the message to hand.
+     * @return the number of streams the message has been handed to.
+     */
+    private int offerToPeerStreams(final SMSMessage message){
+        if(peerStreams.isEmpty()) return 0;
+        final AtomicInteger taken = new AtomicInteger();
+        peerStreams.forEach(this, new ListenerRegistry.Action<PeerStream>() {
+            @Override
+            public void run(PeerStream peerStream) {
+                if(!peerStream.peer.equals(message.getPeer())) return;
+                taken.incrementAndGet();
+                peerStream.stream.offer(message);
+            }
+        });
+        return taken.get();
+    }
+
+    /**
+     * @return true if this instance has at least one listener or stream for received messages.
+     */
+    private boolean isReceiving(){
+        return receivedListeners.hasListeners(this) || !topicRouter.isEmpty() || peerStreams.hasListeners(this);
+    }
+
+    /**
+     * Method to forward a message to the live listeners of its topic or, if it matches none, to all
+     * the live ReceivedMessageListeners of this instance. Listeners registered without an Executor are
+     * notified on the calling Thread.
+     * @param message the message to forward.
+     * @return the number of listeners the message has been forwarded to.
+     */
+    private int routeReceived(final SMSMessage message){
+        ListenerRegistry.Action<ReceivedMessageListener<SMSMessage>> action =
+                new ListenerRegistry.Action<ReceivedMessageListener<SMSMessage>>() {
+            @Override
+            public void run(ReceivedMessageListener<SMSMessage> listener) {
+                listener.onMessageReceived(message);
+            }
+        };
+        int routed = topicRouter.forEach(message.getData(), APP_KEY.length(), action);
+        if(routed > 0) return routed;
+        return receivedListeners.forEach(this, action);
+    }
+
+    /**
+     * Method to set the ReceivedMessageListener for data messages for this instance. Listener needs to
+     * be cleared before a new one is set. Data messages received while no such listener is attached
+     * anywhere are not stored.
+     * @param newReceivedDataListener non-null new ReceivedMessageListener.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setReceivedDataListener(@NonNull ReceivedMessageListener<SMSDataMessage> newReceivedDataListener) throws IllegalStateException{
+        setReceivedDataListener(newReceivedDataListener, null);
+    }
+
+    /**
+     * Method to set the ReceivedMessageListener for data messages for this instance, notified on the
+     * given Executor. Listener needs to be cleared before a new one is set.
+     * @param newReceivedDataListener non-null new ReceivedMessageListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setReceivedDataListener(@NonNull ReceivedMessageListener<SMSDataMessage> newReceivedDataListener, Executor executor) throws IllegalStateException{
+        if(receivedDataListener != null) throw new IllegalStateException(ERRORS[3]);
+        receivedDataListener = newReceivedDataListener;
+        dataListeners.add(this, receivedDataListener, false, executor != null ? executor : MainThreadExecutor.getInstance());
     }
 
     /**
@@ -195,7 +1141,19 @@ public class SMSHandler {
      * @throws IllegalStateException if a listener is already attached to this instance.
      */
     public void setSentListener(@NonNull SentMessageListener<SMSMessage> newSentListener) throws IllegalStateException{
+        setSentListener(newSentListener, null);
+    }
+
+    /**
+     * Method to set the SentMessageListener for this instance, notified on the given Executor.
+     * Listener needs to be cleared before a new one is set.
+     * @param newSentListener non-null new SentMessageListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setSentListener(@NonNull SentMessageListener<SMSMessage> newSentListener, Executor executor) throws IllegalStateException{
         if(sentListener != null) throw new IllegalStateException(ERRORS[1]);
+        sentExecutor = executor != null ? executor : MainThreadExecutor.getInstance();
         sentListener = newSentListener;
     }
 
@@ -205,53 +1163,271 @@ public class SMSHandler {
      * @throws IllegalStateException if a listener is already attached to this instance.
      */
     public void setDeliveredListener(@NonNull DeliveredMessageListener<SMSMessage> newDeliveredListener) throws IllegalStateException{
+        setDeliveredListener(newDeliveredListener, null);
+    }
+
+    /**
+     * Method to set the DeliveredMessageListener for this instance, notified on the given Executor.
+     * Listener needs to be cleared before a new one is set.
+     * @param newDeliveredListener non-null new DeliveredMessageListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setDeliveredListener(@NonNull DeliveredMessageListener<SMSMessage> newDeliveredListener, Executor executor) throws IllegalStateException{
         if(deliveredListener != null) throw new IllegalStateException(ERRORS[2]);
+        deliveredExecutor = executor != null ? executor : MainThreadExecutor.getInstance();
         deliveredListener = newDeliveredListener;
     }
 
+    /**
+     * Method to set a ReceivedBatchListener for this instance, receiving messages in batches as
+     * defined by {@link #setBatchWindow(long, int)}. It takes the place of the ReceivedMessageListener,
+     * which needs to be cleared before a new one is set.
+     * @param newReceivedListener non-null new ReceivedBatchListener.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setReceivedBatchListener(@NonNull ReceivedBatchListener<SMSMessage> newReceivedListener) throws IllegalStateException{
+        setReceivedBatchListener(newReceivedListener, null);
+    }
+
+    /**
+     * Method to set a ReceivedBatchListener for this instance, receiving every batch on the given
+     * Executor.
+     * @param newReceivedListener non-null new ReceivedBatchListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setReceivedBatchListener(@NonNull final ReceivedBatchListener<SMSMessage> newReceivedListener, Executor executor) throws IllegalStateException{
+        final EventBatcher<SMSMessage> batcher = newBatcher(new EventBatcher.Sink<SMSMessage>() {
+            @Override
+            public void onBatch(List<SMSMessage> batch) {
+                newReceivedListener.onMessagesReceived(batch);
+            }
+        }, executor);
+        setReceivedListener(new ReceivedMessageListener<SMSMessage>() {
+            @Override
+            public void onMessageReceived(SMSMessage message) {
+                batcher.add(message);
+            }
+        }, CallbackExecutors.sameThread());
+        receivedBatcher = batcher;
+    }
+
+    /**
+     * Method to set a SentBatchListener for this instance, receiving the outcomes of sent messages in
+     * batches as defined by {@link #setBatchWindow(long, int)}. It takes the place of the
+     * SentMessageListener, which needs to be cleared before a new one is set.
+     * @param newSentListener non-null new SentBatchListener.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setSentBatchListener(@NonNull SentBatchListener<SMSMessage> newSentListener) throws IllegalStateException{
+        setSentBatchListener(newSentListener, null);
+    }
+
+    /**
+     * Method to set a SentBatchListener for this instance, receiving every batch on the given
+     * Executor.
+     * @param newSentListener non-null new SentBatchListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setSentBatchListener(@NonNull final SentBatchListener<SMSMessage> newSentListener, Executor executor) throws IllegalStateException{
+        EventBatcher<MessageResult<SMSMessage>> batcher = newBatcher(new EventBatcher.Sink<MessageResult<SMSMessage>>() {
+            @Override
+            public void onBatch(List<MessageResult<SMSMessage>> batch) {
+                newSentListener.onMessagesSent(batch);
+            }
+        }, executor);
+        setSentListener(new ResultBatchAdapter(batcher), CallbackExecutors.sameThread());
+        sentBatcher = batcher;
+    }
+
+    /**
+     * Method to set a DeliveredBatchListener for this instance, receiving the delivery reports of sent
+     * messages in batches as defined by {@link #setBatchWindow(long, int)}. It takes the place of the
+     * DeliveredMessageListener, which needs to be cleared before a new one is set.
+     * @param newDeliveredListener non-null new DeliveredBatchListener.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setDeliveredBatchListener(@NonNull DeliveredBatchListener<SMSMessage> newDeliveredListener) throws IllegalStateException{
+        setDeliveredBatchListener(newDeliveredListener, null);
+    }
+
+    /**
+     * Method to set a DeliveredBatchListener for this instance, receiving every batch on the given
+     * Executor.
+     * @param newDeliveredListener non-null new DeliveredBatchListener.
+     * @param executor the Executor the listener is notified on, null for the main Thread.
+     * @throws IllegalStateException if a listener is already attached to this instance.
+     */
+    public void setDeliveredBatchListener(@NonNull final DeliveredBatchListener<SMSMessage> newDeliveredListener, Executor executor) throws IllegalStateException{
+        EventBatcher<MessageResult<SMSMessage>> batcher = newBatcher(new EventBatcher.Sink<MessageResult<SMSMessage>>() {
+            @Override
+            public void onBatch(List<MessageResult<SMSMessage>> batch) {
+                newDeliveredListener.onMessagesDelivered(batch);
+            }
+        }, executor);
+        setDeliveredListener(new ResultBatchAdapter(batcher), CallbackExecutors.sameThread());
+        deliveredBatcher = batcher;
+    }
+
+    /**
+     * Method to create the batcher behind a batch listener, using the current batch window. The
+     * batcher hands every batch over on its Executor, so the listener adding events to it must be
+     * registered with {@link CallbackExecutors#sameThread()} for events to be added right away.
+     * @param sink the object handing the batches to the batch listener.
+     * @param executor the Executor the batches are handed over on, null for the main Thread.
+     * @param <E> the type of the events.
+     * @return the new batcher.
+     */
+    private <E> EventBatcher<E> newBatcher(@NonNull EventBatcher.Sink<E> sink, Executor executor){
+        return new EventBatcher<>(sink, batchWindowMillis, maxBatchSize,
+                executor != null ? executor : MainThreadExecutor.getInstance());
+    }
+
+    /**
+     * Class adding the outcomes of sent messages, or their delivery reports, to a batcher.
+     */
+    private static class ResultBatchAdapter implements SentMessageListener<SMSMessage>, DeliveredMessageListener<SMSMessage> {
+        private final EventBatcher<MessageResult<SMSMessage>> batcher;
+
+        private ResultBatchAdapter(EventBatcher<MessageResult<SMSMessage>> batcher){
+            this.batcher = batcher;
+        }
+
+        @Override
+        public void onMessageSent(int resultCode, SMSMessage message){
+            batcher.add(new MessageResult<>(resultCode, message));
+        }
+
+        @Override
+        public void onMessageDelivered(int resultCode, SMSMessage message){
+            batcher.add(new MessageResult<>(resultCode, message));
+        }
+    }
+
+    /**
+     * Method to set how events are grouped for batch listeners. A batch is handed over when the
+     * given time has passed since its first event or as soon as it holds the given number of events.
+     * Batches already open keep their window.
+     * @param windowMillis how long the first event of a batch can wait for others, 0 to only wait
+     *                     for the events arriving together.
+     * @param maxBatchSize the maximum number of events in a batch, at least 1.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    public void setBatchWindow(long windowMillis, int maxBatchSize){
+        EventBatcher.checkWindow(windowMillis, maxBatchSize);
+        this.batchWindowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        if(receivedBatcher != null) receivedBatcher.setWindow(windowMillis, maxBatchSize);
+        if(sentBatcher != null) sentBatcher.setWindow(windowMillis, maxBatchSize);
+        if(deliveredBatcher != null) deliveredBatcher.setWindow(windowMillis, maxBatchSize);
+    }
+
+    /**
+     * Method to hand all the events waiting in a batch to the batch listeners right away. The
+     * batches still reach the listeners on their Executors.
+     */
+    public void flushBatches(){
+        if(receivedBatcher != null) receivedBatcher.flush();
+        if(sentBatcher != null) sentBatcher.flush();
+        if(deliveredBatcher != null) deliveredBatcher.flush();
+    }
+
     /**
      * Method to clear this instance's attached ReceivedMessageListener. Albeit not necessary, a smsEventListener should
-     * only try to unregister itself.
+     * only try to unregister itself. Messages waiting in a batch are handed to the batch listener first.
      */
     public void clearReceivedListener(){
         if(receivedListener == null) return;
-        activeReceivedListeners.remove(receivedListener);
+        if(receivedBatcher != null){
+            receivedBatcher.flush();
+            receivedBatcher = null;
+        }
+        receivedListeners.remove(this, receivedListener);
         receivedListener = null;
     }
 
+    /**
+     * Method to clear this instance's attached ReceivedMessageListener for data messages.
+     */
+    public void clearReceivedDataListener(){
+        if(receivedDataListener == null) return;
+        dataListeners.remove(this, receivedDataListener);
+        receivedDataListener = null;
+    }
+
     /**
      * Method to clear this instance's attached SentMessageListener. Albeit not necessary, a smsEventListener should
-     * only try to unregister itself.
+     * only try to unregister itself. Events waiting in a batch are handed to the batch listener first.
      */
     public void clearSentListener(){
         if(sentListener == null) return;
+        if(sentBatcher != null){
+            sentBatcher.flush();
+            sentBatcher = null;
+        }
         sentListener = null;
     }
 
     /**
      * Method to clear this instance's attached DeliveredMessageListener. Albeit not necessary, a smsEventListener should
-     * only try to unregister itself.
+     * only try to unregister itself. Events waiting in a batch are handed to the batch listener first.
      */
     public void clearDeliveredListener(){
         if(deliveredListener == null) return;
+        if(deliveredBatcher != null){
+            deliveredBatcher.flush();
+            deliveredBatcher = null;
+        }
         deliveredListener = null;
     }
 
     /**
      * Method to communicate whether at least one smsEventListener is attached to an instance of this class
      * whose BroadcastReceiver is listening for incoming Sms, and is thus requiring to be notified.
-     * @return true if the activeReceivedListeners list is not empty.
+     * Safe to call from any Thread, it reads a single snapshot of the listeners without locking.
+     * @return true if at least one listener to incoming sms has not been collected.
      */
-    static boolean shouldHandleIncomingSms(){ return !activeReceivedListeners.isEmpty();}
+    static boolean shouldHandleIncomingSms(){
+        return receivedListeners.hasLiveListeners() || peerStreams.hasLiveListeners() || hasLiveTopicListeners();
+    }
+
+    /**
+     * @return true if at least one topic listener of a live instance has not been collected.
+     */
+    private static boolean hasLiveTopicListeners(){
+        final AtomicBoolean found = new AtomicBoolean();
+        liveHandlers.forEach(SMSHandler.class, new ListenerRegistry.Action<SMSHandler>() {
+            @Override
+            public void run(SMSHandler handler) {
+                if(handler.topicRouter.hasLiveListeners()) found.set(true);
+            }
+        });
+        return found.get();
+    }
 
     /**
-     * Method to load the unread sms messages and forward them to the listener asynchronously.
-     * @return true if the listener is assigned and an attempt has been made, false otherwise.
+     * Method to communicate whether at least one listener for data messages is attached to an instance
+     * of this class. Safe to call from any Thread.
+     * @return true if at least one listener to incoming data sms has not been collected.
+     */
+    static boolean shouldHandleIncomingData(){ return dataListeners.hasLiveListeners();}
+
+    /**
+     * Method to load the unread sms messages and forward them to the listeners asynchronously.
+     * @return true if at least one listener is attached and an attempt has been made, false otherwise.
      */
     public boolean loadUnread(){
-        if(receivedListener != null){
+        if(isReceiving()){
             SMSDatabaseManager manager = SMSDatabaseManager.getInstance(currentContext);
-            manager.forwardAllSMS(receivedListener);
+            //Stored messages go through the receive buffer, reaching the listeners like new ones.
+            manager.forwardAllSMS(new ReceivedMessageListener<SMSMessage>() {
+                @Override
+                public void onMessageReceived(SMSMessage message) {
+                    enqueueReceived(new SMSMessage[]{message});
+                }
+            });
             return true;
         }
         else return false;
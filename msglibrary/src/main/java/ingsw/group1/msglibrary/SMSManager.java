@@ -3,6 +3,8 @@ package ingsw.group1.msglibrary;
 import android.app.Activity;
 import android.content.Context;
 
+import java.util.concurrent.Executor;
+
 /**
  * Class to implement CommunicationHandler through use of SMS messages.
  * @author Riccardo De Zen based on decisions of whole class. Model proposed by Marco Cognolato and Luca Crema.
@@ -45,6 +47,7 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
     public static void onContextDestroyed(Context context){
         if(context.getApplicationContext().equals(SMSManager.currentContext)){
             instance.removeReceiveListener();
+            instance.removeReceiveDataListener();
             instance.smsHandler.onContextDestroyed();
             instance = null;
             SMSManager.currentContext = null;
@@ -52,32 +55,294 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
     }
 
     /**
-     * method to send an SMSMessage to its associated Peer
+     * method to send an SMSMessage to its associated Peer. The message is queued and sent as soon as
+     * the rate limit allows it, the method does not wait for it.
      * @param message the valid SMSMessage to send
-     * @return true if the message is valid and it has been sent, false otherwise
+     * @return true if the message is valid and it has been queued, false otherwise
      */
     @Override
     public boolean sendMessage(SMSMessage message) {
-        if(message.isValid()) {
-            smsHandler.sendSMS(message.getPeer().getAddress(), message.getData(), false);
-            return true;
-        }
+        if(message.isValid())
+            return smsHandler.sendSMS(message, false);
+        return false;
+    }
+
+    /**
+     * method to send an SMSMessage to its associated Peer and follow its outcome. The sent and
+     * delivered events of the message are reported through the returned handle, independently of the
+     * attached listeners.
+     * @param message the valid SMSMessage to send
+     * @return the handle for the message, already completed with {@link SendResult#RESULT_REJECTED}
+     * if the message is invalid or could not be queued
+     */
+    @Override
+    public SendHandle<SMSMessage> sendMessageAsync(SMSMessage message) {
+        return sendAsync(message, false);
+    }
+
+    /**
+     * Method to send an SMSMessage classified as urgent and follow its outcome.
+     * @param message the valid SMSMessage to send
+     * @return the handle for the message, already completed with {@link SendResult#RESULT_REJECTED}
+     * if the message is invalid or could not be queued
+     */
+    public SendHandle<SMSMessage> sendUrgentMessageAsync(SMSMessage message) {
+        return sendAsync(message, true);
+    }
+
+    /**
+     * Method to send an SMSMessage asynchronously
+     * @param message the SMSMessage to send
+     * @param urgent whether the message should contain the urgent code
+     * @return the handle for the message
+     */
+    private SendHandle<SMSMessage> sendAsync(SMSMessage message, boolean urgent){
+        if(message.isValid())
+            return smsHandler.sendSMSAsync(message, urgent);
+        SendHandle<SMSMessage> handle = new SendHandle<>(message);
+        handle.onNotSent(SendResult.RESULT_REJECTED);
+        return handle;
+    }
+
+    /**
+     * Method to send a binary message to the data port of its Peer. The message is not shown to the
+     * user and is received through the listener set with {@link #setReceiveDataListener}.
+     * @param message the valid SMSDataMessage to send
+     * @return true if the message is valid and it has been queued, false otherwise
+     */
+    public boolean sendDataMessage(SMSDataMessage message) {
+        if(message.isValid())
+            return smsHandler.sendDataSMS(message);
         return false;
     }
 
+    /**
+     * Method to send a binary message to the data port of its Peer and follow its outcome.
+     * @param message the valid SMSDataMessage to send
+     * @return the handle for the message, already completed with {@link SendResult#RESULT_REJECTED}
+     * if the message is invalid or could not be queued
+     */
+    public SendHandle<SMSDataMessage> sendDataMessageAsync(SMSDataMessage message) {
+        if(message.isValid())
+            return smsHandler.sendDataSMSAsync(message);
+        SendHandle<SMSDataMessage> handle = new SendHandle<>(message);
+        handle.onNotSent(SendResult.RESULT_REJECTED);
+        return handle;
+    }
+
     /**
      * Method to send an SMSMessage classified as urgent (containing the corresponding code)
      * @param message the valid SMSMessage to send
-     * @return true if the message is valid and it has been sent, false otherwise
+     * @return true if the message is valid and it has been queued, false otherwise
      */
     public boolean sendUrgentMessage(SMSMessage message) {
-        if(message.isValid()) {
-            smsHandler.sendSMS(message.getPeer().getAddress(), message.getData(), true);
-            return true;
-        }
+        if(message.isValid())
+            return smsHandler.sendSMS(message, true);
         return false;
     }
 
+    /**
+     * Method to set the Executor received messages are handed to the listeners on.
+     * @param executor the new Executor, null to go back to the main Thread.
+     */
+    public void setReceiveExecutor(Executor executor){
+        smsHandler.setReceiveExecutor(executor);
+    }
+
+    /**
+     * Method to open a stream of received messages, calling the subscriber on the main Thread. Stored
+     * messages are read only when requested and come first. Up to 256 new messages are buffered until
+     * requested, the oldest ones are discarded when more arrive, see
+     * {@link StreamOverflowPolicy#DROP_OLDEST}.
+     * @param subscriber the subscriber of the stream.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeReceived(MessageSubscriber<? super SMSMessage> subscriber){
+        return smsHandler.subscribeReceived(subscriber, StreamOverflowPolicy.DROP_OLDEST,
+                SMSHandler.DEFAULT_STREAM_CAPACITY, null, true);
+    }
+
+    /**
+     * Method to open a stream of received messages, handed to the subscriber only as fast as it
+     * requests them.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with messages arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of messages waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @param includeStored whether the stored messages should be part of the stream.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeReceived(MessageSubscriber<? super SMSMessage> subscriber,
+                                                 StreamOverflowPolicy policy, int capacity,
+                                                 Executor executor, boolean includeStored){
+        return smsHandler.subscribeReceived(subscriber, policy, capacity, executor, includeStored);
+    }
+
+    /**
+     * Method to open a stream of the messages received from a single Peer, calling the subscriber on
+     * the main Thread. Stored messages from the Peer are read only when requested and come first.
+     * Up to 256 new messages are buffered until requested, the oldest ones are discarded when more
+     * arrive, see {@link StreamOverflowPolicy#DROP_OLDEST}. Stored messages from other Peers are left
+     * in the database.
+     * @param peer the Peer the messages come from.
+     * @param subscriber the subscriber of the stream.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeReceivedFrom(SMSPeer peer, MessageSubscriber<? super SMSMessage> subscriber){
+        return smsHandler.subscribeReceivedFrom(peer, subscriber, StreamOverflowPolicy.DROP_OLDEST,
+                SMSHandler.DEFAULT_STREAM_CAPACITY, null, true);
+    }
+
+    /**
+     * Method to open a stream of the messages received from a single Peer, handed to the subscriber
+     * only as fast as it requests them.
+     * @param peer the Peer the messages come from.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with messages arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of messages waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @param includeStored whether the stored messages from the Peer should be part of the stream.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeReceivedFrom(SMSPeer peer, MessageSubscriber<? super SMSMessage> subscriber,
+                                                     StreamOverflowPolicy policy, int capacity,
+                                                     Executor executor, boolean includeStored){
+        return smsHandler.subscribeReceivedFrom(peer, subscriber, policy, capacity, executor, includeStored);
+    }
+
+    /**
+     * Method to open a stream of the outcomes of sent messages.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with outcomes arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of outcomes waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeSent(MessageSubscriber<? super MessageResult<SMSMessage>> subscriber,
+                                             StreamOverflowPolicy policy, int capacity, Executor executor){
+        return smsHandler.subscribeSent(subscriber, policy, capacity, executor);
+    }
+
+    /**
+     * Method to open a stream of the delivery reports of sent messages.
+     * @param subscriber the subscriber of the stream.
+     * @param policy what to do with reports arriving while the buffer of the stream is full.
+     * @param capacity the maximum number of reports waiting to be requested, at least 1.
+     * @param executor the Executor the subscriber is called on, null for the main Thread.
+     * @return the subscription, also handed to the subscriber.
+     */
+    public MessageSubscription subscribeDelivered(MessageSubscriber<? super MessageResult<SMSMessage>> subscriber,
+                                                  StreamOverflowPolicy policy, int capacity, Executor executor){
+        return smsHandler.subscribeDelivered(subscriber, policy, capacity, executor);
+    }
+
+    /**
+     * @return the number of received messages waiting to be handed to the listeners.
+     */
+    public int getReceiveQueueDepth(){
+        return smsHandler.getReceiveQueueDepth();
+    }
+
+    /**
+     * @return how many received messages have been stored because the listeners fell behind.
+     */
+    public long getSpilledReceiveCount(){
+        return smsHandler.getSpilledReceiveCount();
+    }
+
+    /**
+     * @return the number of messages waiting to be sent.
+     */
+    public int getSendQueueDepth(){
+        return smsHandler.getSendQueueDepth();
+    }
+
+    /**
+     * @return how many queued messages have been discarded to make room for newer ones.
+     */
+    public long getDroppedSendCount(){
+        return smsHandler.getDroppedSendCount();
+    }
+
+    /**
+     * @return how many messages have been refused because the outbound queue was full.
+     */
+    public long getRejectedSendCount(){
+        return smsHandler.getRejectedSendCount();
+    }
+
+    /**
+     * Method to set the maximum rate at which messages are sent.
+     * @param messagesPerSecond how many messages can be sent every second on average.
+     * @param burst how many messages can be sent at once after a period with no traffic.
+     * @throws IllegalArgumentException if the rate is not positive or the burst is less than 1.
+     */
+    public void setSendRateLimit(double messagesPerSecond, int burst){
+        smsHandler.setSendRateLimit(messagesPerSecond, burst);
+    }
+
+    /**
+     * Method to set the maximum number of messages that can wait to be sent.
+     * @param capacity the new capacity, at least 1.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public void setSendQueueCapacity(int capacity){
+        smsHandler.setSendQueueCapacity(capacity);
+    }
+
+    /**
+     * Method to set what happens when a message is sent while too many are already waiting.
+     * @param policy the new policy.
+     */
+    public void setSendOverflowPolicy(SendOverflowPolicy policy){
+        smsHandler.setSendOverflowPolicy(policy);
+    }
+
+    /**
+     * Method to set how messages whose sending failed for a temporary reason (no service, radio off,
+     * rate limit) are retried. Listeners are only notified of the outcome of the last attempt.
+     * @param policy the new policy, {@link SendRetryPolicy#NO_RETRY} disables retries.
+     */
+    public void setRetryPolicy(SendRetryPolicy policy){
+        smsHandler.setRetryPolicy(policy);
+    }
+
+    /**
+     * @return the number of failed messages waiting to be retried.
+     */
+    public int getPendingRetryCount(){
+        return smsHandler.getPendingRetryCount();
+    }
+
+    /**
+     * Method to enable or disable sending messages longer than a single SMS. When enabled they are
+     * split and sent as a concatenated message, which the receiving library joins back together.
+     * @param enabled whether multipart mode should be enabled.
+     */
+    public void setMultipartEnabled(boolean enabled){
+        smsHandler.setMultipartEnabled(enabled);
+    }
+
+    /**
+     * Method to enable or disable compressing outgoing messages when it saves SMS. The receiving
+     * library decompresses them, it must use the same dictionary, see
+     * {@link SMSCompression#setDictionary(String)}.
+     * @param enabled whether compression should be enabled.
+     */
+    public void setCompressionEnabled(boolean enabled){
+        smsHandler.setCompressionEnabled(enabled);
+    }
+
+    /**
+     * Method to enable or disable spreading outgoing messages across all active SIM subscriptions.
+     * Requires the READ_PHONE_STATE permission.
+     * @param enabled whether multi-SIM mode should be enabled.
+     * @return true if more than one subscription is being used, false otherwise.
+     */
+    public boolean setMultiSimEnabled(boolean enabled){
+        return smsHandler.setMultiSimEnabled(enabled);
+    }
+
     /**
      * Setter for receivedListener in SMSHandler
      * @param newReceivedListener the new listener
@@ -88,11 +353,114 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
         smsHandler.setReceivedListener(newReceivedListener);
     }
 
+    /**
+     * Method to set the listener for incoming messages, notified on the given Executor.
+     * @param newReceivedListener the new listener.
+     * @param executor the Executor the listener is notified on, see {@link CallbackExecutors}.
+     */
+    public void setReceiveListener(ReceivedMessageListener<SMSMessage> newReceivedListener, Executor executor) {
+        removeReceiveListener();
+        smsHandler.setReceivedListener(newReceivedListener, executor);
+    }
+
     @Override
     public void removeReceiveListener() {
         smsHandler.clearReceivedListener();
     }
 
+    /**
+     * Method to add a listener to incoming messages alongside the other ones.
+     * @param listener the listener to add
+     * @param weakReference whether the listener should be held through a WeakReference, so that it
+     *                      does not need to be removed to be collected
+     * @return true if the listener has been added, false if it already was
+     */
+    public boolean addReceiveListener(ReceivedMessageListener<SMSMessage> listener, boolean weakReference) {
+        return smsHandler.addReceivedListener(listener, weakReference);
+    }
+
+    /**
+     * Method to add a listener for incoming messages, notified on the given Executor.
+     * @param listener the listener to add.
+     * @param weakReference whether the listener should be held through a WeakReference.
+     * @param executor the Executor the listener is notified on, see {@link CallbackExecutors}.
+     * @return true if the listener has been added, false if it already was.
+     */
+    public boolean addReceiveListener(ReceivedMessageListener<SMSMessage> listener, boolean weakReference, Executor executor) {
+        return smsHandler.addReceivedListener(listener, weakReference, executor);
+    }
+
+    /**
+     * Method to remove a single listener to incoming messages.
+     * @param listener the listener to remove
+     * @return true if the listener was attached, false otherwise
+     */
+    public boolean removeReceiveListener(ReceivedMessageListener<SMSMessage> listener) {
+        return smsHandler.removeReceivedListener(listener);
+    }
+
+    /**
+     * Method to subscribe a listener to the messages whose body starts with the given topic. Messages
+     * matching no topic go to the receive listeners.
+     * @param topic the non-empty topic
+     * @param listener the listener to subscribe
+     * @return true if the listener has been subscribed, false if it already was to this topic
+     * @throws IllegalArgumentException if the topic is empty
+     */
+    public boolean addTopicListener(String topic, ReceivedMessageListener<SMSMessage> listener) {
+        return smsHandler.addTopicListener(topic, listener);
+    }
+
+    /**
+     * Method to subscribe a listener to a topic, notified on the given Executor.
+     * @param topic the non-empty topic
+     * @param listener the listener to subscribe
+     * @param weakReference whether the listener should be held through a WeakReference
+     * @param executor the Executor the listener is notified on, null for the receive Executor
+     * @return true if the listener has been subscribed, false if it already was to this topic
+     * @throws IllegalArgumentException if the topic is empty
+     */
+    public boolean addTopicListener(String topic, ReceivedMessageListener<SMSMessage> listener,
+                                    boolean weakReference, Executor executor) {
+        return smsHandler.addTopicListener(topic, listener, weakReference, executor);
+    }
+
+    /**
+     * Method to unsubscribe a listener from a topic.
+     * @param topic the topic the listener was subscribed to
+     * @param listener the listener to unsubscribe
+     * @return true if the listener was subscribed to the topic, false otherwise
+     */
+    public boolean removeTopicListener(String topic, ReceivedMessageListener<SMSMessage> listener) {
+        return smsHandler.removeTopicListener(topic, listener);
+    }
+
+    /**
+     * Setter for receivedDataListener in SMSHandler
+     * @param newReceivedDataListener the new listener for incoming data messages
+     */
+    public void setReceiveDataListener(ReceivedMessageListener<SMSDataMessage> newReceivedDataListener) {
+        removeReceiveDataListener();
+        smsHandler.setReceivedDataListener(newReceivedDataListener);
+    }
+
+    /**
+     * Method to set the listener for incoming data messages, notified on the given Executor.
+     * @param newReceivedDataListener the new listener.
+     * @param executor the Executor the listener is notified on, see {@link CallbackExecutors}.
+     */
+    public void setReceiveDataListener(ReceivedMessageListener<SMSDataMessage> newReceivedDataListener, Executor executor) {
+        removeReceiveDataListener();
+        smsHandler.setReceivedDataListener(newReceivedDataListener, executor);
+    }
+
+    /**
+     * Method to remove receivedDataListener
+     */
+    public void removeReceiveDataListener(){
+        smsHandler.clearReceivedDataListener();
+    }
+
     /**
      * Setter for sentListener in SMSHandler
      * @param newSentListener the new listener
@@ -102,6 +470,16 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
         smsHandler.setSentListener(newSentListener);
     }
 
+    /**
+     * Method to set the listener for sent messages, notified on the given Executor.
+     * @param newSentListener the new listener.
+     * @param executor the Executor the listener is notified on, see {@link CallbackExecutors}.
+     */
+    public void setSentListener(SentMessageListener<SMSMessage> newSentListener, Executor executor) {
+        removeSentListener();
+        smsHandler.setSentListener(newSentListener, executor);
+    }
+
     /**
      * Method to remove sentListener
      */
@@ -118,6 +496,16 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
         smsHandler.setDeliveredListener(newDeliveredListener);
     }
 
+    /**
+     * Method to set the listener for delivered messages, notified on the given Executor.
+     * @param newDeliveredListener the new listener.
+     * @param executor the Executor the listener is notified on, see {@link CallbackExecutors}.
+     */
+    public void setDeliveredListener(DeliveredMessageListener<SMSMessage> newDeliveredListener, Executor executor) {
+        removeDeliveredListener();
+        smsHandler.setDeliveredListener(newDeliveredListener, executor);
+    }
+
     /**
      * Method to remove deliveredListener
      */
@@ -125,6 +513,76 @@ public class SMSManager extends CommunicationHandler<SMSMessage>{
         smsHandler.clearDeliveredListener();
     }
 
+    /**
+     * Setter for a batch listener taking the place of receivedListener in SMSHandler
+     * @param newReceivedListener the new listener, removed with {@link #removeReceiveListener()}
+     */
+    public void setReceiveBatchListener(ReceivedBatchListener<SMSMessage> newReceivedListener) {
+        removeReceiveListener();
+        smsHandler.setReceivedBatchListener(newReceivedListener);
+    }
+
+    /**
+     * Setter for a batch listener taking the place of receivedListener in SMSHandler, notified on the
+     * given Executor
+     * @param newReceivedListener the new listener, removed with {@link #removeReceiveListener()}
+     * @param executor the Executor the listener is notified on, null for the main Thread
+     */
+    public void setReceiveBatchListener(ReceivedBatchListener<SMSMessage> newReceivedListener, Executor executor) {
+        removeReceiveListener();
+        smsHandler.setReceivedBatchListener(newReceivedListener, executor);
+    }
+
+    /**
+     * Setter for a batch listener taking the place of sentListener in SMSHandler
+     * @param newSentListener the new listener, removed with {@link #removeSentListener()}
+     */
+    public void setSentBatchListener(SentBatchListener<SMSMessage> newSentListener) {
+        removeSentListener();
+        smsHandler.setSentBatchListener(newSentListener);
+    }
+
+    /**
+     * Setter for a batch listener taking the place of sentListener in SMSHandler, notified on the
+     * given Executor
+     * @param newSentListener the new listener, removed with {@link #removeSentListener()}
+     * @param executor the Executor the listener is notified on, null for the main Thread
+     */
+    public void setSentBatchListener(SentBatchListener<SMSMessage> newSentListener, Executor executor) {
+        removeSentListener();
+        smsHandler.setSentBatchListener(newSentListener, executor);
+    }
+
+    /**
+     * Setter for a batch listener taking the place of deliveredListener in SMSHandler
+     * @param newDeliveredListener the new listener, removed with {@link #removeDeliveredListener()}
+     */
+    public void setDeliveredBatchListener(DeliveredBatchListener<SMSMessage> newDeliveredListener) {
+        removeDeliveredListener();
+        smsHandler.setDeliveredBatchListener(newDeliveredListener);
+    }
+
+    /**
+     * Setter for a batch listener taking the place of deliveredListener in SMSHandler, notified on
+     * the given Executor
+     * @param newDeliveredListener the new listener, removed with {@link #removeDeliveredListener()}
+     * @param executor the Executor the listener is notified on, null for the main Thread
+     */
+    public void setDeliveredBatchListener(DeliveredBatchListener<SMSMessage> newDeliveredListener, Executor executor) {
+        removeDeliveredListener();
+        smsHandler.setDeliveredBatchListener(newDeliveredListener, executor);
+    }
+
+    /**
+     * Method to set how events are grouped for batch listeners.
+     * @param windowMillis how long the first event of a batch can wait for others.
+     * @param maxBatchSize the maximum number of events in a batch, at least 1.
+     * @throws IllegalArgumentException if the window is negative or the size is less than 1.
+     */
+    public void setBatchWindow(long windowMillis, int maxBatchSize){
+        smsHandler.setBatchWindow(windowMillis, maxBatchSize);
+    }
+
     /**
      * Method to load the unread sms messages and forward them to the listener asynchronously.
      * @return true if the listener is assigned and an attempt has been made, false otherwise.
@@ -6,6 +6,7 @@ import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import ingsw.group1.msglibrary.exceptions.InvalidMessageException;
@@ -15,7 +16,13 @@ import ingsw.group1.msglibrary.exceptions.InvalidMessageException;
  * Class implementing Message to represent an SMS-type message.
  * @author Riccardo De Zen based on decisions of whole class.
  */
-@Entity(tableName = SMSMessage.SMS_TABLE_NAME)
+@Entity(
+        tableName = SMSMessage.SMS_TABLE_NAME,
+        indices = {
+                @Index(SMSMessage.SMS_ADDRESS_COLUMN_NAME),
+                @Index(SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME)
+        }
+)
 public class SMSMessage extends Message<String, SMSPeer>{
 
     //Name of the Entity table inside the Database.
@@ -23,11 +30,18 @@ public class SMSMessage extends Message<String, SMSPeer>{
     public static final String SMS_ID_COLUMN_NAME = "id";
     public static final String SMS_ADDRESS_COLUMN_NAME = "address";
     public static final String SMS_BODY_COLUMN_NAME = "message";
+    public static final String SMS_RECEIVED_AT_COLUMN_NAME = "received_at";
+    public static final String SMS_PRIORITY_COLUMN_NAME = "priority";
 
     private static final String CON_ERROR =
             "The given message is invalid, refer to SMSMessage.isMessageValid(String address)";
 
-    public static final int MAX_MESSAGE_LENGTH = 160;
+    //Lengths for texts using the GSM 7 bit alphabet, texts needing UCS-2 have less room, see SMSEncoding.
+    public static final int MAX_MESSAGE_LENGTH = SMSEncoding.GSM_7_SINGLE_LENGTH;
+    //Concatenated messages lose some characters per part to the header linking the parts together.
+    public static final int MAX_MESSAGE_PART_LENGTH = SMSEncoding.GSM_7_PART_LENGTH;
+    public static final int MAX_MESSAGE_PARTS = 10;
+    public static final int MAX_MULTIPART_MESSAGE_LENGTH = MAX_MESSAGE_PART_LENGTH * MAX_MESSAGE_PARTS;
 
     //The id is currently only relevant inside the database and does not need to be seen or set outside
     @PrimaryKey(autoGenerate = true)
@@ -37,15 +51,22 @@ public class SMSMessage extends Message<String, SMSPeer>{
     private SMSPeer peer;
     @ColumnInfo(name = SMS_BODY_COLUMN_NAME)
     private String data;
+    //Milliseconds since the epoch, 0 if unknown, as for messages created by the application.
+    @ColumnInfo(name = SMS_RECEIVED_AT_COLUMN_NAME, defaultValue = "0")
+    private long receivedAt;
+    //Whether the message has been sent as urgent.
+    @ColumnInfo(name = SMS_PRIORITY_COLUMN_NAME, defaultValue = "0")
+    private boolean priority;
 
     /**
      * @param peer the Peer associated with this Message
-     * @param data the data to be contained in the message
+     * @param data the data to be contained in the message, it can be longer than a single SMS, see
+     * {@link #isMultipartMessageValid(String)}
      * @throws InvalidMessageException if the data for the message is not valid
      */
     @Ignore
     public SMSMessage(SMSPeer peer, String data){
-        if(peer.isValid() && isMessageValid(data) != MessageValidity.MESSAGE_VALID)
+        if(peer.isValid() && isMultipartMessageValid(data) != MessageValidity.MESSAGE_VALID)
             throw new InvalidMessageException(CON_ERROR);
         this.peer = peer;
         this.data = data;
@@ -61,16 +82,40 @@ public class SMSMessage extends Message<String, SMSPeer>{
                 new SMSPeer(message.getOriginatingAddress()),
                 message.getMessageBody()
         );
+        this.receivedAt = message.getTimestampMillis();
+    }
+
+    /**
+     * Constructor for a received message.
+     * @param peer the Peer the message comes from
+     * @param data the data of the message
+     * @param receivedAt the time the message has been received, in milliseconds since the epoch
+     * @param priority whether the message has been sent as urgent
+     */
+    @Ignore
+    SMSMessage(SMSPeer peer, String data, long receivedAt, boolean priority){
+        this(peer, data);
+        this.receivedAt = receivedAt;
+        this.priority = priority;
     }
 
     /**
      * Constructor to be used together with the database
      */
+    @Ignore
     public SMSMessage(int id, SMSPeer peer, String data){
         this(peer, data);
         this.id = id;
     }
 
+    /**
+     * Constructor used by the database
+     */
+    public SMSMessage(int id, SMSPeer peer, String data, long receivedAt, boolean priority){
+        this(peer, data, receivedAt, priority);
+        this.id = id;
+    }
+
     /**
      * Getter for the id
      * @return the id for this Message
@@ -79,6 +124,20 @@ public class SMSMessage extends Message<String, SMSPeer>{
         return id;
     }
 
+    /**
+     * @return the time this message has been received, in milliseconds since the epoch, 0 if unknown
+     */
+    public long getReceivedAt(){
+        return receivedAt;
+    }
+
+    /**
+     * @return true if this message has been sent as urgent
+     */
+    public boolean isPriority(){
+        return priority;
+    }
+
     /**
      * @return the data of this message
      */
@@ -100,18 +159,68 @@ public class SMSMessage extends Message<String, SMSPeer>{
      * This method should always return true
      */
     public boolean isValid(){
-        return peer.isValid() && isMessageValid(data) == MessageValidity.MESSAGE_VALID;
+        return peer.isValid() && isMultipartMessageValid(data) == MessageValidity.MESSAGE_VALID;
+    }
+
+    /**
+     * @return true if the data of this message does not fit in a single SMS and needs to be sent
+     * as a multipart message.
+     */
+    public boolean isMultipart(){
+        return getSegmentCount() > 1;
+    }
+
+    /**
+     * @return how many SMS are needed to send the data of this message, library codes excluded.
+     */
+    public int getSegmentCount(){
+        return SMSEncoding.getSegmentCount(data);
+    }
+
+    /**
+     * @return the length of the encoded data, in septets if it can be sent with the GSM 7 bit
+     * alphabet, in UTF-16 code units if it needs UCS-2.
+     */
+    public int getEncodedLength(){
+        return SMSEncoding.getEncodedLength(data);
+    }
+
+    /**
+     * @return true if the data can be sent with the GSM 7 bit alphabet, false if it needs UCS-2.
+     */
+    public boolean isGsm7(){
+        return SMSEncoding.isGsm7(data);
     }
 
     /**
      * @param message the message whose validity should be checked
-     * @return An enum value to indicate what is wrong with the message or that nothing is wrong
+     * @return An enum value to indicate what is wrong with the message or that nothing is wrong,
+     * the message is too long if it does not fit in a single SMS once encoded
      */
     public static MessageValidity isMessageValid(String message){
+        return isMessageValid(message, 1);
+    }
+
+    /**
+     * @param message the message whose validity should be checked
+     * @return An enum value to indicate what is wrong with the message or that nothing is wrong,
+     * the message is too long if it does not fit in {@link #MAX_MESSAGE_PARTS} concatenated SMS once
+     * encoded
+     */
+    public static MessageValidity isMultipartMessageValid(String message){
+        return isMessageValid(message, MAX_MESSAGE_PARTS);
+    }
+
+    /**
+     * @param message the message whose validity should be checked
+     * @param maxSegments the maximum number of SMS the encoded message can take
+     * @return An enum value to indicate what is wrong with the message or that nothing is wrong
+     */
+    private static MessageValidity isMessageValid(String message, int maxSegments){
         if(message == null || message.isEmpty())
             return MessageValidity.MESSAGE_EMPTY;
 
-        if(message.length() > MAX_MESSAGE_LENGTH)
+        if(SMSEncoding.getSegmentCount(message) > maxSegments)
             return MessageValidity.MESSAGE_TOO_LONG;
 
         return MessageValidity.MESSAGE_VALID;
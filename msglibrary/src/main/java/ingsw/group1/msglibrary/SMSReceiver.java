@@ -7,11 +7,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.provider.Telephony;
 import android.telephony.SmsMessage;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import ingsw.group1.msglibrary.database.SMSDatabaseManager;
+import android.util.Log;
 
 /**
  * Class meant to intercept SMSMessages coming from the Android system.
@@ -23,6 +19,11 @@ import ingsw.group1.msglibrary.database.SMSDatabaseManager;
  * urgent through the appropriate code, an action is retrieved from SharedPreferences and started.
  * If the messages are not urgent or no action has been specified messages are written into a
  * database for later use.
+ * Data messages sent to SMSHandler.DATA_PORT are only forwarded to a listener, if one is attached.
+ * Messages for a listener attached in this process are handed to its SMSHandler directly, the
+ * broadcast to SMSHandler is only a fallback for listeners it can't reach.
+ * All the work is done on the Thread of SMSWritePipeline, the broadcast is kept alive through
+ * goAsync() until it is complete, including the write of the messages.
  * @author Riccardo De Zen
  */
 public class SMSReceiver extends BroadcastReceiver {
@@ -30,29 +31,74 @@ public class SMSReceiver extends BroadcastReceiver {
     private static final Class<Activity> ACTIVITY_SUPERCLASS = Activity.class;
     private boolean shouldWake = false;
 
+    private static final String LOG_TAG = "SMSReceiver";
+
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(final Context context, final Intent intent) {
+        final PendingResult result = goAsync();
+        final SMSWritePipeline pipeline = SMSWritePipeline.getInstance(context);
+        pipeline.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean stored = false;
+                try{
+                    stored = handle(context, intent, pipeline, result);
+                }
+                finally{
+                    //Broadcasts whose messages are stored are finished by the pipeline.
+                    if(!stored) result.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Method doing the actual work for a received broadcast, on the Thread of SMSWritePipeline.
+     * @param context the context the broadcast was received on
+     * @param intent the received Intent
+     * @param pipeline the pipeline writing the messages
+     * @param result the pending broadcast, finished by the pipeline if messages are stored
+     * @return true if the messages have been handed to the pipeline to be stored, false otherwise.
+     */
+    private boolean handle(Context context, Intent intent, SMSWritePipeline pipeline, PendingResult result){
+        if(intent.getAction() != null && intent.getAction().equals(Telephony.Sms.Intents.DATA_SMS_RECEIVED_ACTION)){
+            //Only data messages sent to SMSHandler.DATA_PORT are delivered here, see the manifest.
+            if(SMSHandler.shouldHandleIncomingData()){
+                SMSDataMessage[] messages = SmsUtils.getDataMessages(Telephony.Sms.Intents.getMessagesFromIntent(intent));
+                if(!SMSHandler.deliverData(messages))
+                    propagate(context, intent, SMSHandler.DATA_RECEIVED_BROADCAST);
+            }
+            else
+                Log.w(LOG_TAG, "Data message received with no listener attached, it has been discarded.");
+            return false;
+        }
         if(intent.getAction() != null && intent.getAction().equals(Telephony.Sms.Intents.SMS_RECEIVED_ACTION)){
-            SmsMessage[] messages = filter(Telephony.Sms.Intents.getMessagesFromIntent(intent));
-            if(messages.length < 1) return;
+            //Most messages are not meant for the library, they are discarded before being decoded.
+            if(!PduScreen.mayBePertinent(intent)) return false;
+            SMSMessage[] messages = filter(Telephony.Sms.Intents.getMessagesFromIntent(intent));
+            if(messages.length < 1) return false;
             if(SMSHandler.shouldHandleIncomingSms()){
                 /*
                  * SMSHandler.shouldHandleIncomingSms() returns true if a suitable listener for
-                 * immediate response is available. A broadcast event is therefore fired to
-                 * notify said listener through the receiver it is attached to.
+                 * immediate response is available. The decoded messages are handed directly to the
+                 * SMSHandler it is attached to, a broadcast is only fired if that SMSHandler can't
+                 * be reached from this process. The broadcast carries the filtered messages, so
+                 * duplicates discarded here are not received again.
                  */
-                propagate(context, intent);
-                return;
+                if(!SMSHandler.deliverReceived(messages)){
+                    Intent messagesIntent = SmsUtils.putReceivedMessages(new Intent(), messages);
+                    propagate(context, messagesIntent, SMSHandler.RECEIVED_BROADCAST);
+                }
+                return false;
             }
             if(shouldWake){
-                if(!startAppropriateAction(context, intent))
-                    store(context, messages);
                 shouldWake = false;
+                if(startAppropriateAction(context, intent)) return false;
             }
-            else{
-                store(context, messages);
-            }
+            pipeline.write(messages, result);
+            return true;
         }
+        return false;
     }
 
     /**
@@ -60,36 +106,41 @@ public class SMSReceiver extends BroadcastReceiver {
      * LocalBroadcastManager is deprecated so this solution is being used instead.
      * @param context the context on which this method is running
      * @param extraIntent an Intent containing the extras for the broadcast to be propagated
+     * @param action the action of the broadcast to be propagated
      */
-    private void propagate(Context context, Intent extraIntent){
+    private void propagate(Context context, Intent extraIntent, String action){
         Intent localIntent = new Intent();
         localIntent.replaceExtras(extraIntent);
-        localIntent.setAction(SMSHandler.RECEIVED_BROADCAST);
+        localIntent.setAction(action);
         localIntent.setPackage(context.getApplicationContext().getPackageName());
         context.sendBroadcast(localIntent);
     }
 
     /**
-     *
-     */
-    private void store(Context context, SmsMessage[] messages){
-        SMSDatabaseManager.getInstance(context).addSMS(messages);
-    }
-
-    /**
-     * Method to filter messages containing SMSHandler.APP_KEY.
+     * Method to filter messages starting with SMSHandler.APP_KEY. The parts of concatenated messages
+     * are joined together before filtering, so each returned message is a whole multipart message.
+     * Messages already received recently, which the carrier delivered again, are discarded here, so
+     * they neither reach the listeners nor the database.
      * Messages are meant to be the ones coming directly from the received Intent.
      * @param messages array of SmsMessage.
-     * @return list of messages containing SMSHandler.APP_KEY
+     * @return the pertinent messages not received before
      */
-    private SmsMessage[] filter(SmsMessage[] messages){
-        List<SmsMessage> list = new ArrayList<>();
-        if(messages != null)
-            for(SmsMessage sms : messages){
-                if(sms.getMessageBody().contains(SMSHandler.APP_KEY)) list.add(sms);
-                if(sms.getMessageBody().contains(SMSHandler.WAKE_KEY)) shouldWake = true;
+    private SMSMessage[] filter(SmsMessage[] messages){
+        SMSMessage[] pertinentMessages = SmsUtils.assemblePertinentMessages(messages);
+        ReceivedDedupCache dedupCache = ReceivedDedupCache.getInstance();
+        int count = 0;
+        for(SMSMessage sms : pertinentMessages){
+            if(!dedupCache.markIfNew(sms.getPeer().getAddress(), sms.getReceivedAt(), sms.getData())){
+                Log.d(LOG_TAG, "Discarded a message received twice.");
+                continue;
             }
-        return list.toArray(new SmsMessage[0]);
+            if(SmsUtils.isMessageUrgent(sms.getData())) shouldWake = true;
+            pertinentMessages[count++] = sms;
+        }
+        if(count == pertinentMessages.length) return pertinentMessages;
+        SMSMessage[] newMessages = new SMSMessage[count];
+        System.arraycopy(pertinentMessages, 0, newMessages, 0, count);
+        return newMessages;
     }
 
     /**
@@ -0,0 +1,171 @@
+package ingsw.group1.msglibrary;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class holding the messages whose sending failed until it is time to retry them. A single Thread
+ * waits for the first retry to be due, then resubmits it together with every other retry already
+ * due, so that many failures at once turn into a single batch going back through the send path.
+ * @author Riccardo De Zen
+ */
+class SMSRetryScheduler {
+
+    private static final String LOG_TAG = "SMSRetryScheduler";
+    private static final String WORKER_NAME = "SMSRetryScheduler-worker";
+
+    /**
+     * Interface for the object receiving the messages to retry.
+     */
+    interface Resubmitter {
+        /**
+         * Called on the worker Thread with every batch of messages due for a retry.
+         * @param messages the messages to send again, in the order they became due.
+         */
+        void resubmit(List<OutgoingSMS> messages);
+    }
+
+    /**
+     * Class wrapping a message with the time at which it should be retried.
+     */
+    private static class ScheduledRetry implements Delayed {
+        private final OutgoingSMS sms;
+        private final long dueAtNanos;
+
+        private ScheduledRetry(OutgoingSMS sms, long delayMillis){
+            this.sms = sms;
+            this.dueAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        @Override
+        public long getDelay(@NonNull TimeUnit unit) {
+            return unit.convert(dueAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@NonNull Delayed other) {
+            long difference = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        }
+    }
+
+    private final DelayQueue<ScheduledRetry> retries = new DelayQueue<>();
+    private final Resubmitter resubmitter;
+    private final Random random = new Random();
+    private volatile SendRetryPolicy policy;
+    private Thread worker;
+    private boolean shutDown = false;
+
+    /**
+     * @param resubmitter the object sending the messages again.
+     * @param policy the policy deciding which messages are retried and when.
+     */
+    SMSRetryScheduler(@NonNull Resubmitter resubmitter, @NonNull SendRetryPolicy policy){
+        this.resubmitter = resubmitter;
+        this.policy = policy;
+    }
+
+    /**
+     * Method to start the worker Thread. Does nothing if it is already running or the scheduler has
+     * been shut down.
+     */
+    synchronized void start(){
+        if(worker != null || shutDown) return;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, WORKER_NAME);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Method to stop the worker Thread. Messages waiting for a retry are discarded, messages failing
+     * afterwards are not retried.
+     */
+    synchronized void shutdown(){
+        shutDown = true;
+        if(worker != null) worker.interrupt();
+        worker = null;
+        List<ScheduledRetry> discarded = new ArrayList<>(retries);
+        retries.clear();
+        for(ScheduledRetry retry : discarded) retry.sms.onNotSent(SendResult.RESULT_DROPPED);
+    }
+
+    /**
+     * Method to schedule a failed message for a retry, if the policy allows it.
+     * @param sms the message whose sending failed.
+     * @param resultCode the result code of the failed sent event.
+     * @return true if a retry has been scheduled, false if the message should be considered failed,
+     * which is always the case once the scheduler has been shut down.
+     */
+    boolean onSendFailed(@NonNull OutgoingSMS sms, int resultCode){
+        SendRetryPolicy currentPolicy = policy;
+        if(!currentPolicy.shouldRetry(resultCode, sms.getAttempt())) return false;
+        long delay;
+        synchronized (random){
+            delay = currentPolicy.getDelayMillis(sms.getAttempt(), random);
+        }
+        synchronized (this){
+            //No worker would ever take the retry.
+            if(shutDown) return false;
+            retries.put(new ScheduledRetry(sms.nextAttempt(), delay));
+        }
+        return true;
+    }
+
+    /**
+     * @param policy the new policy, applied to messages failing from now on.
+     */
+    void setPolicy(@NonNull SendRetryPolicy policy){
+        this.policy = policy;
+    }
+
+    /**
+     * @return the current policy.
+     */
+    SendRetryPolicy getPolicy(){
+        return policy;
+    }
+
+    /**
+     * @return the number of messages waiting for a retry.
+     */
+    int size(){
+        return retries.size();
+    }
+
+    /**
+     * Loop run by the worker Thread. Waits for the first due retry and resubmits every due retry.
+     */
+    private void drain(){
+        try{
+            while(!Thread.currentThread().isInterrupted()){
+                List<ScheduledRetry> due = new ArrayList<>();
+                due.add(retries.take());
+                retries.drainTo(due);
+                List<OutgoingSMS> batch = new ArrayList<>(due.size());
+                for(ScheduledRetry retry : due) batch.add(retry.sms);
+                try{
+                    resubmitter.resubmit(batch);
+                }
+                catch(RuntimeException e){
+                    Log.e(LOG_TAG, "Unable to resubmit failed messages.", e);
+                }
+            }
+        }
+        catch(InterruptedException e){
+            //Shutdown was requested.
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ingsw.group1.msglibrary;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Bounded queue for outgoing messages, drained by a single dedicated worker Thread.
+ * Sending a message only requires adding it to the queue, so the caller never waits for the system.
+ * The worker hands messages to a {@link Sender} no faster than a {@link TokenBucket} allows, in
+ * order to avoid being throttled by the platform or the carrier during bursts.
+ * @author Riccardo De Zen
+ */
+class SMSSendQueue {
+
+    private static final String LOG_TAG = "SMSSendQueue";
+    private static final String WORKER_NAME = "SMSSendQueue-worker";
+    private static final String CAPACITY_ERROR = "The capacity of the queue must be at least 1.";
+
+    /**
+     * Interface for the object actually sending the messages taken from the queue.
+     */
+    interface Sender {
+        /**
+         * Called on the worker Thread for every message leaving the queue.
+         * @param sms the message to send.
+         */
+        void send(OutgoingSMS sms);
+    }
+
+    private final ArrayDeque<OutgoingSMS> queue = new ArrayDeque<>();
+    private final Sender sender;
+    private final TokenBucket rateLimiter;
+    private int capacity;
+    private SendOverflowPolicy overflowPolicy;
+    private long droppedCount = 0;
+    private long rejectedCount = 0;
+    private Thread worker;
+    private boolean shutDown = false;
+
+    /**
+     * @param sender the object sending the messages.
+     * @param capacity the maximum amount of messages waiting in the queue.
+     * @param overflowPolicy what to do with new messages when the queue is full.
+     * @param rateLimiter the bucket defining the maximum sending rate.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    SMSSendQueue(@NonNull Sender sender, int capacity, @NonNull SendOverflowPolicy overflowPolicy,
+                 @NonNull TokenBucket rateLimiter){
+        if(capacity < 1) throw new IllegalArgumentException(CAPACITY_ERROR);
+        this.sender = sender;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Method to start the worker Thread. Does nothing if it is already running or the queue has been
+     * shut down.
+     */
+    synchronized void start(){
+        if(worker != null || shutDown) return;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, WORKER_NAME);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Method to stop the worker Thread. Messages still waiting in the queue are discarded, messages
+     * added afterwards are rejected.
+     */
+    synchronized void shutdown(){
+        shutDown = true;
+        if(worker != null) worker.interrupt();
+        worker = null;
+        for(OutgoingSMS sms : queue) sms.onNotSent(SendResult.RESULT_DROPPED);
+        queue.clear();
+    }
+
+    /**
+     * Method to add a message to the queue, never blocks.
+     * @param sms the message to add.
+     * @return true if the message has been queued, false if it has been rejected because the queue
+     * has been shut down, or is full and the policy is {@link SendOverflowPolicy#REJECT_NEW}.
+     */
+    synchronized boolean enqueue(@NonNull OutgoingSMS sms){
+        if(shutDown){
+            sms.onNotSent(SendResult.RESULT_REJECTED);
+            return false;
+        }
+        if(queue.size() >= capacity){
+            if(overflowPolicy == SendOverflowPolicy.REJECT_NEW){
+                rejectedCount++;
+                sms.onNotSent(SendResult.RESULT_REJECTED);
+                return false;
+            }
+            while(queue.size() >= capacity){
+                queue.pollFirst().onNotSent(SendResult.RESULT_DROPPED);
+                droppedCount++;
+            }
+        }
+        queue.addLast(sms);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Method to add messages that already went through the queue back at its head, so that they are
+     * sent before any new message. Capacity is not enforced, the messages have already been accepted.
+     * Messages requeued after the queue has been shut down are discarded.
+     * @param messages the messages to add, in the order they should be sent.
+     */
+    synchronized void requeue(@NonNull List<OutgoingSMS> messages){
+        if(shutDown){
+            for(OutgoingSMS sms : messages) sms.onNotSent(SendResult.RESULT_DROPPED);
+            return;
+        }
+        for(int i = messages.size() - 1; i >= 0; i--) queue.addFirst(messages.get(i));
+        notifyAll();
+    }
+
+    /**
+     * Method to take the next message, waiting until one is available.
+     * @return the oldest message in the queue.
+     * @throws InterruptedException if the worker is interrupted while waiting.
+     */
+    private synchronized OutgoingSMS take() throws InterruptedException{
+        while(queue.isEmpty()) wait();
+        return queue.pollFirst();
+    }
+
+    /**
+     * Loop run by the worker Thread. Every message waits for a token before being sent.
+     */
+    private void drain(){
+        try{
+            while(!Thread.currentThread().isInterrupted()){
+                OutgoingSMS next = take();
+                rateLimiter.acquire();
+                try{
+                    sender.send(next);
+                }
+                catch(RuntimeException e){
+                    //A single failed message must not stop the worker.
+                    Log.e(LOG_TAG, "Unable to send a queued message.", e);
+                }
+            }
+        }
+        catch(InterruptedException e){
+            //Shutdown was requested.
+        }
+    }
+
+    /**
+     * @return the number of messages currently waiting in the queue.
+     */
+    synchronized int size(){
+        return queue.size();
+    }
+
+    /**
+     * @return the maximum number of messages that can wait in the queue.
+     */
+    synchronized int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Method to change the capacity of the queue. If the queue holds more messages than the new
+     * capacity they are kept and no new message is accepted until it shrinks.
+     * @param capacity the new capacity, at least 1.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    synchronized void setCapacity(int capacity){
+        if(capacity < 1) throw new IllegalArgumentException(CAPACITY_ERROR);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param overflowPolicy the new policy to apply when the queue is full.
+     */
+    synchronized void setOverflowPolicy(@NonNull SendOverflowPolicy overflowPolicy){
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Method to change the maximum sending rate.
+     * @param messagesPerSecond how many messages can be sent every second on average.
+     * @param burst how many messages can be sent at once after the queue has been idle.
+     * @throws IllegalArgumentException if the rate is not positive or the burst is less than 1.
+     */
+    void setRate(double messagesPerSecond, int burst){
+        rateLimiter.setRate(messagesPerSecond, burst);
+    }
+
+    /**
+     * @return how many queued messages have been discarded to make room for newer ones.
+     */
+    synchronized long getDroppedCount(){
+        return droppedCount;
+    }
+
+    /**
+     * @return how many messages have been refused because the queue was full.
+     */
+    synchronized long getRejectedCount(){
+        return rejectedCount;
+    }
+}
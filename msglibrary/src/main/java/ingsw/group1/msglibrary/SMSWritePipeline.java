@@ -0,0 +1,71 @@
+package ingsw.group1.msglibrary;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ingsw.group1.msglibrary.database.SMSDatabaseManager;
+import ingsw.group1.msglibrary.database.WriteCallback;
+
+/**
+ * Class running the work of SMSReceiver on a dedicated background Thread, so that the receiver
+ * returns immediately. Messages to be stored are handed to the write-behind queue of
+ * {@link SMSDatabaseManager}, which writes the messages of close broadcasts together.
+ * @author Riccardo De Zen
+ */
+class SMSWritePipeline {
+
+    private static final String THREAD_NAME = "SMSWritePipeline";
+
+    private static SMSWritePipeline instance;
+
+    private final Context context;
+    private final Handler handler;
+
+    /**
+     * @param context the application context, used to reach the database.
+     */
+    private SMSWritePipeline(Context context){
+        this.context = context;
+        HandlerThread thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * @param context the calling context, its application context is used.
+     * @return the only instance of this class, created if needed.
+     */
+    static synchronized SMSWritePipeline getInstance(@NonNull Context context){
+        if(instance == null) instance = new SMSWritePipeline(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Method to run some work on the background Thread, in order with the other work.
+     * @param work the work to run.
+     */
+    void execute(@NonNull Runnable work){
+        handler.post(work);
+    }
+
+    /**
+     * Method to store messages in the database of unread messages, without waiting for them to be
+     * written. The given broadcast is finished once they are.
+     * @param messages the messages to store.
+     * @param result the broadcast to finish once the messages are written, can be null.
+     */
+    void write(@NonNull SMSMessage[] messages, @Nullable final BroadcastReceiver.PendingResult result){
+        SMSDatabaseManager.getInstance(context).addSMSAsync(new WriteCallback() {
+            @Override
+            public void onWriteFinished(boolean successful) {
+                if(result != null) result.finish();
+            }
+        }, messages);
+    }
+}
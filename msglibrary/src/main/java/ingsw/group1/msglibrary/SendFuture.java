@@ -0,0 +1,110 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future completed when the sent or delivered event of an asynchronous send arrives.
+ * Results can be waited for, with or without a timeout, or received through a {@link Callback}.
+ * Cancelling only stops waiting for the event, the message itself is not withdrawn.
+ * @author Riccardo De Zen
+ */
+public class SendFuture implements Future<SendResult> {
+
+    /**
+     * Interface for objects waiting for the completion of a SendFuture without blocking.
+     */
+    public interface Callback {
+        /**
+         * Called once, on the Thread completing the future or on the Thread adding the callback if
+         * the future was already complete. Not called if the future is cancelled.
+         * @param result the outcome of the event.
+         */
+        void onComplete(SendResult result);
+    }
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private List<Callback> callbacks = new ArrayList<>();
+    private SendResult result;
+    private boolean cancelled = false;
+
+    /**
+     * Method to complete the future. Only the first call has any effect.
+     * @param result the outcome of the event.
+     * @return true if this call completed the future, false if it was already complete or cancelled.
+     */
+    boolean complete(@NonNull SendResult result){
+        List<Callback> toNotify;
+        synchronized (this){
+            if(isDone()) return false;
+            this.result = result;
+            toNotify = callbacks;
+            callbacks = null;
+            done.countDown();
+        }
+        for(Callback callback : toNotify) callback.onComplete(result);
+        return true;
+    }
+
+    /**
+     * Method to be notified of the outcome without blocking.
+     * @param callback the callback to notify, immediately if the future is already complete.
+     */
+    public void addCallback(@NonNull Callback callback){
+        synchronized (this){
+            if(!isDone()){
+                callbacks.add(callback);
+                return;
+            }
+            if(cancelled) return;
+        }
+        callback.onComplete(result);
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if(isDone()) return false;
+        cancelled = true;
+        callbacks = null;
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public SendResult get() throws InterruptedException {
+        done.await();
+        return getResult();
+    }
+
+    @Override
+    public SendResult get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, TimeoutException {
+        if(!done.await(timeout, unit)) throw new TimeoutException();
+        return getResult();
+    }
+
+    /**
+     * @return the result of a completed future.
+     * @throws CancellationException if the future has been cancelled.
+     */
+    private synchronized SendResult getResult(){
+        if(cancelled) throw new CancellationException();
+        return result;
+    }
+}
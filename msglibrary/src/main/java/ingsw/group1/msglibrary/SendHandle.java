@@ -0,0 +1,85 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Handle returned by an asynchronous send, tracking the message through its sent and delivered
+ * events. Each event has its own {@link SendFuture}, carrying the result code and the timings.
+ * @author Riccardo De Zen
+ * @param <M> The type of message being sent.
+ */
+public class SendHandle<M extends Message> {
+
+    private final M message;
+    private final SendFuture sent = new SendFuture();
+    private final SendFuture delivered = new SendFuture();
+    private final long queuedAtNanos;
+    private volatile long dispatchedAtNanos = 0;
+
+    /**
+     * @param message the message being sent.
+     */
+    SendHandle(@NonNull M message){
+        this.message = message;
+        this.queuedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the message being sent.
+     */
+    public M getMessage(){
+        return message;
+    }
+
+    /**
+     * @return the future completed when the sent event for the message arrives.
+     */
+    public SendFuture getSent(){
+        return sent;
+    }
+
+    /**
+     * @return the future completed when the delivered event for the message arrives. If sending
+     * fails it is completed with the same result as the sent future. Delivery reports depend on the
+     * carrier and might never arrive: the future is completed with {@link SendResult#RESULT_EXPIRED}
+     * once the library stops waiting for them, or with {@link SendResult#RESULT_CANCELLED} if the
+     * handler is destroyed first.
+     */
+    public SendFuture getDelivered(){
+        return delivered;
+    }
+
+    /**
+     * Method to be called when the message is handed to the system.
+     */
+    void onDispatched(){
+        dispatchedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Method to complete the sent future.
+     * @param resultCode the result code of the sent event.
+     */
+    void onSent(int resultCode){
+        sent.complete(new SendResult(resultCode, queuedAtNanos, dispatchedAtNanos));
+    }
+
+    /**
+     * Method to complete the delivered future.
+     * @param resultCode the result code of the delivered event.
+     */
+    void onDelivered(int resultCode){
+        delivered.complete(new SendResult(resultCode, queuedAtNanos, dispatchedAtNanos));
+    }
+
+    /**
+     * Method to complete both futures when the message will never be sent, or its events will never
+     * arrive. A future already complete keeps its result.
+     * @param resultCode the reason why the message has not been sent, one of the SendResult codes.
+     */
+    void onNotSent(int resultCode){
+        SendResult result = new SendResult(resultCode, queuedAtNanos, dispatchedAtNanos);
+        sent.complete(result);
+        delivered.complete(result);
+    }
+}
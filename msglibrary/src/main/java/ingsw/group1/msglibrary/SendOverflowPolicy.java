@@ -0,0 +1,12 @@
+package ingsw.group1.msglibrary;
+
+/**
+ * Enum with values describing what the outbound queue does when a message is sent while it is full.
+ * @author Riccardo De Zen
+ */
+public enum SendOverflowPolicy {
+    //The new message is refused and the send method returns false.
+    REJECT_NEW,
+    //The oldest message waiting in the queue is discarded to make room for the new one.
+    DROP_OLDEST
+}
@@ -0,0 +1,88 @@
+package ingsw.group1.msglibrary;
+
+import android.app.Activity;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Class describing the outcome of one of the events (sent or delivered) of an asynchronous send.
+ * @author Riccardo De Zen
+ */
+public final class SendResult {
+
+    //Result code for a message refused by the outbound queue, because invalid or because it was full.
+    public static final int RESULT_REJECTED = -1000;
+    //Result code for a message discarded from the outbound queue before being sent.
+    public static final int RESULT_DROPPED = -1001;
+    //Result code for an event that did not arrive within PendingSendTable.ENTRY_TIMEOUT_MILLIS.
+    public static final int RESULT_EXPIRED = -1002;
+    //Result code for an event that will never be reported because the handler has been destroyed.
+    public static final int RESULT_CANCELLED = -1003;
+    //Result code for a message sent by a handler that does not report the outcome of its messages.
+    public static final int RESULT_UNTRACKED = -1004;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final int resultCode;
+    private final long timestamp;
+    private final long queueTimeMillis;
+    private final long latencyMillis;
+
+    /**
+     * @param resultCode the result code of the event.
+     * @param queuedAtNanos the System.nanoTime() at which the message was queued.
+     * @param dispatchedAtNanos the System.nanoTime() at which the message was handed to the system,
+     *                          0 if it never was.
+     */
+    SendResult(int resultCode, long queuedAtNanos, long dispatchedAtNanos){
+        long now = System.nanoTime();
+        this.resultCode = resultCode;
+        this.timestamp = System.currentTimeMillis();
+        this.queueTimeMillis = dispatchedAtNanos == 0 ? 0 : (dispatchedAtNanos - queuedAtNanos) / NANOS_PER_MILLI;
+        this.latencyMillis = (now - queuedAtNanos) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the result code of the event, Activity.RESULT_OK if it was successful, one of the
+     * SmsManager error codes or one of the codes in this class otherwise.
+     */
+    public int getResultCode(){
+        return resultCode;
+    }
+
+    /**
+     * @return true if the result code is Activity.RESULT_OK.
+     */
+    public boolean isSuccessful(){
+        return resultCode == Activity.RESULT_OK;
+    }
+
+    /**
+     * @return the time, in milliseconds since the epoch, at which the event was received.
+     */
+    public long getTimestamp(){
+        return timestamp;
+    }
+
+    /**
+     * @return how many milliseconds the message waited in the outbound queue, 0 if it never left it.
+     */
+    public long getQueueTimeMillis(){
+        return queueTimeMillis;
+    }
+
+    /**
+     * @return how many milliseconds passed between the send request and the event.
+     */
+    public long getLatencyMillis(){
+        return latencyMillis;
+    }
+
+    /**
+     * @return the String type representation of this object
+     */
+    @NonNull
+    public String toString(){
+        return "Result: "+resultCode+"; Queued for: "+queueTimeMillis+"ms; Latency: "+latencyMillis+"ms";
+    }
+}
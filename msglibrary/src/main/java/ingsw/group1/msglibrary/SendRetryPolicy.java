@@ -0,0 +1,100 @@
+package ingsw.group1.msglibrary;
+
+import android.telephony.SmsManager;
+
+import java.util.Random;
+
+/**
+ * Class describing how messages whose sending failed are retried. Only failures that are likely to
+ * be temporary are retried, each time waiting exponentially longer, with some random jitter so that
+ * many failed messages do not all come back at the same time.
+ * @author Riccardo De Zen
+ */
+public final class SendRetryPolicy {
+
+    private static final String ATTEMPTS_ERROR = "The maximum number of attempts must be at least 1.";
+    private static final String DELAY_ERROR = "Delays must be positive and the base delay can't exceed the maximum.";
+
+    //Up to 3 attempts, waiting about 2 and 4 seconds between them.
+    public static final SendRetryPolicy DEFAULT = new SendRetryPolicy(3, 2000, 60000);
+    //Failed messages are never retried.
+    public static final SendRetryPolicy NO_RETRY = new SendRetryPolicy(1, 1, 1);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts the maximum number of times a message is handed to the system, including the
+     *                    first one.
+     * @param baseDelayMillis the delay before the first retry, doubled for every further retry.
+     * @param maxDelayMillis the maximum delay between two attempts.
+     * @throws IllegalArgumentException if maxAttempts is less than 1, a delay is not positive or the
+     * base delay is bigger than the maximum delay.
+     */
+    public SendRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis){
+        if(maxAttempts < 1) throw new IllegalArgumentException(ATTEMPTS_ERROR);
+        if(baseDelayMillis < 1 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException(DELAY_ERROR);
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @return the maximum number of times a message is handed to the system.
+     */
+    public int getMaxAttempts(){
+        return maxAttempts;
+    }
+
+    /**
+     * @return true if this policy allows at least one retry.
+     */
+    public boolean allowsRetries(){
+        return maxAttempts > 1;
+    }
+
+    /**
+     * Method to classify the result code of a sent event.
+     * @param resultCode the result code of the failed sent event.
+     * @return true if the failure is likely temporary (no service, radio off, rate limit or generic
+     * failure), false if retrying would fail again.
+     */
+    public static boolean isRetryable(int resultCode){
+        switch(resultCode){
+            case SmsManager.RESULT_ERROR_GENERIC_FAILURE:
+            case SmsManager.RESULT_ERROR_RADIO_OFF:
+            case SmsManager.RESULT_ERROR_NO_SERVICE:
+            case SmsManager.RESULT_ERROR_LIMIT_EXCEEDED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Method to tell whether a message should be retried.
+     * @param resultCode the result code of the failed sent event.
+     * @param attempt how many times the message has already been handed to the system.
+     * @return true if the failure is retryable and the message has attempts left.
+     */
+    public boolean shouldRetry(int resultCode, int attempt){
+        return attempt < maxAttempts && isRetryable(resultCode);
+    }
+
+    /**
+     * Method to compute how long to wait before the next attempt. Half the delay is fixed and half is
+     * random, so retries are spread out but never come back too early.
+     * @param attempt how many times the message has already been handed to the system, at least 1.
+     * @param random the source of the jitter.
+     * @return the delay in milliseconds.
+     */
+    long getDelayMillis(int attempt, Random random){
+        long delay = baseDelayMillis;
+        for(int i = 1; i < attempt && delay < maxDelayMillis; i++) delay *= 2;
+        delay = Math.min(delay, maxDelayMillis);
+        long half = delay / 2;
+        return delay - half + (long)(random.nextDouble() * half);
+    }
+}
@@ -0,0 +1,17 @@
+package ingsw.group1.msglibrary;
+
+import java.util.List;
+
+/**
+ * Listener receiving the outcome of sent messages in batches instead of one by one.
+ * @author Riccardo De Zen
+ * @param <M> The type of Message sent.
+ */
+public interface SentBatchListener<M extends Message> {
+    /**
+     * Called when a batch of messages has been sent
+     * @param results the messages with the result code of their sending operation, in order of
+     *                arrival, never empty
+     */
+    void onMessagesSent(List<MessageResult<M>> results);
+}
@@ -1,6 +1,7 @@
 package ingsw.group1.msglibrary;
 
 import android.content.Context;
+import android.content.Intent;
 import android.database.Cursor;
 import android.provider.Telephony;
 import android.telephony.PhoneNumberUtils;
@@ -18,6 +19,15 @@ import java.util.List;
  * @author Riccardo De Zen
  */
 public class SmsUtils {
+    //Returned when no message is pertinent, so that filtering foreign messages allocates nothing.
+    private static final SMSMessage[] NO_MESSAGES = new SMSMessage[0];
+
+    //Extras of the broadcast carrying messages SMSReceiver already decoded and filtered.
+    private static final String EXTRA_ADDRESSES_KEY = "addresses";
+    private static final String EXTRA_BODIES_KEY = "bodies";
+    private static final String EXTRA_TIMESTAMPS_KEY = "timestamps";
+    private static final String EXTRA_PRIORITIES_KEY = "priorities";
+
     //projection to use for SMS Inbox query
     private static String[] inboxProjection = {
             Telephony.Sms._ID,
@@ -93,8 +103,52 @@ public class SmsUtils {
      * @param urgent whether it should include SMSHandler.WAKE_KEY
      */
     static boolean isMessageValid(String message, boolean urgent){
-        String body = SMSHandler.APP_KEY + message + (urgent ? SMSHandler.WAKE_KEY : "");
-        return body.length() <= 160;
+        return isMessageValid(message, urgent, false);
+    }
+
+    /**
+     * Method to detect whether the given message is ok to be sent through the library
+     * @param message the main body of the message
+     * @param urgent whether it should include SMSHandler.WAKE_KEY
+     * @param multipart whether the message can be split in more than one SMS
+     */
+    static boolean isMessageValid(String message, boolean urgent, boolean multipart){
+        if(message == null) return false;
+        int maxSegments = multipart ? SMSMessage.MAX_MESSAGE_PARTS : 1;
+        return getSegmentCount(message, urgent) <= maxSegments;
+    }
+
+    /**
+     * Method to choose the text actually sent for a message. If compression is allowed and the
+     * compressed text takes fewer SMS it is used in place of the original one. The receiver checks
+     * the length of the expanded body, so a message is compressed only if its original text also
+     * fits in {@link SMSMessage#MAX_MESSAGE_PARTS} SMS.
+     * @param data the data of the message
+     * @param urgent whether it should include SMSHandler.WAKE_KEY
+     * @param multipart whether the message can be split in more than one SMS
+     * @param compress whether the message can be compressed
+     * @return the text to send, null if it does not fit in the allowed number of SMS.
+     */
+    static String prepareBody(String data, boolean urgent, boolean multipart, boolean compress){
+        if(data == null) return null;
+        String body = data;
+        int segments = getSegmentCount(data, urgent);
+        if(compress && segments <= SMSMessage.MAX_MESSAGE_PARTS){
+            String compressed = SMSCompression.compress(data);
+            if(getSegmentCount(compressed, urgent) < segments)
+                body = compressed;
+        }
+        return isMessageValid(body, urgent, multipart) ? body : null;
+    }
+
+    /**
+     * Method to count the SMS needed to send a message, including the library codes, without
+     * composing its body.
+     * @param message the main body of the message
+     * @param urgent whether it should include SMSHandler.WAKE_KEY
+     */
+    static int getSegmentCount(String message, boolean urgent){
+        return SMSEncoding.getSegmentCount(SMSHandler.APP_KEY, message, urgent ? SMSHandler.WAKE_KEY : null);
     }
 
     /**
@@ -105,20 +159,138 @@ public class SmsUtils {
     }
 
     /**
-     * Methods to tell whether the message is pertinent to the app or not
+     * Method to rebuild the messages contained in a received Intent and keep the ones pertinent to the
+     * library. The system delivers all the parts of a concatenated message together and in order, so
+     * consecutive parts coming from the same address are joined into a single message. Compressed
+     * messages are decompressed.
+     * Only the first part of a message carries SMSHandler.APP_KEY, so messages whose first part does
+     * not start with it are skipped without reading the other parts or allocating any object.
+     * @param parts the messages coming directly from the received Intent, can be null.
+     * @return the pertinent messages, each one containing the whole body sent by the Peer. The
+     * returned array is shared and empty if no message is pertinent.
+     */
+    static SMSMessage[] assemblePertinentMessages(SmsMessage[] parts){
+        if(parts == null) return NO_MESSAGES;
+        SMSMessage[] messages = null;
+        int count = 0;
+        int i = 0;
+        while(i < parts.length){
+            int first = i;
+            String address = parts[i].getOriginatingAddress();
+            i++;
+            while(i < parts.length && address != null
+                    && address.equals(parts[i].getOriginatingAddress()))
+                i++;
+            String firstBody = parts[first].getMessageBody();
+            if(!isMessagePertinent(firstBody)) continue;
+            String fullBody = firstBody;
+            if(i - first > 1){
+                StringBuilder body = new StringBuilder(firstBody);
+                for(int j = first + 1; j < i; j++){
+                    String partBody = parts[j].getMessageBody();
+                    if(partBody != null) body.append(partBody);
+                }
+                fullBody = body.toString();
+            }
+            fullBody = SMSCompression.expand(fullBody);
+            if(SMSMessage.isMultipartMessageValid(fullBody) != SMSMessage.MessageValidity.MESSAGE_VALID)
+                continue;
+            //At most one message per remaining part can still be found.
+            if(messages == null) messages = new SMSMessage[parts.length - first];
+            messages[count++] = new SMSMessage(
+                    new SMSPeer(address), fullBody, parts[first].getTimestampMillis(), isMessageUrgent(fullBody)
+            );
+        }
+        if(count == 0) return NO_MESSAGES;
+        if(count == messages.length) return messages;
+        SMSMessage[] result = new SMSMessage[count];
+        System.arraycopy(messages, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Method to put received messages in the extras of an Intent, so that they can be propagated
+     * without being decoded and filtered again.
+     * @param intent the Intent to fill.
+     * @param messages the received messages.
+     * @return the same Intent.
+     */
+    static Intent putReceivedMessages(@NonNull Intent intent, @NonNull SMSMessage[] messages){
+        String[] addresses = new String[messages.length];
+        String[] bodies = new String[messages.length];
+        long[] timestamps = new long[messages.length];
+        boolean[] priorities = new boolean[messages.length];
+        for(int i = 0; i < messages.length; i++){
+            addresses[i] = messages[i].getPeer().getAddress();
+            bodies[i] = messages[i].getData();
+            timestamps[i] = messages[i].getReceivedAt();
+            priorities[i] = messages[i].isPriority();
+        }
+        return intent.putExtra(EXTRA_ADDRESSES_KEY, addresses)
+                .putExtra(EXTRA_BODIES_KEY, bodies)
+                .putExtra(EXTRA_TIMESTAMPS_KEY, timestamps)
+                .putExtra(EXTRA_PRIORITIES_KEY, priorities);
+    }
+
+    /**
+     * Method to read the messages put in an Intent by {@link #putReceivedMessages(Intent, SMSMessage[])}.
+     * @param intent the received Intent.
+     * @return the messages in the Intent. The returned array is shared and empty if the Intent does
+     * not contain any message.
+     */
+    static SMSMessage[] getReceivedMessages(@NonNull Intent intent){
+        String[] addresses = intent.getStringArrayExtra(EXTRA_ADDRESSES_KEY);
+        String[] bodies = intent.getStringArrayExtra(EXTRA_BODIES_KEY);
+        long[] timestamps = intent.getLongArrayExtra(EXTRA_TIMESTAMPS_KEY);
+        boolean[] priorities = intent.getBooleanArrayExtra(EXTRA_PRIORITIES_KEY);
+        if(addresses == null || bodies == null || timestamps == null || priorities == null
+                || addresses.length == 0) return NO_MESSAGES;
+        SMSMessage[] messages = new SMSMessage[addresses.length];
+        for(int i = 0; i < messages.length; i++)
+            messages[i] = new SMSMessage(new SMSPeer(addresses[i]), bodies[i], timestamps[i], priorities[i]);
+        return messages;
+    }
+
+    /**
+     * Method to convert the data messages contained in a received Intent. Only messages sent to the
+     * port of the library reach it, so no filtering on their content is needed. Messages with an
+     * invalid address or payload are skipped.
+     * @param messages the messages coming directly from the received Intent, can be null.
+     * @return the valid data messages.
+     */
+    static SMSDataMessage[] getDataMessages(SmsMessage[] messages){
+        if(messages == null) return new SMSDataMessage[0];
+        List<SMSDataMessage> dataMessages = new ArrayList<>(messages.length);
+        for(SmsMessage message : messages){
+            if(SMSPeer.isAddressValid(message.getOriginatingAddress()) != SMSPeer.PhoneNumberValidity.ADDRESS_VALID)
+                continue;
+            if(SMSDataMessage.isDataValid(message.getUserData()) != SMSMessage.MessageValidity.MESSAGE_VALID)
+                continue;
+            dataMessages.add(new SMSDataMessage(message));
+        }
+        return dataMessages.toArray(new SMSDataMessage[0]);
+    }
+
+    /**
+     * Methods to tell whether the message is pertinent to the app or not. Characters are compared
+     * in place, null and short bodies are simply not pertinent.
      */
     static boolean isMessagePertinent(String body){
-        String messageHead = body.substring(0,3);
-        return messageHead.equals(SMSHandler.APP_KEY);
+        return body != null && body.startsWith(SMSHandler.APP_KEY);
     }
     static boolean isMessagePertinent(SMSMessage message){
-        String messageBody = message.getData();
-        String messageHead = messageBody.substring(0,3);
-        return messageHead.equals(SMSHandler.APP_KEY);
+        return isMessagePertinent(message.getData());
     }
     static boolean isMessagePertinent(SmsMessage message){
-        String messageBody = message.getMessageBody();
-        String messageHead = messageBody.substring(0,3);
-        return messageHead.equals(SMSHandler.APP_KEY);
+        return isMessagePertinent(message.getMessageBody());
+    }
+
+    /**
+     * Method to tell whether a pertinent message asks to fire a broadcast, that is whether it ends
+     * with SMSHandler.WAKE_KEY as written by composeMessage. Characters are compared in place.
+     * @param body the full body of the message, can be null.
+     */
+    static boolean isMessageUrgent(String body){
+        return body != null && body.endsWith(SMSHandler.WAKE_KEY);
     }
 }
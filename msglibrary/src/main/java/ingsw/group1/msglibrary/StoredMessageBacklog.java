@@ -0,0 +1,58 @@
+package ingsw.group1.msglibrary;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import ingsw.group1.msglibrary.database.QueryCallback;
+import ingsw.group1.msglibrary.database.StoredSMSCursor;
+
+/**
+ * Backlog of a stream made of the messages stored in the database. Messages are read only when the
+ * subscriber asks for them and deleted only once handed to it, so messages the subscriber never
+ * asked for stay stored.
+ * @author Riccardo De Zen
+ */
+class StoredMessageBacklog implements MessageStream.Backlog<SMSMessage> {
+
+    private static final String LOG_TAG = "StoredMessageBacklog";
+
+    private final StoredSMSCursor cursor;
+
+    /**
+     * @param cursor the cursor the messages are read with, closed with the backlog.
+     */
+    StoredMessageBacklog(@NonNull StoredSMSCursor cursor){
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void read(int max, @NonNull final MessageStream<SMSMessage> stream){
+        cursor.read(max, new QueryCallback<List<SMSMessage>>() {
+            @Override
+            public void onQueryFinished(List<SMSMessage> messages) {
+                stream.onBacklogRead(messages);
+            }
+
+            @Override
+            public void onQueryFailed(Exception error) {
+                //The stream goes on with new messages, the stored ones are kept for later.
+                Log.w(LOG_TAG, "Reading the stored messages failed.", error);
+                stream.onBacklogRead(Collections.<SMSMessage>emptyList());
+            }
+        });
+    }
+
+    @Override
+    public void delivered(@NonNull SMSMessage message){
+        cursor.delivered(message);
+    }
+
+    @Override
+    public void close(){
+        cursor.close();
+    }
+}
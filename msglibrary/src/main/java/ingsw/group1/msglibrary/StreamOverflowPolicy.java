@@ -0,0 +1,16 @@
+package ingsw.group1.msglibrary;
+
+/**
+ * Enum with values describing what a stream does with events arriving while its subscriber has not
+ * asked for them and its buffer is full.
+ * @author Riccardo De Zen
+ */
+public enum StreamOverflowPolicy {
+    //Events are kept until requested, the capacity of the buffer is ignored: memory is only bounded by
+    //how fast the subscriber requests events.
+    BUFFER,
+    //The oldest event waiting in the buffer is discarded to make room for the new one.
+    DROP_OLDEST,
+    //The new event is discarded.
+    DROP_NEWEST
+}
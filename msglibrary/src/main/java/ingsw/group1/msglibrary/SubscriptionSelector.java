@@ -0,0 +1,132 @@
+package ingsw.group1.msglibrary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class choosing which SIM subscription each outgoing message is sent through. Every subscription
+ * gets a weight based on its recent share of successful sends and on its recent sent to delivered
+ * latency, both tracked as exponential moving averages. Messages are spread randomly according to
+ * those weights, so a failing or slow SIM gets less traffic but is still probed now and then.
+ * @author Riccardo De Zen
+ */
+class SubscriptionSelector {
+
+    static final int NO_SUBSCRIPTION = -1;
+
+    //How much a new observation counts in the moving averages.
+    static final double SMOOTHING = 0.2;
+    //Latency assumed for a subscription with no delivery report yet.
+    static final double INITIAL_LATENCY_MILLIS = 5000;
+    //Latency at which a subscription weighs half as much as an instantaneous one.
+    static final double REFERENCE_LATENCY_MILLIS = 5000;
+    //Smallest weight a subscription can have, so it is never excluded completely.
+    static final double MIN_WEIGHT = 0.02;
+
+    /**
+     * Class holding the statistics of a single subscription.
+     */
+    private static class Stats {
+        private final int subscriptionId;
+        private double successRate = 1;
+        private double latencyMillis = INITIAL_LATENCY_MILLIS;
+
+        private Stats(int subscriptionId){
+            this.subscriptionId = subscriptionId;
+        }
+
+        private double weight(){
+            double latencyFactor = REFERENCE_LATENCY_MILLIS / (REFERENCE_LATENCY_MILLIS + latencyMillis);
+            return Math.max(MIN_WEIGHT, successRate * latencyFactor);
+        }
+    }
+
+    private final Random random;
+    private List<Stats> subscriptions = new ArrayList<>();
+
+    SubscriptionSelector(){
+        this(new Random());
+    }
+
+    /**
+     * @param random the source of randomness for the selection.
+     */
+    SubscriptionSelector(Random random){
+        this.random = random;
+    }
+
+    /**
+     * Method to set the available subscriptions. Statistics are kept for subscriptions that were
+     * already available.
+     * @param subscriptionIds the ids of the active subscriptions.
+     */
+    synchronized void setSubscriptions(int[] subscriptionIds){
+        List<Stats> updated = new ArrayList<>(subscriptionIds.length);
+        for(int id : subscriptionIds){
+            Stats stats = find(id);
+            updated.add(stats != null ? stats : new Stats(id));
+        }
+        subscriptions = updated;
+    }
+
+    /**
+     * @return the number of available subscriptions.
+     */
+    synchronized int size(){
+        return subscriptions.size();
+    }
+
+    /**
+     * Method to choose the subscription for the next message.
+     * @return the id of the chosen subscription, {@link #NO_SUBSCRIPTION} if none is available.
+     */
+    synchronized int select(){
+        if(subscriptions.isEmpty()) return NO_SUBSCRIPTION;
+        double total = 0;
+        for(Stats stats : subscriptions) total += stats.weight();
+        double point = random.nextDouble() * total;
+        for(Stats stats : subscriptions){
+            point -= stats.weight();
+            if(point < 0) return stats.subscriptionId;
+        }
+        return subscriptions.get(subscriptions.size() - 1).subscriptionId;
+    }
+
+    /**
+     * Method to record the outcome of a send.
+     * @param subscriptionId the subscription the message was sent through.
+     * @param successful whether the sent event reported a success.
+     */
+    synchronized void onSendResult(int subscriptionId, boolean successful){
+        Stats stats = find(subscriptionId);
+        if(stats == null) return;
+        stats.successRate += SMOOTHING * ((successful ? 1 : 0) - stats.successRate);
+    }
+
+    /**
+     * Method to record the time between the sent and delivered events of a message.
+     * @param subscriptionId the subscription the message was sent through.
+     * @param latencyMillis the time from the sent report of the message to its delivery report.
+     */
+    synchronized void onDelivered(int subscriptionId, long latencyMillis){
+        Stats stats = find(subscriptionId);
+        if(stats == null || latencyMillis < 0) return;
+        stats.latencyMillis += SMOOTHING * (latencyMillis - stats.latencyMillis);
+    }
+
+    /**
+     * @param subscriptionId the id of a subscription.
+     * @return the current weight of the subscription, 0 if it is not available.
+     */
+    synchronized double getWeight(int subscriptionId){
+        Stats stats = find(subscriptionId);
+        return stats == null ? 0 : stats.weight();
+    }
+
+    private Stats find(int subscriptionId){
+        for(Stats stats : subscriptions)
+            if(stats.subscriptionId == subscriptionId) return stats;
+        return null;
+    }
+}
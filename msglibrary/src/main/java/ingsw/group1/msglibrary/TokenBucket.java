@@ -0,0 +1,90 @@
+package ingsw.group1.msglibrary;
+
+/**
+ * Simple token bucket used to limit the rate at which messages are handed to the system.
+ * Tokens are refilled continuously at a fixed rate, up to a maximum amount which defines how big a
+ * burst can be. Every sent message consumes one token.
+ * @author Riccardo De Zen
+ */
+class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final String RATE_ERROR = "The rate must be a positive number.";
+    private static final String BURST_ERROR = "The burst size must be at least 1.";
+
+    private double tokensPerSecond;
+    private int maxTokens;
+    private double availableTokens;
+    private long lastRefill;
+
+    /**
+     * @param tokensPerSecond how many tokens are added to the bucket every second.
+     * @param maxTokens the maximum amount of tokens the bucket can hold, which is the burst size.
+     * @throws IllegalArgumentException if the rate is not positive or the burst size is less than 1.
+     */
+    TokenBucket(double tokensPerSecond, int maxTokens){
+        setRate(tokensPerSecond, maxTokens);
+        availableTokens = maxTokens;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Method to change the rate of the bucket. Tokens already in the bucket are kept, up to the new
+     * maximum.
+     * @param tokensPerSecond how many tokens are added to the bucket every second.
+     * @param maxTokens the maximum amount of tokens the bucket can hold.
+     * @throws IllegalArgumentException if the rate is not positive or the burst size is less than 1.
+     */
+    synchronized void setRate(double tokensPerSecond, int maxTokens){
+        if(!(tokensPerSecond > 0)) throw new IllegalArgumentException(RATE_ERROR);
+        if(maxTokens < 1) throw new IllegalArgumentException(BURST_ERROR);
+        refill();
+        this.tokensPerSecond = tokensPerSecond;
+        this.maxTokens = maxTokens;
+        availableTokens = Math.min(availableTokens, maxTokens);
+    }
+
+    /**
+     * Method to take a token without waiting.
+     * @return true if a token was available and has been taken, false otherwise.
+     */
+    synchronized boolean tryAcquire(){
+        refill();
+        if(availableTokens < 1) return false;
+        availableTokens--;
+        return true;
+    }
+
+    /**
+     * Method to take a token, waiting until one becomes available.
+     * @throws InterruptedException if the calling Thread is interrupted while waiting.
+     */
+    void acquire() throws InterruptedException{
+        long waitNanos;
+        while((waitNanos = nanosUntilNextToken()) > 0){
+            Thread.sleep(waitNanos / NANOS_PER_MILLI, (int)(waitNanos % NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return 0 if a token has been taken, otherwise the nanoseconds to wait before the next one.
+     */
+    private synchronized long nanosUntilNextToken(){
+        if(tryAcquire()) return 0;
+        return Math.max(1, (long)((1 - availableTokens) * NANOS_PER_SECOND / tokensPerSecond));
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill.
+     */
+    private void refill(){
+        long now = System.nanoTime();
+        if(tokensPerSecond > 0){
+            double newTokens = (now - lastRefill) * tokensPerSecond / NANOS_PER_SECOND;
+            availableTokens = Math.min(maxTokens, availableTokens + newTokens);
+        }
+        lastRefill = now;
+    }
+}
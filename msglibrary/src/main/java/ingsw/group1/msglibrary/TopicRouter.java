@@ -0,0 +1,209 @@
+package ingsw.group1.msglibrary;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Class routing texts to the listeners subscribed to the longest topic they start with.
+ * Subscriptions are compiled into an immutable prefix trie every time they change, matching a text
+ * then only walks the trie along its first characters: its cost depends on the length of the topic,
+ * not on the number of subscribed topics. The trie is published through a volatile field, so
+ * matching never locks and always sees a complete trie.
+ * The listeners of every topic are kept in a {@link ListenerRegistry}, so they can be weakly held and
+ * notified on their own Executor. A topic whose listeners have all been collected no longer matches.
+ * @author Riccardo De Zen
+ * @param <L> The type of the listeners.
+ */
+class TopicRouter<L> {
+
+    private static final String TOPIC_ERROR = "The topic must not be empty.";
+
+    /**
+     * Immutable node of the trie. Children are sorted by their character.
+     */
+    private static class Node<L> {
+        private final char[] keys;
+        private final Node<L>[] children;
+        //Null when no topic ends at this node.
+        private final ListenerRegistry<L> listeners;
+
+        private Node(char[] keys, Node<L>[] children, ListenerRegistry<L> listeners){
+            this.keys = keys;
+            this.children = children;
+            this.listeners = listeners;
+        }
+
+        /**
+         * @return the child for the given character, null if there is none.
+         */
+        private Node<L> child(char c){
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * Mutable node, only used while compiling the trie.
+     */
+    private static class Builder<L> {
+        private final TreeMap<Character, Builder<L>> children = new TreeMap<>();
+        private ListenerRegistry<L> listeners;
+
+        @SuppressWarnings("unchecked")
+        private Node<L> build(){
+            char[] keys = new char[children.size()];
+            Node<L>[] nodes = new Node[children.size()];
+            int i = 0;
+            for(Map.Entry<Character, Builder<L>> entry : children.entrySet()){
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node<>(keys, nodes, listeners);
+        }
+    }
+
+    //Guarded by this, the source the trie is compiled from.
+    private final Map<String, ListenerRegistry<L>> subscriptions = new HashMap<>();
+    //Null when there are no subscriptions.
+    private volatile Node<L> root;
+    //The registries of all the topics in the trie, published with it.
+    private volatile List<ListenerRegistry<L>> registries = Collections.emptyList();
+
+    /**
+     * Method to subscribe a listener to a topic, strongly held and notified on the calling Thread.
+     * @param topic the topic, the text that must follow the library code for a message to match.
+     * @param listener the listener.
+     * @return true if the listener has been subscribed, false if it already was to this topic.
+     * @throws IllegalArgumentException if the topic is empty.
+     */
+    boolean add(@NonNull String topic, @NonNull L listener){
+        return add(topic, listener, false, null);
+    }
+
+    /**
+     * Method to subscribe a listener to a topic.
+     * @param topic the topic, the text that must follow the library code for a message to match.
+     * @param listener the listener.
+     * @param weak whether the listener should be held through a WeakReference.
+     * @param executor the Executor the listener is notified on, null to notify it on the calling Thread.
+     * @return true if the listener has been subscribed, false if it already was to this topic.
+     * @throws IllegalArgumentException if the topic is empty.
+     */
+    synchronized boolean add(@NonNull String topic, @NonNull L listener, boolean weak, Executor executor){
+        if(topic.isEmpty()) throw new IllegalArgumentException(TOPIC_ERROR);
+        ListenerRegistry<L> listeners = subscriptions.get(topic);
+        if(listeners != null) return listeners.add(this, listener, weak, executor);
+        listeners = new ListenerRegistry<>();
+        listeners.add(this, listener, weak, executor);
+        subscriptions.put(topic, listeners);
+        compile();
+        return true;
+    }
+
+    /**
+     * Method to unsubscribe a listener from a topic.
+     * @param topic the topic.
+     * @param listener the listener.
+     * @return true if the listener was subscribed to the topic, false otherwise.
+     */
+    synchronized boolean remove(@NonNull String topic, @NonNull L listener){
+        ListenerRegistry<L> listeners = subscriptions.get(topic);
+        if(listeners == null || !listeners.remove(this, listener)) return false;
+        if(listeners.isEmpty()) compile();
+        return true;
+    }
+
+    /**
+     * Method to remove all the subscriptions.
+     */
+    synchronized void clear(){
+        subscriptions.clear();
+        compile();
+    }
+
+    /**
+     * @return true if no listener is subscribed to any topic, only takes a single volatile read.
+     * Weakly held listeners that have been collected but not yet dropped still count.
+     */
+    boolean isEmpty(){
+        return root == null;
+    }
+
+    /**
+     * @return true if at least one subscribed listener has not been collected.
+     */
+    boolean hasLiveListeners(){
+        for(ListenerRegistry<L> listeners : registries){
+            if(listeners.hasLiveListeners()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to notify the live listeners of the longest topic the text starts with, on their
+     * Executor or on the calling Thread if they have none. Topics whose listeners have all been
+     * collected are skipped in favour of the next shorter one.
+     * @param text the text to route.
+     * @param start the index the topic starts at.
+     * @param action the action to perform on every listener.
+     * @return the number of listeners notified, 0 if no topic matches.
+     */
+    int forEach(@NonNull CharSequence text, int start, @NonNull ListenerRegistry.Action<L> action){
+        Node<L> node = root;
+        List<ListenerRegistry<L>> matched = null;
+        for(int i = start; node != null && i < text.length(); i++){
+            node = node.child(text.charAt(i));
+            if(node == null || node.listeners == null) continue;
+            if(matched == null) matched = new ArrayList<>();
+            matched.add(node.listeners);
+        }
+        if(matched == null) return 0;
+        for(int i = matched.size() - 1; i >= 0; i--){
+            int notified = matched.get(i).forEach(this, action);
+            if(notified > 0) return notified;
+        }
+        return 0;
+    }
+
+    /**
+     * Method compiling the subscriptions into a new trie and publishing it. Topics left without
+     * listeners are dropped.
+     */
+    private void compile(){
+        Iterator<ListenerRegistry<L>> iterator = subscriptions.values().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().isEmpty()) iterator.remove();
+        }
+        if(subscriptions.isEmpty()){
+            root = null;
+            registries = Collections.emptyList();
+            return;
+        }
+        Builder<L> rootBuilder = new Builder<>();
+        for(Map.Entry<String, ListenerRegistry<L>> subscription : subscriptions.entrySet()){
+            Builder<L> builder = rootBuilder;
+            String topic = subscription.getKey();
+            for(int i = 0; i < topic.length(); i++){
+                Builder<L> child = builder.children.get(topic.charAt(i));
+                if(child == null){
+                    child = new Builder<>();
+                    builder.children.put(topic.charAt(i), child);
+                }
+                builder = child;
+            }
+            builder.listeners = subscription.getValue();
+        }
+        registries = Collections.unmodifiableList(new ArrayList<>(subscriptions.values()));
+        root = rootBuilder.build();
+    }
+}
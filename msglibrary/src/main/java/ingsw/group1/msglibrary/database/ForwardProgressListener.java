@@ -0,0 +1,25 @@
+package ingsw.group1.msglibrary.database;
+
+/**
+ * Interface for an object following the forwarding of the stored messages, see
+ * {@link SMSDatabaseManager#forwardAllSMS(ingsw.group1.msglibrary.ReceivedMessageListener, int, ForwardProgressListener)}.
+ * Called on the background Thread doing the forwarding.
+ * @author Riccardo De Zen
+ */
+public interface ForwardProgressListener {
+
+    /**
+     * Called every time a page of messages has been forwarded and removed from the database.
+     * @param forwarded how many messages have been handed to the listener so far. Invalid messages
+     *                  are removed without being counted.
+     * @param total how many messages were stored when the forwarding started.
+     */
+    void onPageForwarded(int forwarded, int total);
+
+    /**
+     * Called once when the forwarding ends.
+     * @param forwarded how many messages have been handed to the listener.
+     * @param successful false if the forwarding stopped because of an error, true otherwise.
+     */
+    void onForwardFinished(int forwarded, boolean successful);
+}
@@ -0,0 +1,22 @@
+package ingsw.group1.msglibrary.database;
+
+/**
+ * Interface for an object waiting for the result of an asynchronous query on
+ * {@link SMSDatabaseManager}. Called on the Thread running the query, never on the main Thread.
+ * @author Riccardo De Zen
+ * @param <T> The type of the result.
+ */
+public interface QueryCallback<T> {
+
+    /**
+     * Called if the query succeeds.
+     * @param result the result of the query.
+     */
+    void onQueryFinished(T result);
+
+    /**
+     * Called if the query fails.
+     * @param error the cause.
+     */
+    void onQueryFailed(Exception error);
+}
@@ -1,8 +1,12 @@
 package ingsw.group1.msglibrary.database;
 
 import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
 
 import ingsw.group1.msglibrary.SMSMessage;
+import ingsw.group1.msglibrary.SMSPeer;
 
 /**
  * @author Riccardo De Zen
@@ -10,6 +14,123 @@ import ingsw.group1.msglibrary.SMSMessage;
  */
 @Dao
 abstract class SMSDao extends BaseDao<SMSMessage>{
+
+    /**
+     * @return the highest id in the table, 0 if the table is empty.
+     */
+    @Query("SELECT IFNULL(MAX(" + SMSMessage.SMS_ID_COLUMN_NAME + "), 0) FROM " + SMSMessage.SMS_TABLE_NAME)
+    public abstract int getMaxId();
+
+    /**
+     * @return the number of rows with an id up to the given one.
+     */
+    @Query("SELECT COUNT(*) FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId")
+    public abstract int countUpTo(int lastId);
+
+    /**
+     * Method to read a page of rows in ascending id order, reading the next page from the last id of
+     * the previous one never skips or repeats rows.
+     * @param afterId the rows have an id greater than this one.
+     * @param lastId the rows have an id up to this one.
+     * @param pageSize the maximum number of rows.
+     * @return the rows, in ascending id order.
+     */
+    @Query("SELECT * FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ID_COLUMN_NAME + " > :afterId"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId"
+            + " ORDER BY " + SMSMessage.SMS_ID_COLUMN_NAME + " ASC LIMIT :pageSize")
+    public abstract List<SMSMessage> getPage(int afterId, int lastId, int pageSize);
+
+    /**
+     * Method to delete a page of rows with a single statement, hence a single transaction.
+     * @param afterId the rows have an id greater than this one.
+     * @param lastId the rows have an id up to this one.
+     * @return the number of deleted rows.
+     */
+    @Query("DELETE FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ID_COLUMN_NAME + " > :afterId"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId")
+    public abstract int deleteRange(int afterId, int lastId);
+
+    /**
+     * Method to delete the rows with the given ids with a single statement. SQLite limits the number
+     * of arguments of a statement, so the list should not hold more than a few hundred ids.
+     * @param ids the ids of the rows.
+     * @return the number of deleted rows.
+     */
+    @Query("DELETE FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ID_COLUMN_NAME + " IN (:ids)")
+    public abstract int deleteIds(List<Integer> ids);
+
+    /**
+     * @param peer the Peer the messages come from.
+     * @return the messages from the Peer, oldest first. Uses the index on the address.
+     */
+    @Query("SELECT * FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " = :peer"
+            + " ORDER BY " + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " ASC, " + SMSMessage.SMS_ID_COLUMN_NAME + " ASC")
+    public abstract List<SMSMessage> getByPeer(SMSPeer peer);
+
+    /**
+     * @param peer the Peer the messages come from.
+     * @return the number of messages from the Peer. Uses the index on the address.
+     */
+    @Query("SELECT COUNT(*) FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " = :peer")
+    public abstract int countByPeer(SMSPeer peer);
+
+    /**
+     * @param peer the Peer the messages come from.
+     * @param lastId the rows have an id up to this one.
+     * @return the number of messages from the Peer with an id up to the given one. Uses the index on
+     * the address.
+     */
+    @Query("SELECT COUNT(*) FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " = :peer"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId")
+    public abstract int countByPeerUpTo(SMSPeer peer, int lastId);
+
+    /**
+     * Method to read a page of the messages from a Peer, like {@link #getPage(int, int, int)}. The
+     * index on the address also holds the id, so the page is read without visiting other Peers' rows.
+     * @param peer the Peer the messages come from.
+     * @param afterId the rows have an id greater than this one.
+     * @param lastId the rows have an id up to this one.
+     * @param pageSize the maximum number of rows.
+     * @return the rows, in ascending id order.
+     */
+    @Query("SELECT * FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " = :peer"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " > :afterId"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId"
+            + " ORDER BY " + SMSMessage.SMS_ID_COLUMN_NAME + " ASC LIMIT :pageSize")
+    public abstract List<SMSMessage> getPageByPeer(SMSPeer peer, int afterId, int lastId, int pageSize);
+
+    /**
+     * Method to delete a page of the messages from a Peer with a single statement.
+     * @param peer the Peer the messages come from.
+     * @param afterId the rows have an id greater than this one.
+     * @param lastId the rows have an id up to this one.
+     * @return the number of deleted rows.
+     */
+    @Query("DELETE FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " = :peer"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " > :afterId"
+            + " AND " + SMSMessage.SMS_ID_COLUMN_NAME + " <= :lastId")
+    public abstract int deleteRangeByPeer(SMSPeer peer, int afterId, int lastId);
+
+    /**
+     * @param from the start of the range, inclusive, in milliseconds since the epoch.
+     * @param to the end of the range, exclusive, in milliseconds since the epoch.
+     * @return the messages received in the range, oldest first. Uses the index on the time.
+     */
+    @Query("SELECT * FROM " + SMSMessage.SMS_TABLE_NAME
+            + " WHERE " + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " >= :from"
+            + " AND " + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " < :to"
+            + " ORDER BY " + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " ASC")
+    public abstract List<SMSMessage> getReceivedBetween(long from, long to);
+
     /**
      * @return the name of the table containing the SMSMessage entities.
      */
@@ -1,17 +1,45 @@
 package ingsw.group1.msglibrary.database;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import ingsw.group1.msglibrary.SMSMessage;
 
 /**
  * @author Riccardo De Zen
  * Abstract class to allow Room library to instantiate the database.
+ * Version 2 adds the time messages have been received, whether they are urgent, and indexes on the
+ * address and the time, so that lookups by Peer or by time do not scan the whole table.
+ * The schema of every version is exported to the schemas folder of the module, migrations are
+ * checked against it by SMSDatabaseMigrationTest.
  */
-@Database(entities = {SMSMessage.class}, version = 1)
+@Database(entities = {SMSMessage.class}, version = 2, exportSchema = true)
 @TypeConverters({SMSConverters.class})
 public abstract class SMSDatabase extends RoomDatabase {
+
+    /**
+     * Migration from version 1, messages already stored get 0 as their time, meaning unknown.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE " + SMSMessage.SMS_TABLE_NAME + " ADD COLUMN "
+                    + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE " + SMSMessage.SMS_TABLE_NAME + " ADD COLUMN "
+                    + SMSMessage.SMS_PRIORITY_COLUMN_NAME + " INTEGER NOT NULL DEFAULT 0");
+            //Names follow the ones Room gives to the indexes declared in SMSMessage.
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_" + SMSMessage.SMS_TABLE_NAME + "_"
+                    + SMSMessage.SMS_ADDRESS_COLUMN_NAME + " ON " + SMSMessage.SMS_TABLE_NAME
+                    + " (" + SMSMessage.SMS_ADDRESS_COLUMN_NAME + ")");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_" + SMSMessage.SMS_TABLE_NAME + "_"
+                    + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + " ON " + SMSMessage.SMS_TABLE_NAME
+                    + " (" + SMSMessage.SMS_RECEIVED_AT_COLUMN_NAME + ")");
+        }
+    };
+
     public abstract SMSDao access();
-}
\ No newline at end of file
+}
@@ -1,22 +1,37 @@
 package ingsw.group1.msglibrary.database;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.telephony.SmsMessage;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ingsw.group1.msglibrary.ReceivedMessageListener;
 import ingsw.group1.msglibrary.SMSMessage;
+import ingsw.group1.msglibrary.SMSPeer;
 
 /**
  * Singleton class used to perform the two needed operations on the database containing unread sms.
  * This is not properly a singleton pattern because an on-disk instance and an in-memory instance can
  * coexist.
  * The reason for singleton design pattern is found here https://developer.android.com/training/data-storage/room
+ * The database is never accessed on the main Thread: synchronous methods must be called from a
+ * background Thread, and every one of them has an asynchronous counterpart running on the query
+ * Threads of this class. Write-ahead logging is on by default, see {@link #setJournalMode(RoomDatabase.JournalMode)}.
  *
  * @author Riccardo De Zen
  */
@@ -24,32 +39,138 @@ public class SMSDatabaseManager {
 
     private static final String CON_ERROR = "This class uses the singleton design pattern. Use getInstance() to get a reference to the single instance of this class";
     private static final String UNREAD_SMS_DB_NAME = "unread-sms-db";
+    private static final String LOG_TAG = "SMSDatabaseManager";
+    private static final String PAGE_SIZE_ERROR = "The page size must be at least 1.";
+    //SQLite allows 999 arguments per statement.
+    private static final int MAX_DELETED_IDS = 500;
+
+    public static final int DEFAULT_FORWARD_PAGE_SIZE = 200;
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 100;
+    public static final long DEFAULT_WRITE_DELAY_MILLIS = 50;
+    //Pages of the write-ahead log after which it is copied back into the database, SQLite's default.
+    public static final int DEFAULT_WAL_AUTO_CHECKPOINT = 1000;
+
+    private static final String QUERY_THREAD_NAME = "SMSDatabaseQuery-";
+    //WAL lets reads run alongside a write, more Threads would only wait for each other.
+    private static final int QUERY_THREADS = 2;
+    private static final AtomicInteger queryThreadCount = new AtomicInteger();
+    private static final String FORWARD_THREAD_NAME = "SMSDatabaseForward";
+
+    //Applied to the databases opened from the moment they are set.
+    private static volatile RoomDatabase.JournalMode journalMode = RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING;
+    private static volatile SynchronousMode synchronousMode = SynchronousMode.NORMAL;
+    private static volatile int walAutoCheckpoint = DEFAULT_WAL_AUTO_CHECKPOINT;
 
     private static SMSDatabaseManager instance;
     //Having an in-memory instance is unnecessary. It is useful for testing and will not break anything.
     private static SMSDatabaseManager inMemoryInstance;
     private SMSDatabase database;
+    private WriteBehindQueue<SMSMessage> writeQueue;
+    private ExecutorService queryExecutor;
+    //Forwarding tasks run one at a time, so that two of them never read the same page.
+    private ExecutorService forwardExecutor;
+    //Ids of the messages read by a cursor and not deleted yet, only touched on the forwarding Thread.
+    private final Set<Integer> claimedIds = new HashSet<>();
 
     /**
      * Constructor, handles instantiation of the database.
+     *
+     * @param name the name of the database file, null for an in-memory database
      */
-    private SMSDatabaseManager(Context context, boolean inMemory) {
+    private SMSDatabaseManager(Context context, @Nullable String name) {
+        queryExecutor = Executors.newFixedThreadPool(QUERY_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, QUERY_THREAD_NAME + queryThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        forwardExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, FORWARD_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         //prevent use of reflection to change constructor to public at runtime
-        if (inMemory) {
-            if (instance != null)
+        if (name == null) {
+            if (inMemoryInstance != null)
                 throw new RuntimeException(CON_ERROR);
-            database = Room.databaseBuilder(context, SMSDatabase.class, UNREAD_SMS_DB_NAME)
-                    .enableMultiInstanceInvalidation()
-                    .allowMainThreadQueries()
+            database = configure(Room.inMemoryDatabaseBuilder(context, SMSDatabase.class))
                     .build();
         } else {
-            if (inMemoryInstance != null)
+            if (instance != null && UNREAD_SMS_DB_NAME.equals(name))
                 throw new RuntimeException(CON_ERROR);
-            database = Room.inMemoryDatabaseBuilder(context, SMSDatabase.class)
-                    .enableMultiInstanceInvalidation()
-                    .allowMainThreadQueries()
+            database = configure(Room.databaseBuilder(context, SMSDatabase.class, name))
                     .build();
         }
+        writeQueue = new WriteBehindQueue<>(
+                new WriteBehindQueue.Writer<SMSMessage>() {
+                    @Override
+                    public void write(List<SMSMessage> batch) {
+                        //A single insert is a single transaction.
+                        database.access().insert(batch.toArray(new SMSMessage[0]));
+                    }
+                },
+                DEFAULT_WRITE_BATCH_SIZE,
+                DEFAULT_WRITE_DELAY_MILLIS
+        );
+    }
+
+    /**
+     * Method applying the settings shared by the on-disk and the in-memory database.
+     *
+     * @param builder the builder of the database
+     * @return the same builder
+     */
+    private RoomDatabase.Builder<SMSDatabase> configure(RoomDatabase.Builder<SMSDatabase> builder) {
+        final SynchronousMode synchronous = synchronousMode;
+        final int autoCheckpoint = walAutoCheckpoint;
+        return builder
+                .enableMultiInstanceInvalidation()
+                .addMigrations(SMSDatabase.MIGRATION_1_2)
+                .setJournalMode(journalMode)
+                .setQueryExecutor(queryExecutor)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        //Only the connection writing to the database needs these.
+                        db.execSQL("PRAGMA synchronous = " + synchronous.name());
+                        db.query("PRAGMA wal_autocheckpoint = " + autoCheckpoint).close();
+                    }
+                });
+    }
+
+    /**
+     * Method to set the journal mode of the databases opened from now on. Write-ahead logging, the
+     * default, lets reads run while a write is in progress and writes only append to the log.
+     *
+     * @param mode the journal mode
+     */
+    public static void setJournalMode(@NonNull RoomDatabase.JournalMode mode) {
+        journalMode = mode;
+    }
+
+    /**
+     * Method to set how often the databases opened from now on wait for their writes to reach the
+     * disk. The default is {@link SynchronousMode#NORMAL}.
+     *
+     * @param mode the synchronous mode
+     */
+    public static void setSynchronousMode(@NonNull SynchronousMode mode) {
+        synchronousMode = mode;
+    }
+
+    /**
+     * Method to set after how many pages the write-ahead log of the databases opened from now on is
+     * copied back into the database. Larger values make writes cheaper and reads of a long log slower.
+     *
+     * @param pages the number of pages, 0 or less to only checkpoint when the database is closed
+     */
+    public static void setWalAutoCheckpoint(int pages) {
+        walAutoCheckpoint = pages;
     }
 
     /**
@@ -59,9 +180,9 @@ public class SMSDatabaseManager {
      * @param context The calling context.
      * @return the SMSDatabaseManager instance.
      */
-    public static SMSDatabaseManager getInstance(Context context) {
+    public static synchronized SMSDatabaseManager getInstance(Context context) {
         if (instance == null) {
-            instance = new SMSDatabaseManager(context, false);
+            instance = new SMSDatabaseManager(context, UNREAD_SMS_DB_NAME);
         }
         return instance;
     }
@@ -72,14 +193,30 @@ public class SMSDatabaseManager {
      * @param context the calling context.
      * @return the SMSDatabaseManager instance.
      */
-    public static SMSDatabaseManager getInMemoryInstance(Context context) {
+    public static synchronized SMSDatabaseManager getInMemoryInstance(Context context) {
         if (inMemoryInstance == null) {
-            inMemoryInstance = new SMSDatabaseManager(context, true);
+            inMemoryInstance = new SMSDatabaseManager(context, null);
         }
         return inMemoryInstance;
     }
 
     /**
+     * Method to open an on-disk database other than the one of {@link #getInstance(Context)},
+     * configured the same way. Meant for tests, which can check the behaviour of the on-disk
+     * database without touching the messages stored by the app.
+     *
+     * @param context the calling context.
+     * @param name    the name of the database file, must not be the one used by getInstance.
+     * @return a new SMSDatabaseManager, not shared with anyone. Closing it is up to the caller.
+     */
+    static SMSDatabaseManager openFileInstance(Context context, @NonNull String name) {
+        if (UNREAD_SMS_DB_NAME.equals(name))
+            throw new IllegalArgumentException(CON_ERROR);
+        return new SMSDatabaseManager(context, name);
+    }
+
+    /**
+     * Must not be called on the main Thread, see {@link #countAsync(QueryCallback)}.
      * @return the number of stored SMS Messages
      */
     public int count(){
@@ -87,7 +224,115 @@ public class SMSDatabaseManager {
     }
 
     /**
-     * Method to add one or more SMS to the database, runs on the main Thread
+     * Method to count the stored messages on a query Thread.
+     * @param callback notified with the number of stored SMS Messages
+     */
+    public void countAsync(@NonNull QueryCallback<Integer> callback){
+        query(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return count();
+            }
+        }, callback);
+    }
+
+    /**
+     * Must not be called on the main Thread, see {@link #countFromAsync(SMSPeer, QueryCallback)}.
+     * @param peer the Peer the messages come from
+     * @return the number of stored messages from the given Peer, counted on the index on the address
+     */
+    public int countFrom(@NonNull SMSPeer peer){
+        return database.access().countByPeer(peer);
+    }
+
+    /**
+     * Method to count the messages from a Peer on a query Thread.
+     * @param peer     the Peer the messages come from
+     * @param callback notified with the number of stored messages from the given Peer
+     */
+    public void countFromAsync(@NonNull final SMSPeer peer, @NonNull QueryCallback<Integer> callback){
+        query(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return countFrom(peer);
+            }
+        }, callback);
+    }
+
+    /**
+     * Must not be called on the main Thread, see {@link #getSMSFromAsync(SMSPeer, QueryCallback)}.
+     * @param peer the Peer the messages come from
+     * @return the stored messages from the given Peer, oldest first
+     */
+    public List<SMSMessage> getSMSFrom(@NonNull SMSPeer peer){
+        return database.access().getByPeer(peer);
+    }
+
+    /**
+     * Method to read the messages from a Peer on a query Thread.
+     * @param peer     the Peer the messages come from
+     * @param callback notified with the stored messages from the given Peer, oldest first
+     */
+    public void getSMSFromAsync(@NonNull final SMSPeer peer, @NonNull QueryCallback<List<SMSMessage>> callback){
+        query(new Callable<List<SMSMessage>>() {
+            @Override
+            public List<SMSMessage> call() {
+                return getSMSFrom(peer);
+            }
+        }, callback);
+    }
+
+    /**
+     * Must not be called on the main Thread, see
+     * {@link #getSMSReceivedBetweenAsync(long, long, QueryCallback)}.
+     * @param from the start of the range, inclusive, in milliseconds since the epoch
+     * @param to   the end of the range, exclusive, in milliseconds since the epoch
+     * @return the stored messages received in the given range, oldest first
+     */
+    public List<SMSMessage> getSMSReceivedBetween(long from, long to){
+        return database.access().getReceivedBetween(from, to);
+    }
+
+    /**
+     * Method to read the messages received in a time range on a query Thread.
+     * @param from     the start of the range, inclusive, in milliseconds since the epoch
+     * @param to       the end of the range, exclusive, in milliseconds since the epoch
+     * @param callback notified with the stored messages received in the given range, oldest first
+     */
+    public void getSMSReceivedBetweenAsync(final long from, final long to,
+                                           @NonNull QueryCallback<List<SMSMessage>> callback){
+        query(new Callable<List<SMSMessage>>() {
+            @Override
+            public List<SMSMessage> call() {
+                return getSMSReceivedBetween(from, to);
+            }
+        }, callback);
+    }
+
+    /**
+     * Method to run a query on a query Thread and hand its outcome to a callback.
+     * @param query    the query
+     * @param callback the callback
+     */
+    private <T> void query(final Callable<T> query, final QueryCallback<T> callback){
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                try {
+                    result = query.call();
+                } catch (Exception e) {
+                    callback.onQueryFailed(e);
+                    return;
+                }
+                callback.onQueryFinished(result);
+            }
+        });
+    }
+
+    /**
+     * Method to add one or more SMS to the database and wait for them to be written. Must not be
+     * called on the main Thread, see {@link #addSMSAsync(SMSMessage...)}.
      * @param newMessages the message/messages to be added
      */
     public void addSMS(SMSMessage... newMessages){
@@ -96,7 +341,8 @@ public class SMSDatabaseManager {
     }
 
     /**
-     * Method to add one or more SMS to the database, runs on the main Thread. Overload for SmsMessage.
+     * Method to add one or more SMS to the database and wait for them to be written. Must not be
+     * called on the main Thread. Overload for SmsMessage.
      * @param newMessages the message/messages to be added
      */
     public void addSMS(SmsMessage... newMessages){
@@ -109,17 +355,36 @@ public class SMSDatabaseManager {
     }
 
     /**
-     * Method to add SMS to the database. Starts an asynchronous task to do so.
+     * Method to add SMS to the database without waiting for them to be written. Messages added
+     * close together are written in a single transaction, see {@link #setWriteBatch(int, long)}.
      *
      * @param newMessages the message/messages to be added
      */
     public void addSMSAsync(SMSMessage... newMessages) {
-        if (newMessages == null || newMessages.length <= 0) return;
-        new AddSMSTask(database).execute(newMessages);
+        addSMSAsync(null, newMessages);
+    }
+
+    /**
+     * Method to add SMS to the database without waiting for them to be written, notifying the given
+     * callback once they are.
+     *
+     * @param callback    notified on the writing Thread once the messages are written, can be null
+     * @param newMessages the message/messages to be added
+     */
+    public void addSMSAsync(@Nullable WriteCallback callback, SMSMessage... newMessages) {
+        if (newMessages == null || newMessages.length <= 0) {
+            if (callback != null) callback.onWriteFinished(true);
+            return;
+        }
+        if (!writeQueue.enqueue(newMessages, callback)) {
+            Log.w(LOG_TAG, "The database has been closed, " + newMessages.length + " messages not stored.");
+            if (callback != null) callback.onWriteFinished(false);
+        }
     }
 
     /**
-     * Method to add SMS to the database. Starts an asynchronous task to do so. Overload for SmsMessage
+     * Method to add SMS to the database without waiting for them to be written. Overload for
+     * SmsMessage
      *
      * @param newMessages the message/messages to be added
      */
@@ -132,59 +397,199 @@ public class SMSDatabaseManager {
         addSMSAsync(messages);
     }
 
-    private static class AddSMSTask extends AsyncTask<SMSMessage, Integer, Boolean> {
-        private SMSDatabase database;
+    /**
+     * Method to set how asynchronous writes are grouped. A batch is written as soon as it holds the
+     * given number of messages, or once the given time has passed since its first message.
+     *
+     * @param maxBatchSize the number of messages causing a batch to be written, at least 1
+     * @param delayMillis  how long the first message of a batch can wait for others, at least 0
+     * @throws IllegalArgumentException if the size is less than 1 or the delay is negative
+     */
+    public void setWriteBatch(int maxBatchSize, long delayMillis) {
+        writeQueue.setBatch(maxBatchSize, delayMillis);
+    }
 
-        public AddSMSTask(SMSDatabase database) {
-            this.database = database;
-        }
+    /**
+     * Method to write all the messages added asynchronously and not written yet, waiting for them.
+     * Must not be called from a WriteCallback.
+     */
+    public void flushPendingWrites() {
+        writeQueue.flush();
+    }
 
-        @Override
-        protected Boolean doInBackground(SMSMessage... smsMessages) {
-            try {
-                SMSDao dbAccess = database.access();
-                dbAccess.insert(smsMessages);
-                return Boolean.TRUE;
-            } catch (Exception e) {
-                e.printStackTrace();
-                return Boolean.FALSE;
-            }
+    /**
+     * Method to write the pending messages and close the database. The next call to
+     * {@link #getInstance(Context)} or {@link #getInMemoryInstance(Context)} opens it again.
+     */
+    public void close() {
+        synchronized (SMSDatabaseManager.class) {
+            if (instance == this) instance = null;
+            if (inMemoryInstance == this) inMemoryInstance = null;
         }
+        writeQueue.close();
+        forwardExecutor.shutdown();
+        queryExecutor.shutdown();
+        database.close();
     }
 
     /**
      * Method to send all unread SMS to the given listener, SMS are deleted once listener returns.
-     * Starts an asynchronous task to perform the operations.
+     * Runs on the forwarding Thread.
      *
      * @param listener the valid listener
      */
     public void forwardAllSMS(@NonNull ReceivedMessageListener<SMSMessage> listener) {
-        new ForwardSMSTask(database, listener).execute();
+        forwardAllSMS(listener, DEFAULT_FORWARD_PAGE_SIZE, null);
+    }
+
+    /**
+     * Method to send all unread SMS to the given listener, a page at a time. Pages are read in
+     * ascending id order and each one is deleted in a single transaction once the listener has
+     * returned for all of its messages, so only one page is ever held in memory. Messages stored
+     * while forwarding are left for the next call. Runs on the forwarding Thread once the forwards
+     * started before have ended, so two forwards never hand over the same message.
+     *
+     * @param listener         the valid listener
+     * @param pageSize         the number of messages read and deleted together, at least 1
+     * @param progressListener notified after every page and at the end, can be null
+     * @throws IllegalArgumentException if the page size is less than 1
+     */
+    public void forwardAllSMS(@NonNull ReceivedMessageListener<SMSMessage> listener, int pageSize,
+                              @Nullable ForwardProgressListener progressListener) {
+        if (pageSize < 1) throw new IllegalArgumentException(PAGE_SIZE_ERROR);
+        forwardExecutor.execute(new ForwardSMSTask(database, claimedIds, null, listener, pageSize, progressListener));
+    }
+
+    /**
+     * Method to send the unread SMS from a Peer to the given listener, SMS are deleted once listener
+     * returns. Messages from other Peers are left in the database. Runs on the forwarding Thread.
+     *
+     * @param peer     the Peer the messages come from
+     * @param listener the valid listener
+     */
+    public void forwardSMSFrom(@NonNull SMSPeer peer, @NonNull ReceivedMessageListener<SMSMessage> listener) {
+        forwardSMSFrom(peer, listener, DEFAULT_FORWARD_PAGE_SIZE, null);
     }
 
-    private static class ForwardSMSTask extends AsyncTask<String, Integer, Boolean> {
+    /**
+     * Method to send the unread SMS from a Peer to the given listener, a page at a time, like
+     * {@link #forwardAllSMS(ReceivedMessageListener, int, ForwardProgressListener)}. Pages are read
+     * on the index on the address, so the cost depends only on the messages from the Peer.
+     *
+     * @param peer             the Peer the messages come from
+     * @param listener         the valid listener
+     * @param pageSize         the number of messages read and deleted together, at least 1
+     * @param progressListener notified after every page and at the end, can be null
+     * @throws IllegalArgumentException if the page size is less than 1
+     */
+    public void forwardSMSFrom(@NonNull SMSPeer peer, @NonNull ReceivedMessageListener<SMSMessage> listener,
+                               int pageSize, @Nullable ForwardProgressListener progressListener) {
+        if (pageSize < 1) throw new IllegalArgumentException(PAGE_SIZE_ERROR);
+        forwardExecutor.execute(new ForwardSMSTask(database, claimedIds, peer, listener, pageSize, progressListener));
+    }
+
+    /**
+     * Method to open a cursor reading the unread SMS only when asked to, and deleting only the ones
+     * reported as handed over. Messages read by the cursor are skipped by forwards until it deletes
+     * or releases them.
+     *
+     * @param peer     the Peer the messages come from, null for all of them
+     * @param pageSize the maximum number of messages read together, at least 1
+     * @return the cursor, which must be closed once no longer needed
+     * @throws IllegalArgumentException if the page size is less than 1
+     */
+    @NonNull
+    public StoredSMSCursor openCursor(@Nullable SMSPeer peer, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException(PAGE_SIZE_ERROR);
+        return new StoredSMSCursor(database, forwardExecutor, claimedIds, peer, pageSize);
+    }
+
+    /**
+     * Method to delete rows by id, splitting the ids so that no statement has too many arguments.
+     *
+     * @param dbAccess the Dao of the database
+     * @param ids      the ids of the rows
+     * @return the number of deleted rows
+     */
+    static int deleteIds(SMSDao dbAccess, List<Integer> ids) {
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += MAX_DELETED_IDS) {
+            deleted += dbAccess.deleteIds(ids.subList(from, Math.min(ids.size(), from + MAX_DELETED_IDS)));
+        }
+        return deleted;
+    }
+
+    private static class ForwardSMSTask implements Runnable {
         private SMSDatabase database;
+        private Set<Integer> claimedIds;
+        //Null to forward the messages from all the Peers.
+        private SMSPeer peer;
         private ReceivedMessageListener<SMSMessage> listener;
+        private int pageSize;
+        private ForwardProgressListener progressListener;
 
-        public ForwardSMSTask(SMSDatabase database, ReceivedMessageListener<SMSMessage> listener) {
+        public ForwardSMSTask(SMSDatabase database, Set<Integer> claimedIds, SMSPeer peer,
+                              ReceivedMessageListener<SMSMessage> listener, int pageSize,
+                              ForwardProgressListener progressListener) {
             this.database = database;
+            this.claimedIds = claimedIds;
+            this.peer = peer;
             this.listener = listener;
+            this.pageSize = pageSize;
+            this.progressListener = progressListener;
         }
 
         @Override
-        protected Boolean doInBackground(String... args) {
-            SMSDao dbAccess = database.access();
+        public void run() {
+            final SMSDao dbAccess = database.access();
+            int forwarded = 0;
+            boolean successful = false;
             try {
-                List<SMSMessage> unreadMessages = dbAccess.getAll();
-                for (SMSMessage message : unreadMessages) {
-                    if (message.isValid()) listener.onMessageReceived(message);
-                    dbAccess.delete(message);
+                //Rows stored from now on, even by the listener itself, are not part of this drain.
+                int lastId = dbAccess.getMaxId();
+                int total = peer == null ? dbAccess.countUpTo(lastId) : dbAccess.countByPeerUpTo(peer, lastId);
+                int afterId = 0;
+                List<SMSMessage> page = getPage(dbAccess, afterId, lastId);
+                while (!page.isEmpty()) {
+                    //Messages read by an open cursor are left to it.
+                    final List<Integer> unclaimedIds = new ArrayList<>(page.size());
+                    for (SMSMessage message : page) {
+                        if (claimedIds.contains(message.getId())) continue;
+                        unclaimedIds.add(message.getId());
+                        //Invalid messages are deleted without being forwarded.
+                        if (!message.isValid()) continue;
+                        listener.onMessageReceived(message);
+                        forwarded++;
+                    }
+                    final int pageAfterId = afterId;
+                    final int pageLastId = page.get(page.size() - 1).getId();
+                    final boolean wholePage = unclaimedIds.size() == page.size();
+                    //A page is deleted all at once, even when its ids take more than one statement.
+                    database.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!wholePage) deleteIds(dbAccess, unclaimedIds);
+                            else if (peer == null) dbAccess.deleteRange(pageAfterId, pageLastId);
+                            else dbAccess.deleteRangeByPeer(peer, pageAfterId, pageLastId);
+                        }
+                    });
+                    afterId = pageLastId;
+                    if (progressListener != null) progressListener.onPageForwarded(forwarded, total);
+                    page = getPage(dbAccess, afterId, lastId);
                 }
-                return Boolean.TRUE;
+                successful = true;
             } catch (Exception e) {
                 e.printStackTrace();
-                return Boolean.FALSE;
             }
+            if (progressListener != null) progressListener.onForwardFinished(forwarded, successful);
+        }
+
+        /**
+         * @return the next page of messages to forward, only the ones from the Peer if there is one.
+         */
+        private List<SMSMessage> getPage(SMSDao dbAccess, int afterId, int lastId) {
+            if (peer == null) return dbAccess.getPage(afterId, lastId, pageSize);
+            return dbAccess.getPageByPeer(peer, afterId, lastId, pageSize);
         }
     }
 }
@@ -0,0 +1,173 @@
+package ingsw.group1.msglibrary.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import ingsw.group1.msglibrary.SMSMessage;
+import ingsw.group1.msglibrary.SMSPeer;
+
+/**
+ * Class reading the unread SMS a page at a time, only when asked to. A message is deleted only once
+ * it is reported as handed over, messages read and never handed over are left in the database when
+ * the cursor is closed. Reads, deletions and closing run on the forwarding Thread of the
+ * {@link SMSDatabaseManager}, in the order they are asked for.
+ * Only the messages stored when the first page is read are part of the cursor.
+ *
+ * @author Riccardo De Zen
+ */
+public class StoredSMSCursor {
+
+    private final SMSDatabase database;
+    private final Executor executor;
+    //Shared with the SMSDatabaseManager, only touched on the forwarding Thread.
+    private final Set<Integer> claimedIds;
+    //Null to read the messages from all the Peers.
+    private final SMSPeer peer;
+    private final int pageSize;
+    //Only touched on the forwarding Thread.
+    private final List<Integer> readIds = new ArrayList<>();
+    private int afterId = 0;
+    private int lastId = -1;
+    private boolean closed = false;
+    //Guarded by itself, filled on the Threads the messages are handed over on.
+    private final List<Integer> deliveredIds = new ArrayList<>();
+    private final Runnable deleteTask = new Runnable() {
+        @Override
+        public void run() {
+            deleteDelivered();
+        }
+    };
+
+    StoredSMSCursor(SMSDatabase database, Executor executor, Set<Integer> claimedIds, SMSPeer peer, int pageSize) {
+        this.database = database;
+        this.executor = executor;
+        this.claimedIds = claimedIds;
+        this.peer = peer;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Method to read the next messages. Messages read are held by the cursor until they are handed
+     * over or the cursor is closed.
+     *
+     * @param max      the maximum number of messages, capped at the page size of the cursor
+     * @param callback notified on the forwarding Thread with the messages, oldest first. An empty
+     *                 list means no message is left
+     */
+    public void read(final int max, @NonNull final QueryCallback<List<SMSMessage>> callback) {
+        Runnable readTask = new Runnable() {
+            @Override
+            public void run() {
+                List<SMSMessage> messages;
+                try {
+                    messages = readPage(Math.min(max, pageSize));
+                } catch (Exception e) {
+                    callback.onQueryFailed(e);
+                    return;
+                }
+                callback.onQueryFinished(messages);
+            }
+        };
+        try {
+            executor.execute(readTask);
+        } catch (RejectedExecutionException e) {
+            //The database has been closed.
+            callback.onQueryFinished(Collections.<SMSMessage>emptyList());
+        }
+    }
+
+    /**
+     * Method to report a message read by this cursor as handed over. Messages are deleted once all
+     * the messages of their page have been handed over, or when the cursor is closed.
+     *
+     * @param message the message
+     */
+    public void delivered(@NonNull SMSMessage message) {
+        synchronized (deliveredIds) {
+            deliveredIds.add(message.getId());
+        }
+        submit(deleteTask);
+    }
+
+    /**
+     * Method to delete the messages handed over and release the ones that were not, which are found
+     * again by forwards and other cursors.
+     */
+    public void close() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                closed = true;
+                deleteDelivered();
+                claimedIds.removeAll(readIds);
+                readIds.clear();
+            }
+        });
+    }
+
+    /**
+     * Method to run a task on the forwarding Thread, tasks submitted after the database has been
+     * closed are dropped.
+     */
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            //Nothing can be deleted anymore, the messages are found again when the database reopens.
+        }
+    }
+
+    /**
+     * Method to read the next page, skipping the messages held by other cursors. Must be called on
+     * the forwarding Thread.
+     */
+    private List<SMSMessage> readPage(int max) {
+        if (closed) return Collections.emptyList();
+        SMSDao dbAccess = database.access();
+        if (lastId < 0) lastId = dbAccess.getMaxId();
+        List<SMSMessage> messages = new ArrayList<>(max);
+        List<Integer> invalidIds = new ArrayList<>(0);
+        while (messages.isEmpty()) {
+            List<SMSMessage> page = peer == null
+                    ? dbAccess.getPage(afterId, lastId, max)
+                    : dbAccess.getPageByPeer(peer, afterId, lastId, max);
+            if (page.isEmpty()) break;
+            afterId = page.get(page.size() - 1).getId();
+            for (SMSMessage message : page) {
+                if (claimedIds.contains(message.getId())) continue;
+                if (!message.isValid()) {
+                    invalidIds.add(message.getId());
+                    continue;
+                }
+                claimedIds.add(message.getId());
+                readIds.add(message.getId());
+                messages.add(message);
+            }
+        }
+        SMSDatabaseManager.deleteIds(dbAccess, invalidIds);
+        return messages;
+    }
+
+    /**
+     * Method to delete the messages handed over since the last time, if no message read is still
+     * waiting to be handed over or the cursor is closed. Must be called on the forwarding Thread.
+     */
+    private void deleteDelivered() {
+        List<Integer> delivered;
+        synchronized (deliveredIds) {
+            if (deliveredIds.isEmpty()) return;
+            if (!closed && deliveredIds.size() < readIds.size()) return;
+            delivered = new ArrayList<>(deliveredIds);
+            deliveredIds.clear();
+        }
+        SMSDatabaseManager.deleteIds(database.access(), delivered);
+        claimedIds.removeAll(delivered);
+        readIds.removeAll(delivered);
+    }
+}
@@ -0,0 +1,16 @@
+package ingsw.group1.msglibrary.database;
+
+/**
+ * Enum with the values of SQLite's synchronous setting, deciding how often the database waits for
+ * its writes to reach the disk. With write-ahead logging NORMAL never corrupts the database, at most
+ * the last transactions before a power loss are lost.
+ * @author Riccardo De Zen
+ */
+public enum SynchronousMode {
+    //Never waits for the disk, a power loss or a crash of the OS can corrupt the database.
+    OFF,
+    //Waits for the disk at checkpoints only when write-ahead logging is on.
+    NORMAL,
+    //Waits for the disk at every transaction.
+    FULL
+}
@@ -0,0 +1,228 @@
+package ingsw.group1.msglibrary.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue coalescing the writes it is given into batches, written on a dedicated background Thread.
+ * A batch is written as soon as it holds the maximum number of elements, or once the delay has
+ * passed since its first element, whichever comes first. Each batch is handed to the
+ * {@link Writer} at once, so it can be written in a single transaction.
+ * @author Riccardo De Zen
+ * @param <E> The type of the written elements.
+ */
+class WriteBehindQueue<E> {
+
+    private static final String LOG_TAG = "WriteBehindQueue";
+    private static final String THREAD_NAME = "SMSWriteBehind";
+    private static final String BATCH_ERROR = "The batch size must be at least 1 and the delay not negative.";
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Interface for the object writing the batches.
+     */
+    interface Writer<E> {
+        /**
+         * Called on the background Thread for every batch.
+         * @param batch the elements to write, in the order they have been queued.
+         * @throws RuntimeException if the batch could not be written.
+         */
+        void write(List<E> batch);
+    }
+
+    private final Writer<E> writer;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+    private int maxBatchSize;
+    private long delayMillis;
+    private List<E> pending = new ArrayList<>();
+    private List<WriteCallback> callbacks = new ArrayList<>();
+    private boolean writeSubmitted = false;
+    //The write waiting for the delay of the current batch to pass, null if none is scheduled.
+    private ScheduledFuture<?> delayedWrite;
+    private boolean closed = false;
+
+    /**
+     * @param writer the object writing the batches.
+     * @param maxBatchSize the number of elements causing a batch to be written immediately.
+     * @param delayMillis how long the first element of a batch can wait for others.
+     * @throws IllegalArgumentException if the size is less than 1 or the delay is negative.
+     */
+    WriteBehindQueue(@NonNull Writer<E> writer, int maxBatchSize, long delayMillis){
+        checkBatch(maxBatchSize, delayMillis);
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.delayMillis = delayMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //Closing writes everything right away, so delayed writes are dropped instead of waited for.
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * @param maxBatchSize the number of elements causing a batch to be written immediately.
+     * @param delayMillis how long the first element of a batch can wait for others.
+     * @throws IllegalArgumentException if the size is less than 1 or the delay is negative.
+     */
+    static void checkBatch(int maxBatchSize, long delayMillis){
+        if(maxBatchSize < 1 || delayMillis < 0) throw new IllegalArgumentException(BATCH_ERROR);
+    }
+
+    /**
+     * Method to change how elements are grouped, from the next element queued.
+     * @param maxBatchSize the number of elements causing a batch to be written immediately.
+     * @param delayMillis how long the first element of a batch can wait for others.
+     * @throws IllegalArgumentException if the size is less than 1 or the delay is negative.
+     */
+    synchronized void setBatch(int maxBatchSize, long delayMillis){
+        checkBatch(maxBatchSize, delayMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Method to queue elements to be written, never blocks.
+     * @param elements the elements.
+     * @param callback notified once the elements have been written, can be null.
+     * @return true if the elements have been queued, false if the queue has been closed, in which
+     * case the callback is not notified.
+     */
+    boolean enqueue(@NonNull E[] elements, @Nullable WriteCallback callback){
+        synchronized(this){
+            if(closed) return false;
+            Collections.addAll(pending, elements);
+            if(callback != null) callbacks.add(callback);
+            if(pending.size() >= maxBatchSize){
+                if(writeSubmitted) return true;
+                writeSubmitted = true;
+                executor.execute(writeTask);
+            }
+            else if(delayedWrite == null){
+                delayedWrite = executor.schedule(writeTask, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of elements waiting to be written.
+     */
+    synchronized int size(){
+        return pending.size();
+    }
+
+    /**
+     * Method to write all the waiting elements and wait for them to be written. Must not be called
+     * from a {@link WriteCallback}.
+     */
+    void flush(){
+        Future<?> write;
+        synchronized(this){
+            if(executor.isShutdown()) return;
+            write = executor.submit(writeTask);
+        }
+        await(write);
+    }
+
+    /**
+     * Method to write all the waiting elements and stop the background Thread. Elements queued from
+     * now on are refused.
+     */
+    void close(){
+        synchronized(this){
+            if(closed) return;
+            closed = true;
+            cancelDelayedWrite();
+        }
+        flush();
+        executor.shutdown();
+        try{
+            executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method to drop the delayed write, if any, since the elements it was waiting for are written
+     * by another task. Must be called holding the lock.
+     */
+    private void cancelDelayedWrite(){
+        if(delayedWrite == null) return;
+        //Does nothing if it is the running task.
+        delayedWrite.cancel(false);
+        delayedWrite = null;
+    }
+
+    /**
+     * Method waiting for a write, keeping the interrupted status of the calling Thread.
+     */
+    private static void await(Future<?> write){
+        boolean interrupted = false;
+        while(true){
+            try{
+                write.get();
+                break;
+            }
+            catch(InterruptedException e){
+                interrupted = true;
+            }
+            catch(ExecutionException e){
+                Log.e(LOG_TAG, "Flush failed.", e.getCause());
+                break;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Task writing all the waiting elements as a single batch and notifying their callbacks.
+     */
+    private void writePending(){
+        List<E> batch;
+        List<WriteCallback> batchCallbacks;
+        synchronized(this){
+            batch = pending;
+            batchCallbacks = callbacks;
+            pending = new ArrayList<>();
+            callbacks = new ArrayList<>();
+            writeSubmitted = false;
+            cancelDelayedWrite();
+        }
+        if(batch.isEmpty() && batchCallbacks.isEmpty()) return;
+        boolean successful = false;
+        try{
+            if(!batch.isEmpty()) writer.write(batch);
+            successful = true;
+        }
+        catch(RuntimeException e){
+            Log.e(LOG_TAG, "Unable to write "+batch.size()+" elements.", e);
+        }
+        for(WriteCallback callback : batchCallbacks) callback.onWriteFinished(successful);
+    }
+}
@@ -0,0 +1,16 @@
+package ingsw.group1.msglibrary.database;
+
+/**
+ * Interface for an object waiting for messages handed to
+ * {@link SMSDatabaseManager#addSMSAsync(WriteCallback, ingsw.group1.msglibrary.SMSMessage...)} to be
+ * written. Called on the Thread writing to the database.
+ * @author Riccardo De Zen
+ */
+public interface WriteCallback {
+
+    /**
+     * Called once, when the batch containing the messages has been written or has failed.
+     * @param successful true if the messages have been stored, false otherwise.
+     */
+    void onWriteFinished(boolean successful);
+}
@@ -0,0 +1,127 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Build;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+@Config(sdk = Build.VERSION_CODES.P)
+@RunWith(RobolectricTestRunner.class)
+public class EventBatcherTest {
+
+    private static final long LONG_WINDOW = 60000;
+    private static final int MAX_SIZE = 3;
+
+    private List<List<Integer>> batches;
+    private EventBatcher<Integer> batcher;
+
+    @Before
+    public void createBatcher(){
+        batches = new ArrayList<>();
+        batcher = new EventBatcher<>(
+                new EventBatcher.Sink<Integer>() {
+                    @Override
+                    public void onBatch(List<Integer> batch) {
+                        batches.add(batch);
+                    }
+                },
+                LONG_WINDOW,
+                MAX_SIZE
+        );
+    }
+
+    @Test
+    public void eventsWaitForWindow(){
+        batcher.add(1);
+        batcher.add(2);
+        assertTrue(batches.isEmpty());
+        assertEquals(2, batcher.size());
+    }
+
+    @Test
+    public void fullBatchIsHandedOver(){
+        for(int i = 0; i < MAX_SIZE + 1; i++) batcher.add(i);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(0, 1, 2), batches.get(0));
+        assertEquals(1, batcher.size());
+    }
+
+    @Test
+    public void flushHandsOverPending(){
+        batcher.add(1);
+        batcher.flush();
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, batches.size());
+        assertEquals(0, batcher.size());
+    }
+
+    @Test
+    public void emptyFlushDoesNothing(){
+        batcher.flush();
+        ShadowLooper.idleMainLooper();
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void smallerWindowApplies(){
+        batcher.setWindow(LONG_WINDOW, 1);
+        batcher.add(1);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void batchesGoThroughExecutor(){
+        final List<Runnable> tasks = new ArrayList<>();
+        batcher = new EventBatcher<>(
+                new EventBatcher.Sink<Integer>() {
+                    @Override
+                    public void onBatch(List<Integer> batch) {
+                        batches.add(batch);
+                    }
+                },
+                LONG_WINDOW,
+                1,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        tasks.add(command);
+                    }
+                }
+        );
+        batcher.add(1);
+        batcher.add(2);
+        batcher.flush();
+        assertTrue(batches.isEmpty());
+        assertEquals(2, tasks.size());
+        for(Runnable task : tasks) task.run();
+        assertEquals(Arrays.asList(1), batches.get(0));
+        assertEquals(Arrays.asList(2), batches.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeFails(){
+        batcher.setWindow(LONG_WINDOW, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWindowFails(){
+        batcher.setWindow(-1, MAX_SIZE);
+    }
+}
@@ -0,0 +1,125 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class ListenerRegistryTest {
+
+    private final Object owner = new Object();
+    private final Object otherOwner = new Object();
+    private ListenerRegistry<Runnable> registry;
+    private List<Runnable> notified;
+    private ListenerRegistry.Action<Runnable> collect;
+
+    private static Runnable newListener(){
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    @Before
+    public void createRegistry(){
+        registry = new ListenerRegistry<>();
+        notified = new ArrayList<>();
+        collect = new ListenerRegistry.Action<Runnable>() {
+            @Override
+            public void run(Runnable listener) {
+                notified.add(listener);
+            }
+        };
+    }
+
+    @Test
+    public void newRegistryIsEmpty(){
+        assertTrue(registry.isEmpty());
+        assertFalse(registry.hasLiveListeners());
+    }
+
+    @Test
+    public void allListenersAreNotified(){
+        Runnable first = newListener();
+        Runnable second = newListener();
+        registry.add(owner, first, false);
+        registry.add(owner, second, false);
+        assertEquals(2, registry.forEach(owner, collect));
+        assertEquals(first, notified.get(0));
+        assertEquals(second, notified.get(1));
+    }
+
+    @Test
+    public void onlyOwnListenersAreNotified(){
+        registry.add(owner, newListener(), false);
+        registry.add(otherOwner, newListener(), false);
+        assertEquals(1, registry.forEach(owner, collect));
+    }
+
+    @Test
+    public void listenerIsNotifiedOnItsExecutor(){
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor queueing = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        Runnable listener = newListener();
+        registry.add(owner, listener, false, queueing);
+        assertEquals(1, registry.forEach(owner, collect));
+        assertTrue(notified.isEmpty());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(listener, notified.get(0));
+    }
+
+    @Test
+    public void listenerIsAddedOnce(){
+        Runnable listener = newListener();
+        assertTrue(registry.add(owner, listener, false));
+        assertFalse(registry.add(owner, listener, true));
+    }
+
+    @Test
+    public void removedListenerIsNotNotified(){
+        Runnable listener = newListener();
+        registry.add(owner, listener, false);
+        assertTrue(registry.remove(owner, listener));
+        assertFalse(registry.remove(owner, listener));
+        assertEquals(0, registry.forEach(owner, collect));
+        assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    public void removeAllKeepsOtherOwners(){
+        registry.add(owner, newListener(), false);
+        registry.add(owner, newListener(), true);
+        registry.add(otherOwner, newListener(), false);
+        registry.removeAll(owner);
+        assertFalse(registry.hasListeners(owner));
+        assertTrue(registry.hasListeners(otherOwner));
+    }
+
+    @Test
+    public void collectedListenerIsDropped() throws InterruptedException{
+        registry.add(owner, newListener(), true);
+        for(int i = 0; i < 50 && registry.hasLiveListeners(); i++){
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(registry.hasLiveListeners());
+        assertEquals(0, registry.forEach(owner, collect));
+        assertTrue(registry.isEmpty());
+    }
+}
@@ -0,0 +1,272 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class MessageStreamTest {
+
+    private static final int CAPACITY = 2;
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private List<Integer> received;
+    private MessageSubscription subscription;
+    private Throwable error;
+    private boolean completed;
+    private int stopCount;
+    private MessageSubscriber<Integer> subscriber;
+
+    @Before
+    public void init(){
+        received = new ArrayList<>();
+        subscription = null;
+        error = null;
+        completed = false;
+        stopCount = 0;
+        subscriber = new MessageSubscriber<Integer>() {
+            @Override
+            public void onSubscribe(MessageSubscription newSubscription) {
+                subscription = newSubscription;
+            }
+
+            @Override
+            public void onNext(Integer event) {
+                received.add(event);
+            }
+
+            @Override
+            public void onError(Throwable newError) {
+                error = newError;
+            }
+
+            @Override
+            public void onComplete() {
+                completed = true;
+            }
+        };
+    }
+
+    /**
+     * Backlog handing over consecutive numbers right away, recording what happens to them.
+     */
+    private static class CountingBacklog implements MessageStream.Backlog<Integer> {
+        private final int size;
+        private int next = 0;
+        private int readCount = 0;
+        private List<Integer> delivered = new ArrayList<>();
+        private boolean closed = false;
+
+        private CountingBacklog(int size){
+            this.size = size;
+        }
+
+        @Override
+        public void read(int max, MessageStream<Integer> stream) {
+            readCount++;
+            List<Integer> events = new ArrayList<>();
+            while(events.size() < max && next < size) events.add(next++);
+            stream.onBacklogRead(events);
+        }
+
+        @Override
+        public void delivered(Integer event) {
+            delivered.add(event);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private MessageStream<Integer> newStream(StreamOverflowPolicy policy, MessageStream.Backlog<Integer> backlog){
+        MessageStream<Integer> stream = new MessageStream<>(subscriber, policy, CAPACITY, SAME_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                stopCount++;
+            }
+        }, backlog);
+        stream.start();
+        return stream;
+    }
+
+    private MessageStream<Integer> newStream(StreamOverflowPolicy policy){
+        MessageStream<Integer> stream = new MessageStream<>(subscriber, policy, CAPACITY, SAME_THREAD, new Runnable() {
+            @Override
+            public void run() {
+                stopCount++;
+            }
+        });
+        stream.start();
+        return stream;
+    }
+
+    @Test
+    public void nothingWithoutDemand(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER);
+        assertEquals(stream, subscription);
+        stream.offer(1);
+        assertTrue(received.isEmpty());
+        assertEquals(1, stream.size());
+    }
+
+    @Test
+    public void onlyRequestedEvents(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER);
+        for(int i = 0; i < 5; i++) stream.offer(i);
+        subscription.request(3);
+        assertEquals(3, received.size());
+        assertEquals(2, stream.size());
+        stream.offer(5);
+        subscription.request(Long.MAX_VALUE);
+        subscription.request(Long.MAX_VALUE);
+        assertEquals(6, received.size());
+        stream.offer(6);
+        assertEquals(7, received.size());
+    }
+
+    @Test
+    public void dropOldest(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.DROP_OLDEST);
+        for(int i = 0; i < 4; i++) assertTrue(stream.offer(i));
+        assertEquals(2, subscription.getDroppedCount());
+        subscription.request(10);
+        assertEquals(2, (int) received.get(0));
+        assertEquals(3, (int) received.get(1));
+    }
+
+    @Test
+    public void dropNewest(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.DROP_NEWEST);
+        stream.offer(0);
+        stream.offer(1);
+        assertFalse(stream.offer(2));
+        subscription.request(10);
+        assertEquals(1, (int) received.get(1));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void cancelStops(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER);
+        stream.offer(0);
+        subscription.cancel();
+        subscription.cancel();
+        subscription.request(1);
+        assertFalse(stream.offer(1));
+        assertTrue(received.isEmpty());
+        assertEquals(1, stopCount);
+    }
+
+    @Test
+    public void invalidRequestFails(){
+        newStream(StreamOverflowPolicy.BUFFER);
+        subscription.request(0);
+        assertTrue(error instanceof IllegalArgumentException);
+        assertEquals(1, stopCount);
+    }
+
+    @Test
+    public void completesAfterBufferedEvents(){
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER);
+        stream.offer(0);
+        stream.complete();
+        assertFalse(completed);
+        subscription.request(1);
+        assertEquals(1, received.size());
+        assertTrue(completed);
+        assertNull(error);
+        assertEquals(1, stopCount);
+    }
+
+    @Test
+    public void backlogReadOnDemand(){
+        CountingBacklog backlog = new CountingBacklog(5);
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.DROP_NEWEST, backlog);
+        stream.offer(100);
+        assertEquals(0, backlog.readCount);
+        subscription.request(3);
+        assertEquals(3, received.size());
+        assertEquals(3, backlog.delivered.size());
+        assertEquals(3, backlog.next);
+        subscription.request(10);
+        //Backlog events come first, then the offered ones.
+        assertEquals(6, received.size());
+        assertEquals(4, (int) received.get(4));
+        assertEquals(100, (int) received.get(5));
+        assertEquals(5, backlog.delivered.size());
+        assertTrue(backlog.closed);
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void cancelClosesBacklog(){
+        CountingBacklog backlog = new CountingBacklog(5);
+        newStream(StreamOverflowPolicy.BUFFER, backlog);
+        subscription.request(1);
+        subscription.cancel();
+        assertTrue(backlog.closed);
+        assertEquals(1, backlog.delivered.size());
+    }
+
+    @Test
+    public void completeLeavesBacklog(){
+        CountingBacklog backlog = new CountingBacklog(5);
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER, backlog);
+        stream.offer(100);
+        stream.complete();
+        assertTrue(backlog.closed);
+        subscription.request(10);
+        assertEquals(1, received.size());
+        assertEquals(0, backlog.readCount);
+        assertTrue(completed);
+    }
+
+    @Test
+    public void throwingSubscriberEndsStream(){
+        final RuntimeException thrown = new IllegalStateException();
+        subscriber = new MessageSubscriber<Integer>() {
+            @Override
+            public void onSubscribe(MessageSubscription newSubscription) {
+                subscription = newSubscription;
+            }
+
+            @Override
+            public void onNext(Integer event) {
+                throw thrown;
+            }
+
+            @Override
+            public void onError(Throwable newError) {
+                error = newError;
+            }
+
+            @Override
+            public void onComplete() {
+                completed = true;
+            }
+        };
+        MessageStream<Integer> stream = newStream(StreamOverflowPolicy.BUFFER);
+        stream.offer(0);
+        subscription.request(2);
+        assertEquals(thrown, error);
+        assertEquals(1, stopCount);
+        assertFalse(stream.offer(1));
+    }
+}
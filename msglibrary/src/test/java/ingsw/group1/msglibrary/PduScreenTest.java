@@ -0,0 +1,140 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class PduScreenTest {
+
+    private static final int DCS_GSM_7 = 0x00;
+    private static final int DCS_8_BIT = 0x04;
+    private static final int DCS_UCS_2 = 0x08;
+    private static final int DCS_COMPRESSED = 0x20;
+    //Concatenated message header, reference 0x42, 2 parts.
+    static final byte[] FIRST_PART_HEADER = {0x05, 0x00, 0x03, 0x42, 0x02, 0x01};
+    static final byte[] SECOND_PART_HEADER = {0x05, 0x00, 0x03, 0x42, 0x02, 0x02};
+    //Service center timestamp 2019-12-01 12:00:00 UTC, as swapped semi-octets.
+    private static final byte[] TIMESTAMP = {(byte) 0x91, 0x21, 0x10, 0x21, 0x00, 0x00, 0x00};
+
+    private static final String EX_PERTINENT = SMSHandler.APP_KEY + "Hello";
+    private static final String EX_FOREIGN = "Hello " + SMSHandler.APP_KEY;
+
+    /**
+     * Packs septets starting from the least significant bit, after the given number of fill bits.
+     */
+    private static byte[] packGsm7(String text, int fillBits){
+        int bits = fillBits + text.length() * 7;
+        byte[] packed = new byte[(bits + 7) / 8];
+        int offset = fillBits;
+        for(int i = 0; i < text.length(); i++){
+            int septet = text.charAt(i) & 0x7F;
+            packed[offset / 8] |= (byte) (septet << (offset % 8));
+            if(offset % 8 > 1) packed[offset / 8 + 1] |= (byte) (septet >> (8 - offset % 8));
+            offset += 7;
+        }
+        return packed;
+    }
+
+    private static byte[] ucs2(String text){
+        byte[] bytes = new byte[text.length() * 2];
+        for(int i = 0; i < text.length(); i++){
+            bytes[2 * i] = (byte) (text.charAt(i) >> 8);
+            bytes[2 * i + 1] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds an SMS-DELIVER PDU with no service center address and the given user data, coming from
+     * +398924244.
+     */
+    private static byte[] deliverPdu(int dcs, byte[] header, int userDataLength, byte[] userData){
+        ByteArrayOutputStream pdu = new ByteArrayOutputStream();
+        pdu.write(0x00);
+        pdu.write(header != null ? 0x44 : 0x04);
+        //Originating address: 9 digits, international.
+        pdu.write(9);
+        pdu.write(0x91);
+        pdu.write(new byte[]{(byte) 0x93, (byte) 0x98, 0x42, 0x42, (byte) 0xF4}, 0, 5);
+        pdu.write(0x00);
+        pdu.write(dcs);
+        pdu.write(TIMESTAMP, 0, TIMESTAMP.length);
+        pdu.write(userDataLength);
+        if(header != null) pdu.write(header, 0, header.length);
+        pdu.write(userData, 0, userData.length);
+        return pdu.toByteArray();
+    }
+
+    static byte[] gsm7Pdu(String text){
+        return deliverPdu(DCS_GSM_7, null, text.length(), packGsm7(text, 0));
+    }
+
+    static byte[] gsm7Pdu(String text, byte[] header){
+        int headerSeptets = (header.length * 8 + 6) / 7;
+        int fillBits = headerSeptets * 7 - header.length * 8;
+        return deliverPdu(DCS_GSM_7, header, headerSeptets + text.length(), packGsm7(text, fillBits));
+    }
+
+    @Test
+    public void gsm7Pertinent(){
+        assertEquals(PduScreen.PERTINENT, PduScreen.screen(gsm7Pdu(EX_PERTINENT)));
+    }
+
+    @Test
+    public void gsm7Foreign(){
+        assertEquals(PduScreen.FOREIGN, PduScreen.screen(gsm7Pdu(EX_FOREIGN)));
+    }
+
+    @Test
+    public void gsm7ShortBody(){
+        assertEquals(PduScreen.FOREIGN, PduScreen.screen(gsm7Pdu("<#")));
+    }
+
+    @Test
+    public void gsm7WithHeader(){
+        assertEquals(PduScreen.PERTINENT, PduScreen.screen(gsm7Pdu(EX_PERTINENT, FIRST_PART_HEADER)));
+        assertEquals(PduScreen.FOREIGN, PduScreen.screen(gsm7Pdu(EX_FOREIGN, FIRST_PART_HEADER)));
+    }
+
+    @Test
+    public void continuationPart(){
+        assertEquals(PduScreen.CONTINUATION, PduScreen.screen(gsm7Pdu(EX_FOREIGN, SECOND_PART_HEADER)));
+    }
+
+    @Test
+    public void ucs2Pertinent(){
+        byte[] data = ucs2(EX_PERTINENT);
+        assertEquals(PduScreen.PERTINENT, PduScreen.screen(deliverPdu(DCS_UCS_2, null, data.length, data)));
+    }
+
+    @Test
+    public void ucs2Foreign(){
+        byte[] data = ucs2(EX_FOREIGN);
+        assertEquals(PduScreen.FOREIGN, PduScreen.screen(deliverPdu(DCS_UCS_2, null, data.length, data)));
+    }
+
+    @Test
+    public void eightBitPertinent(){
+        byte[] data = EX_PERTINENT.getBytes();
+        assertEquals(PduScreen.PERTINENT, PduScreen.screen(deliverPdu(DCS_8_BIT, null, data.length, data)));
+    }
+
+    @Test
+    public void compressedIsUnknown(){
+        byte[] data = EX_FOREIGN.getBytes();
+        assertEquals(PduScreen.UNKNOWN, PduScreen.screen(deliverPdu(DCS_COMPRESSED, null, data.length, data)));
+    }
+
+    @Test
+    public void truncatedIsUnknown(){
+        byte[] pdu = gsm7Pdu(EX_PERTINENT);
+        byte[] truncated = new byte[pdu.length - 5];
+        System.arraycopy(pdu, 0, truncated, 0, truncated.length);
+        assertEquals(PduScreen.UNKNOWN, PduScreen.screen(truncated));
+    }
+}
@@ -0,0 +1,189 @@
+package ingsw.group1.msglibrary;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.telephony.SmsManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+@Config(sdk = Build.VERSION_CODES.P)
+@RunWith(RobolectricTestRunner.class)
+public class PendingSendTableTest {
+
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final String EX_VALID_MSG = "Wassup Mankind";
+    private static final int OK = Activity.RESULT_OK;
+    private static final int FAILURE = SmsManager.RESULT_ERROR_GENERIC_FAILURE;
+    private static final int PARTS = 3;
+
+    private PendingSendTable table;
+    private OutgoingSMS sms;
+
+    @Before
+    public void init(){
+        table = new PendingSendTable();
+        sms = new OutgoingSMS(new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), EX_VALID_MSG), false);
+    }
+
+    @Test
+    public void idsAreUnique(){
+        Set<Integer> ids = new HashSet<>();
+        int howMany = 10000;
+        for(int i = 0; i < howMany; i++)
+            assertTrue(ids.add(table.register(sms, true, false)));
+        assertEquals(howMany, table.size());
+    }
+
+    @Test
+    public void sentOnlyIsRemovedOnSent(){
+        int id = table.register(sms, true, false);
+        assertSame(sms, table.onSent(id, 0, OK).getMessage());
+        assertEquals(0, table.size());
+        assertNull(table.onSent(id, 0, OK));
+    }
+
+    @Test
+    public void deliveryKeepsEntryAfterSent(){
+        int id = table.register(sms, true, true);
+        assertSame(sms, table.onSent(id, 0, OK).getMessage());
+        assertEquals(1, table.size());
+        assertSame(sms, table.onDelivered(id, 0, OK).getMessage());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void sentTimeIsRecorded(){
+        int id = table.register(sms, true, true);
+        long beforeSent = System.nanoTime();
+        table.onSent(id, 0, OK);
+        long sentAt = table.onDelivered(id, 0, OK).getSentAtNanos();
+        assertTrue(sentAt - beforeSent >= 0);
+        assertTrue(System.nanoTime() - sentAt >= 0);
+    }
+
+    @Test
+    public void missingSentTimeIsZero(){
+        int id = table.register(sms, false, true);
+        assertEquals(0, table.onDelivered(id, 0, OK).getSentAtNanos());
+    }
+
+    @Test
+    public void failedSendIsRemovedOnSent(){
+        int id = table.register(sms, true, true);
+        assertSame(sms, table.onSent(id, 0, FAILURE).getMessage());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void multipartIdsDoNotOverlap(){
+        int first = table.register(sms, PARTS, true, false);
+        int second = table.register(sms, true, false);
+        assertTrue(second - first >= PARTS);
+    }
+
+    @Test
+    public void multipartSentOnceAllPartsReport(){
+        int id = table.register(sms, PARTS, true, true);
+        for(int part = 0; part < PARTS - 1; part++)
+            assertNull(table.onSent(id, part, OK));
+        //The same part reporting twice is not counted again.
+        assertNull(table.onSent(id, 0, OK));
+        PendingSendTable.Entry entry = table.onSent(id, PARTS - 1, OK);
+        assertSame(sms, entry.getMessage());
+        assertEquals(OK, entry.getSentResult());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void multipartFailureOfAnyPartIsReported(){
+        int id = table.register(sms, PARTS, true, true);
+        assertNull(table.onSent(id, 0, FAILURE));
+        for(int part = 1; part < PARTS - 1; part++)
+            assertNull(table.onSent(id, part, OK));
+        PendingSendTable.Entry entry = table.onSent(id, PARTS - 1, OK);
+        assertEquals(FAILURE, entry.getSentResult());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void multipartDeliveredOnceAllPartsReport(){
+        int id = table.register(sms, PARTS, false, true);
+        for(int part = 0; part < PARTS - 1; part++)
+            assertNull(table.onDelivered(id, part, OK));
+        assertEquals(OK, table.onDelivered(id, PARTS - 1, OK).getDeliveredResult());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void nothingAwaitedIsNotStored(){
+        table.register(sms, false, false);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void purgeExpiresPendingEvents() throws Exception {
+        SendHandle<SMSMessage> handle = new SendHandle<>(sms.getTextMessage());
+        OutgoingSMS tracked = new OutgoingSMS(sms.getTextMessage(), false, false, handle);
+        int id = table.register(tracked, true, true);
+        table.onSent(id, 0, OK);
+        handle.onSent(Activity.RESULT_OK);
+        table.purge(System.currentTimeMillis() + PendingSendTable.ENTRY_TIMEOUT_MILLIS + 1);
+        assertEquals(0, table.size());
+        assertEquals(Activity.RESULT_OK, handle.getSent().get().getResultCode());
+        assertEquals(SendResult.RESULT_EXPIRED, handle.getDelivered().get().getResultCode());
+    }
+
+    @Test
+    public void entryExpiresWithoutFurtherSends() throws Exception {
+        long timeoutMillis = 50;
+        table = new PendingSendTable(new Handler(Looper.getMainLooper()), timeoutMillis);
+        SendHandle<SMSMessage> handle = new SendHandle<>(sms.getTextMessage());
+        table.register(new OutgoingSMS(sms.getTextMessage(), false, false, handle), true, true);
+        Thread.sleep(timeoutMillis * 2);
+        ShadowLooper.idleMainLooper(timeoutMillis, TimeUnit.MILLISECONDS);
+        assertEquals(0, table.size());
+        assertEquals(SendResult.RESULT_EXPIRED, handle.getDelivered().get().getResultCode());
+    }
+
+    @Test
+    public void purgeKeepsRecentEntries(){
+        table.register(sms, true, true);
+        table.purge(System.currentTimeMillis());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void clearCancelsPendingEvents() throws Exception {
+        SendHandle<SMSMessage> handle = new SendHandle<>(sms.getTextMessage());
+        table.register(new OutgoingSMS(sms.getTextMessage(), false, false, handle), true, true);
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(SendResult.RESULT_CANCELLED, handle.getSent().get().getResultCode());
+        assertEquals(SendResult.RESULT_CANCELLED, handle.getDelivered().get().getResultCode());
+    }
+
+    @Test
+    public void unknownIdIsIgnored(){
+        assertNull(table.onSent(-1, 0, OK));
+        assertNull(table.onDelivered(-1, 0, OK));
+    }
+}
@@ -0,0 +1,107 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class ReceiveBufferTest {
+
+    private static final int CAPACITY = 3;
+
+    private List<Runnable> tasks;
+    private List<Integer> consumed;
+    private ReceiveBuffer<Integer> buffer;
+
+    @Before
+    public void init(){
+        tasks = new ArrayList<>();
+        consumed = new ArrayList<>();
+        buffer = new ReceiveBuffer<>(
+                CAPACITY,
+                new ReceiveBuffer.Consumer<Integer>() {
+                    @Override
+                    public void consume(Integer element) {
+                        consumed.add(element);
+                    }
+                },
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        tasks.add(command);
+                    }
+                }
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacityThrows(){
+        new ReceiveBuffer<>(0, new ReceiveBuffer.Consumer<Object>() {
+            @Override
+            public void consume(Object element) {
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void fullBufferRefuses(){
+        for(int i = 0; i < CAPACITY; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(CAPACITY));
+        assertEquals(CAPACITY, buffer.size());
+    }
+
+    @Test
+    public void singleDrainScheduled(){
+        buffer.offer(1);
+        buffer.offer(2);
+        assertEquals(1, tasks.size());
+        assertTrue(consumed.isEmpty());
+    }
+
+    @Test
+    public void drainKeepsOrder(){
+        for(int i = 0; i < CAPACITY; i++) buffer.offer(i);
+        tasks.get(0).run();
+        assertEquals(0, buffer.size());
+        assertEquals(3, consumed.size());
+        for(int i = 0; i < CAPACITY; i++) assertEquals(i, (int) consumed.get(i));
+    }
+
+    @Test
+    public void wrapsAround(){
+        buffer.offer(0);
+        buffer.offer(1);
+        tasks.get(0).run();
+        for(int i = 2; i < 2 + CAPACITY; i++) assertTrue(buffer.offer(i));
+        assertEquals(2, tasks.size());
+        tasks.get(1).run();
+        assertEquals(2 + CAPACITY, consumed.size());
+        assertEquals(4, (int) consumed.get(consumed.size() - 1));
+    }
+
+    @Test
+    public void clearReturnsWaiting(){
+        buffer.offer(5);
+        buffer.offer(6);
+        List<Integer> waiting = buffer.clear();
+        assertEquals(2, waiting.size());
+        assertEquals(5, (int) waiting.get(0));
+        assertEquals(0, buffer.size());
+        tasks.get(0).run();
+        assertTrue(consumed.isEmpty());
+    }
+}
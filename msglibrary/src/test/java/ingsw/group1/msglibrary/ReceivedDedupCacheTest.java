@@ -0,0 +1,62 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class ReceivedDedupCacheTest {
+
+    private static final String EX_ADDRESS = "+39892424";
+    private static final String EX_OTHER_ADDRESS = "+39892425";
+    private static final String EX_BODY = SMSHandler.APP_KEY + "Hello";
+    private static final long EX_TIMESTAMP = 1577836800000L;
+    private static final long WINDOW = 1000;
+
+    @Test
+    public void duplicateIsRecognized(){
+        ReceivedDedupCache cache = new ReceivedDedupCache(10, WINDOW);
+        assertTrue(cache.markIfNew(EX_ADDRESS, EX_TIMESTAMP, EX_BODY));
+        assertFalse(cache.markIfNew(EX_ADDRESS, EX_TIMESTAMP, EX_BODY));
+    }
+
+    @Test
+    public void differentMessagesAreNew(){
+        ReceivedDedupCache cache = new ReceivedDedupCache(10, WINDOW);
+        assertTrue(cache.markIfNew(EX_ADDRESS, EX_TIMESTAMP, EX_BODY));
+        assertTrue(cache.markIfNew(EX_OTHER_ADDRESS, EX_TIMESTAMP, EX_BODY));
+        assertTrue(cache.markIfNew(EX_ADDRESS, EX_TIMESTAMP + 1, EX_BODY));
+        assertTrue(cache.markIfNew(EX_ADDRESS, EX_TIMESTAMP, EX_BODY + "!"));
+    }
+
+    @Test
+    public void fingerprintDependsOnAllFields(){
+        long fingerprint = ReceivedDedupCache.fingerprint(EX_ADDRESS, EX_TIMESTAMP, EX_BODY);
+        assertEquals(fingerprint, ReceivedDedupCache.fingerprint(EX_ADDRESS, EX_TIMESTAMP, EX_BODY));
+        assertNotEquals(fingerprint, ReceivedDedupCache.fingerprint(EX_OTHER_ADDRESS, EX_TIMESTAMP, EX_BODY));
+        assertNotEquals(fingerprint, ReceivedDedupCache.fingerprint(EX_ADDRESS, EX_TIMESTAMP + 1, EX_BODY));
+    }
+
+    @Test
+    public void expiredFingerprintIsForgotten(){
+        ReceivedDedupCache cache = new ReceivedDedupCache(10, WINDOW);
+        assertTrue(cache.markIfNew(42L, 0));
+        assertFalse(cache.markIfNew(42L, WINDOW));
+        assertTrue(cache.markIfNew(42L, WINDOW + 1));
+    }
+
+    @Test
+    public void capacityIsBounded(){
+        ReceivedDedupCache cache = new ReceivedDedupCache(3, WINDOW);
+        for(long i = 0; i < 10; i++) cache.markIfNew(i, 0);
+        assertEquals(3, cache.size());
+        //The oldest fingerprints have been evicted.
+        assertTrue(cache.markIfNew(0L, 0));
+        assertFalse(cache.markIfNew(9L, 0));
+    }
+}
@@ -0,0 +1,103 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SMSCompressionTest {
+
+    private static final String EX_PAYLOAD =
+            "{\"id\":12,\"type\":\"position\",\"value\":\"45.4064,11.8768\",\"status\":true}" +
+            "{\"id\":13,\"type\":\"position\",\"value\":\"45.4065,11.8770\",\"status\":true}" +
+            "{\"id\":14,\"type\":\"position\",\"value\":\"45.4066,11.8771\",\"status\":false}";
+    private static final String EX_UCS_2 = "Ciao, 你好, 你好, 你好, 你好, 你好, 你好, 你好!";
+
+    @After
+    public void resetDictionary(){
+        SMSCompression.setDictionary(null);
+    }
+
+    @Test
+    public void encodeDecode(){
+        byte[] bytes = new byte[256];
+        for(int i = 0; i < bytes.length; i++) bytes[i] = (byte) (255 - i);
+        for(int length = 0; length <= bytes.length; length += 7){
+            byte[] input = new byte[length];
+            System.arraycopy(bytes, 0, input, 0, length);
+            assertArrayEquals(input, SMSCompression.decode(SMSCompression.encode(input)));
+        }
+    }
+
+    @Test
+    public void encodedTextIsSingleSeptet(){
+        byte[] bytes = new byte[120];
+        for(int i = 0; i < bytes.length; i++) bytes[i] = (byte) (i * 37);
+        String encoded = SMSCompression.encode(bytes);
+        assertEquals(encoded.length(), SMSEncoding.getGsm7Length(encoded));
+    }
+
+    @Test
+    public void compressedPayloadTakesFewerSegments(){
+        String compressed = SMSCompression.compress(EX_PAYLOAD);
+        assertTrue(SMSEncoding.getSegmentCount(compressed) < SMSEncoding.getSegmentCount(EX_PAYLOAD));
+    }
+
+    @Test
+    public void ucs2PayloadIsSentAsGsm7(){
+        assertTrue(SMSEncoding.isGsm7(SMSCompression.compress(EX_UCS_2)));
+    }
+
+    @Test
+    public void expandRestoresBody(){
+        String body = SMSHandler.APP_KEY + SMSCompression.compress(EX_PAYLOAD) + SMSHandler.WAKE_KEY;
+        assertEquals(
+                SMSHandler.APP_KEY + EX_PAYLOAD + SMSHandler.WAKE_KEY,
+                SMSCompression.expand(body)
+        );
+    }
+
+    @Test
+    public void plainBodyIsUntouched(){
+        String body = SMSHandler.APP_KEY + SMSCompression.COMPRESSED_KEY + "not compressed";
+        assertEquals(body, SMSCompression.expand(body));
+    }
+
+    @Test
+    public void shorterCompressedBodyIsSent(){
+        String body = SmsUtils.prepareBody(EX_PAYLOAD, false, true, true);
+        assertTrue(body.startsWith(SMSCompression.COMPRESSED_KEY));
+    }
+
+    @Test
+    public void bodyTooLongOnceExpandedIsRefused(){
+        StringBuilder payload = new StringBuilder();
+        while(SmsUtils.getSegmentCount(payload.toString(), false) <= SMSMessage.MAX_MESSAGE_PARTS)
+            payload.append(EX_PAYLOAD);
+        String data = payload.toString();
+        assertTrue(SmsUtils.isMessageValid(SMSCompression.compress(data), false, true));
+        assertNull(SmsUtils.prepareBody(data, false, true, true));
+    }
+
+    @Test
+    public void differentDictionaryIsRefused(){
+        String compressed = SMSCompression.compress(EX_PAYLOAD);
+        SMSCompression.setDictionary("another dictionary");
+        assertNull(SMSCompression.decompress(compressed.substring(SMSCompression.COMPRESSED_KEY.length())));
+    }
+
+    @Test
+    public void oversizedExpansionIsRefused(){
+        StringBuilder payload = new StringBuilder();
+        while(payload.length() <= SMSMessage.MAX_MULTIPART_MESSAGE_LENGTH * 4)
+            payload.append("aaaaaaaaaaaaaaaa");
+        String compressed = SMSCompression.compress(payload.toString());
+        assertNull(SMSCompression.decompress(compressed.substring(SMSCompression.COMPRESSED_KEY.length())));
+    }
+}
@@ -14,9 +14,16 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import ingsw.group1.msglibrary.database.ForwardProgressListener;
+import ingsw.group1.msglibrary.database.QueryCallback;
 import ingsw.group1.msglibrary.database.SMSDatabaseManager;
+import ingsw.group1.msglibrary.database.StoredSMSCursor;
 
 /**
  * @author Riccardo De Zen
@@ -25,6 +32,8 @@ import ingsw.group1.msglibrary.database.SMSDatabaseManager;
 @RunWith(RobolectricTestRunner.class)
 public class SMSDatabaseManagerTest {
 
+    private static final long TIMEOUT_SECONDS = 5;
+
     private Context context;
     private MessageListener listener;
     private SMSDatabaseManager database;
@@ -38,6 +47,13 @@ public class SMSDatabaseManagerTest {
         }
     }
 
+    /**
+     * Interface for the body of a test that must run off the main Thread.
+     */
+    private interface BackgroundWork {
+        void run() throws Exception;
+    }
+
     @Before
     public void init(){
         context = ApplicationProvider.getApplicationContext();
@@ -46,12 +62,58 @@ public class SMSDatabaseManagerTest {
         messageProvider = new SMSMessageProviderStub();
     }
 
+    /**
+     * The database refuses to be accessed on the main Thread, which is the Thread tests run on.
+     * Synchronous methods are therefore called on a background Thread, failures are rethrown here.
+     */
+    private static void onBackground(final BackgroundWork work) throws Throwable {
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    work.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /**
+     * Method forwarding all the stored messages and waiting for the forwarding to end.
+     */
+    private void forwardAndWait(int pageSize, final ForwardProgressListener progressListener) throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(1);
+        database.forwardAllSMS(listener, pageSize, new ForwardProgressListener() {
+            @Override
+            public void onPageForwarded(int forwarded, int total) {
+                if(progressListener != null) progressListener.onPageForwarded(forwarded, total);
+            }
+
+            @Override
+            public void onForwardFinished(int forwarded, boolean successful) {
+                if(progressListener != null) progressListener.onForwardFinished(forwarded, successful);
+                finished.countDown();
+            }
+        });
+        Assert.assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
     @Test
-    public void addSingleSMS(){
-        int count = database.count();
-        int expected = count + 1;
-        database.addSMS(messageProvider.getRandomMessage());
-        Assert.assertEquals(expected, database.count());
+    public void addSingleSMS() throws Throwable {
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                int count = database.count();
+                int expected = count + 1;
+                database.addSMS(messageProvider.getRandomMessage());
+                Assert.assertEquals(expected, database.count());
+            }
+        });
     }
 
     @Test
@@ -60,11 +122,16 @@ public class SMSDatabaseManagerTest {
     }
 
     @Test
-    public void addMultipleSMS(){
-        int count = database.count();
-        int expected = count + 2;
-        database.addSMS(messageProvider.getRandomMessage(), messageProvider.getRandomMessage());
-        Assert.assertEquals(expected, database.count());
+    public void addMultipleSMS() throws Throwable {
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                int count = database.count();
+                int expected = count + 2;
+                database.addSMS(messageProvider.getRandomMessage(), messageProvider.getRandomMessage());
+                Assert.assertEquals(expected, database.count());
+            }
+        });
     }
 
     @Test
@@ -72,15 +139,154 @@ public class SMSDatabaseManagerTest {
 
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void countOnMainThreadFails(){
+        database.count();
+    }
+
+    @Test
+    public void countAsync() throws Throwable {
+        addMultipleSMS();
+        final CountDownLatch counted = new CountDownLatch(1);
+        final int[] result = {-1};
+        database.countAsync(new QueryCallback<Integer>() {
+            @Override
+            public void onQueryFinished(Integer count) {
+                result[0] = count;
+                counted.countDown();
+            }
+
+            @Override
+            public void onQueryFailed(Exception error) {
+                counted.countDown();
+            }
+        });
+        Assert.assertTrue(counted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(2, result[0]);
+    }
+
     @Test
-    public void forwardSMS(){
-        int howMany = new Random().nextInt() % 100;
+    public void forwardSMS() throws Throwable {
+        int howMany = Math.abs(new Random().nextInt() % 100);
         for(int i = 0 ; i < howMany; i++) addSingleSMS();
-        int count = database.count();
-        database.forwardAllSMS(listener);
-        Assert.assertEquals(count, listener.receivedMessages);
+        forwardAndWait(SMSDatabaseManager.DEFAULT_FORWARD_PAGE_SIZE, null);
+        Assert.assertEquals(howMany, listener.receivedMessages);
+    }
+
+    @Test
+    public void forwardSMSInPages() throws Throwable {
+        for(int i = 0 ; i < 7; i++) addSingleSMS();
+        final int total = 7;
+        final int[] pages = {0};
+        final int[] expectedTotal = {-1};
+        final boolean[] finished = {false};
+        forwardAndWait(3, new ForwardProgressListener() {
+            @Override
+            public void onPageForwarded(int forwarded, int expected) {
+                pages[0]++;
+                expectedTotal[0] = expected;
+            }
+
+            @Override
+            public void onForwardFinished(int forwarded, boolean successful) {
+                finished[0] = successful && forwarded == total;
+            }
+        });
+        Assert.assertEquals(total, listener.receivedMessages);
+        Assert.assertEquals((total + 2) / 3, pages[0]);
+        Assert.assertEquals(total, expectedTotal[0]);
+        Assert.assertTrue(finished[0]);
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                Assert.assertEquals(0, database.count());
+            }
+        });
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void forwardSMSInvalidPageSize(){
+        database.forwardAllSMS(listener, 0, null);
+    }
+
+    @Test
+    public void forwardSMSFromPeer() throws Throwable {
+        final SMSPeer peer = new SMSPeer("+39892424");
+        final SMSPeer otherPeer = new SMSPeer("+39892425");
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                for(int i = 0; i < 5; i++)
+                    database.addSMS(new SMSMessage(peer, "text"), new SMSMessage(otherPeer, "text"));
+                Assert.assertEquals(5, database.countFrom(peer));
+            }
+        });
+        final CountDownLatch finished = new CountDownLatch(1);
+        final int[] result = {-1};
+        database.forwardSMSFrom(peer, listener, 2, new ForwardProgressListener() {
+            @Override
+            public void onPageForwarded(int forwarded, int total) {
+
+            }
+
+            @Override
+            public void onForwardFinished(int forwarded, boolean successful) {
+                result[0] = forwarded;
+                finished.countDown();
+            }
+        });
+        Assert.assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(5, result[0]);
+        Assert.assertEquals(5, listener.receivedMessages);
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                Assert.assertEquals(0, database.countFrom(peer));
+                Assert.assertEquals(5, database.countFrom(otherPeer));
+            }
+        });
+    }
+
+    /**
+     * Method reading from a cursor and waiting for the messages.
+     */
+    private static List<SMSMessage> readAndWait(StoredSMSCursor cursor, int max) throws InterruptedException {
+        final CountDownLatch read = new CountDownLatch(1);
+        final List<SMSMessage> messages = new ArrayList<>();
+        cursor.read(max, new QueryCallback<List<SMSMessage>>() {
+            @Override
+            public void onQueryFinished(List<SMSMessage> result) {
+                messages.addAll(result);
+                read.countDown();
+            }
+
+            @Override
+            public void onQueryFailed(Exception error) {
+                read.countDown();
+            }
+        });
+        Assert.assertTrue(read.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return messages;
+    }
+
+    @Test
+    public void cursorDeletesOnlyDelivered() throws Throwable {
+        for(int i = 0 ; i < 5; i++) addSingleSMS();
+        StoredSMSCursor cursor = database.openCursor(null, 10);
+        List<SMSMessage> page = readAndWait(cursor, 3);
+        Assert.assertEquals(3, page.size());
+        cursor.delivered(page.get(0));
+        //Messages held by the cursor are skipped by forwards.
+        forwardAndWait(SMSDatabaseManager.DEFAULT_FORWARD_PAGE_SIZE, null);
+        Assert.assertEquals(2, listener.receivedMessages);
+        cursor.close();
+        onBackground(new BackgroundWork() {
+            @Override
+            public void run() {
+                Assert.assertEquals(2, database.count());
+            }
+        });
+    }
 
     /**
      * Since the database is a singleton class, if the instance is not cleared between tests it can
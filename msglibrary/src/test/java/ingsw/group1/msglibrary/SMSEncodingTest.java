@@ -0,0 +1,98 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SMSEncodingTest {
+
+    private static final String EX_GSM_7 = "Hello there, è@£";
+    private static final String EX_UCS_2 = "Hello there, 你好";
+    private static final String EX_EMOJI = "😀";
+
+    private static String repeat(String text, int times){
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < times; i++) sb.append(text);
+        return sb.toString();
+    }
+
+    @Test
+    public void gsm7Widths(){
+        assertEquals(1, SMSEncoding.getGsm7Width('a'));
+        assertEquals(1, SMSEncoding.getGsm7Width('@'));
+        assertEquals(2, SMSEncoding.getGsm7Width('€'));
+        assertEquals(2, SMSEncoding.getGsm7Width('{'));
+        assertEquals(0, SMSEncoding.getGsm7Width('`'));
+        assertEquals(0, SMSEncoding.getGsm7Width('你'));
+    }
+
+    @Test
+    public void gsm7Text(){
+        assertTrue(SMSEncoding.isGsm7(EX_GSM_7));
+        assertEquals(EX_GSM_7.length(), SMSEncoding.getEncodedLength(EX_GSM_7));
+    }
+
+    @Test
+    public void ucs2Text(){
+        assertFalse(SMSEncoding.isGsm7(EX_UCS_2));
+        assertEquals(SMSEncoding.NOT_GSM_7, SMSEncoding.getGsm7Length(EX_UCS_2));
+        assertEquals(EX_UCS_2.length(), SMSEncoding.getEncodedLength(EX_UCS_2));
+        assertEquals(EX_UCS_2.length() * 2, SMSEncoding.getEncodedByteCount(EX_UCS_2));
+    }
+
+    @Test
+    public void extensionTakesTwoSeptets(){
+        assertEquals(4, SMSEncoding.getGsm7Length("[]"));
+        assertEquals(4, SMSEncoding.getEncodedByteCount("[]"));
+    }
+
+    @Test
+    public void emptyTextHasNoSegments(){
+        assertEquals(0, SMSEncoding.getSegmentCount(""));
+        assertEquals(0, SMSEncoding.getSegmentCount(null));
+    }
+
+    @Test
+    public void gsm7SingleSegmentLimit(){
+        String text = repeat("a", SMSEncoding.GSM_7_SINGLE_LENGTH);
+        assertEquals(1, SMSEncoding.getSegmentCount(text));
+        assertEquals(0, SMSEncoding.getRemainingLength(text));
+        assertEquals(2, SMSEncoding.getSegmentCount(text + "a"));
+    }
+
+    @Test
+    public void singleUcs2CharacterShrinksSegment(){
+        String text = repeat("a", SMSEncoding.UCS_2_SINGLE_LENGTH);
+        assertEquals(1, SMSEncoding.getSegmentCount(text));
+        assertEquals(2, SMSEncoding.getSegmentCount(text + "你"));
+    }
+
+    @Test
+    public void escapeIsNotSplit(){
+        //152 septets followed by an escaped character do not fit in the first part.
+        String text = repeat("a", SMSEncoding.GSM_7_PART_LENGTH - 1) + "€" + repeat("a", 10);
+        assertEquals(2, SMSEncoding.getSegmentCount(text));
+        assertEquals(SMSEncoding.GSM_7_PART_LENGTH - 12, SMSEncoding.getRemainingLength(text));
+    }
+
+    @Test
+    public void surrogatePairIsNotSplit(){
+        String text = repeat("你", SMSEncoding.UCS_2_PART_LENGTH - 1) + EX_EMOJI + repeat("你", 10);
+        assertEquals(2, SMSEncoding.getSegmentCount(text));
+        assertEquals(SMSEncoding.UCS_2_PART_LENGTH - 12, SMSEncoding.getRemainingLength(text));
+    }
+
+    @Test
+    public void concatenationMatchesWholeText(){
+        String body = repeat("b", 200);
+        assertEquals(
+                SMSEncoding.getSegmentCount(SMSHandler.APP_KEY + body + SMSHandler.WAKE_KEY),
+                SMSEncoding.getSegmentCount(SMSHandler.APP_KEY, body, SMSHandler.WAKE_KEY)
+        );
+    }
+}
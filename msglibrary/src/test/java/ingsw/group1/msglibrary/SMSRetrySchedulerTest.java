@@ -0,0 +1,115 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+@Config(sdk = Build.VERSION_CODES.P)
+@RunWith(RobolectricTestRunner.class)
+public class SMSRetrySchedulerTest {
+
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final String EX_VALID_MSG = "Wassup Mankind";
+    private static final long DELAY_MILLIS = 50;
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final int RETRYABLE = SmsManager.RESULT_ERROR_NO_SERVICE;
+
+    private RecordingResubmitter resubmitter;
+    private SMSRetryScheduler scheduler;
+
+    private static class RecordingResubmitter implements SMSRetryScheduler.Resubmitter {
+        private final List<List<OutgoingSMS>> batches = new ArrayList<>();
+        private CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public synchronized void resubmit(List<OutgoingSMS> messages) {
+            batches.add(new ArrayList<>(messages));
+            latch.countDown();
+        }
+    }
+
+    @Before
+    public void init(){
+        resubmitter = new RecordingResubmitter();
+        scheduler = new SMSRetryScheduler(resubmitter, new SendRetryPolicy(3, DELAY_MILLIS, DELAY_MILLIS));
+    }
+
+    private OutgoingSMS sms(SendHandle<SMSMessage> handle){
+        SMSMessage message = new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), EX_VALID_MSG);
+        return new OutgoingSMS(message, false, false, handle);
+    }
+
+    @Test
+    public void dueRetriesAreResubmittedTogether() throws InterruptedException{
+        assertTrue(scheduler.onSendFailed(sms(null), RETRYABLE));
+        assertTrue(scheduler.onSendFailed(sms(null), RETRYABLE));
+        assertEquals(2, scheduler.size());
+        //Both retries are due by the time the worker looks for them.
+        Thread.sleep(DELAY_MILLIS * 2);
+        scheduler.start();
+        assertTrue(resubmitter.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        synchronized (resubmitter){
+            assertEquals(1, resubmitter.batches.size());
+            assertEquals(2, resubmitter.batches.get(0).size());
+            assertEquals(2, resubmitter.batches.get(0).get(0).getAttempt());
+        }
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void retryWaitsForDelay() throws InterruptedException{
+        scheduler.start();
+        long start = System.nanoTime();
+        assertTrue(scheduler.onSendFailed(sms(null), RETRYABLE));
+        assertTrue(resubmitter.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        //The delay is at least half the nominal one, see SendRetryPolicy.
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(DELAY_MILLIS / 2));
+    }
+
+    @Test
+    public void permanentFailureIsNotRetried(){
+        assertFalse(scheduler.onSendFailed(sms(null), SmsManager.RESULT_ERROR_NULL_PDU));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void shutdownDropsWaitingRetries() throws Exception {
+        SendHandle<SMSMessage> handle = new SendHandle<>(sms(null).getTextMessage());
+        scheduler.start();
+        assertTrue(scheduler.onSendFailed(sms(handle), RETRYABLE));
+        scheduler.shutdown();
+        assertEquals(0, scheduler.size());
+        assertEquals(SendResult.RESULT_DROPPED, handle.getSent().get().getResultCode());
+    }
+
+    @Test
+    public void failureAfterShutdownIsNotRetried(){
+        scheduler.start();
+        scheduler.shutdown();
+        assertFalse(scheduler.onSendFailed(sms(null), RETRYABLE));
+        assertEquals(0, scheduler.size());
+    }
+
+    @After
+    public void stopScheduler(){
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,138 @@
+package ingsw.group1.msglibrary;
+
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+@Config(sdk = Build.VERSION_CODES.P)
+@RunWith(RobolectricTestRunner.class)
+public class SMSSendQueueTest {
+
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final int CAPACITY = 3;
+    private static final double SLOW_RATE = 0.001;
+    private static final double FAST_RATE = 10000;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private RecordingSender sender;
+    private SMSSendQueue queue;
+
+    private static class RecordingSender implements SMSSendQueue.Sender {
+        private final List<String> sent = new ArrayList<>();
+        private CountDownLatch latch = new CountDownLatch(0);
+
+        @Override
+        public synchronized void send(OutgoingSMS sms) {
+            sent.add(sms.getBody());
+            latch.countDown();
+        }
+    }
+
+    @Before
+    public void init(){
+        sender = new RecordingSender();
+    }
+
+    private OutgoingSMS sms(int index){
+        return new OutgoingSMS(new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), String.valueOf(index)), false);
+    }
+
+    @Test
+    public void enqueueDoesNotWaitForSending(){
+        queue = new SMSSendQueue(sender, CAPACITY, SendOverflowPolicy.REJECT_NEW,
+                new TokenBucket(SLOW_RATE, 1));
+        for(int i = 0; i < CAPACITY; i++)
+            assertTrue(queue.enqueue(sms(i)));
+        assertEquals(CAPACITY, queue.size());
+    }
+
+    @Test
+    public void fullQueueRejectsNew(){
+        queue = new SMSSendQueue(sender, CAPACITY, SendOverflowPolicy.REJECT_NEW,
+                new TokenBucket(SLOW_RATE, 1));
+        for(int i = 0; i < CAPACITY; i++) queue.enqueue(sms(i));
+        assertFalse(queue.enqueue(sms(CAPACITY)));
+        assertEquals(CAPACITY, queue.size());
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    @Test
+    public void fullQueueDropsOldest() throws InterruptedException{
+        sender.latch = new CountDownLatch(CAPACITY);
+        queue = new SMSSendQueue(sender, CAPACITY, SendOverflowPolicy.DROP_OLDEST,
+                new TokenBucket(FAST_RATE, CAPACITY));
+        for(int i = 0; i <= CAPACITY; i++) assertTrue(queue.enqueue(sms(i)));
+        assertEquals(1, queue.getDroppedCount());
+        queue.start();
+        assertTrue(sender.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        synchronized (sender){
+            assertEquals("1", sender.sent.get(0));
+            assertEquals(String.valueOf(CAPACITY), sender.sent.get(CAPACITY - 1));
+        }
+    }
+
+    @Test
+    public void workerSendsInOrder() throws InterruptedException{
+        int howMany = 50;
+        sender.latch = new CountDownLatch(howMany);
+        queue = new SMSSendQueue(sender, howMany, SendOverflowPolicy.REJECT_NEW,
+                new TokenBucket(FAST_RATE, howMany));
+        queue.start();
+        for(int i = 0; i < howMany; i++) queue.enqueue(sms(i));
+        assertTrue(sender.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        synchronized (sender){
+            for(int i = 0; i < howMany; i++)
+                assertEquals(String.valueOf(i), sender.sent.get(i));
+        }
+    }
+
+    @Test
+    public void rateLimitHoldsMessages() throws InterruptedException{
+        sender.latch = new CountDownLatch(1);
+        queue = new SMSSendQueue(sender, CAPACITY, SendOverflowPolicy.REJECT_NEW,
+                new TokenBucket(SLOW_RATE, 1));
+        queue.start();
+        queue.enqueue(sms(0));
+        queue.enqueue(sms(1));
+        assertTrue(sender.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        synchronized (sender){
+            assertEquals(1, sender.sent.size());
+        }
+    }
+
+    @Test
+    public void shutdownQueueRejectsNew() throws Exception {
+        queue = new SMSSendQueue(sender, CAPACITY, SendOverflowPolicy.DROP_OLDEST,
+                new TokenBucket(FAST_RATE, CAPACITY));
+        queue.start();
+        queue.shutdown();
+        SMSMessage message = new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), EX_VALID_ADDRESS);
+        SendHandle<SMSMessage> handle = new SendHandle<>(message);
+        assertFalse(queue.enqueue(new OutgoingSMS(message, false, false, handle)));
+        assertEquals(0, queue.size());
+        assertEquals(SendResult.RESULT_REJECTED, handle.getSent().get().getResultCode());
+    }
+
+    @After
+    public void stopQueue(){
+        if(queue != null) queue.shutdown();
+    }
+}
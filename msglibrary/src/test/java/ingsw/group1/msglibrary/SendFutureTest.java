@@ -0,0 +1,91 @@
+package ingsw.group1.msglibrary;
+
+import android.app.Activity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SendFutureTest {
+
+    private static final long SHORT_TIMEOUT_MILLIS = 10;
+
+    private SendFuture future;
+    private SendResult received;
+
+    @Before
+    public void init(){
+        future = new SendFuture();
+        received = null;
+    }
+
+    private SendResult result(int resultCode){
+        return new SendResult(resultCode, System.nanoTime(), 0);
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void getTimesOut() throws Exception{
+        future.get(SHORT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void completeIsVisibleToGet() throws Exception{
+        SendResult result = result(Activity.RESULT_OK);
+        assertTrue(future.complete(result));
+        assertTrue(future.isDone());
+        assertSame(result, future.get(SHORT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(future.get().isSuccessful());
+    }
+
+    @Test
+    public void onlyFirstCompletionCounts() throws Exception{
+        SendResult first = result(Activity.RESULT_OK);
+        future.complete(first);
+        assertFalse(future.complete(result(SendResult.RESULT_DROPPED)));
+        assertSame(first, future.get());
+    }
+
+    @Test
+    public void callbackIsNotifiedOnCompletion(){
+        future.addCallback(new SendFuture.Callback() {
+            @Override
+            public void onComplete(SendResult result) {
+                received = result;
+            }
+        });
+        assertNull(received);
+        future.complete(result(SendResult.RESULT_REJECTED));
+        assertEquals(SendResult.RESULT_REJECTED, received.getResultCode());
+    }
+
+    @Test
+    public void callbackOnCompletedFutureIsImmediate(){
+        future.complete(result(SendResult.RESULT_REJECTED));
+        future.addCallback(new SendFuture.Callback() {
+            @Override
+            public void onComplete(SendResult result) {
+                received = result;
+            }
+        });
+        assertEquals(SendResult.RESULT_REJECTED, received.getResultCode());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledFutureThrows() throws Exception{
+        assertTrue(future.cancel(false));
+        assertFalse(future.complete(result(Activity.RESULT_OK)));
+        future.get();
+    }
+}
@@ -0,0 +1,70 @@
+package ingsw.group1.msglibrary;
+
+import android.telephony.SmsManager;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SendRetryPolicyTest {
+
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 5000;
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final SendRetryPolicy policy = new SendRetryPolicy(MAX_ATTEMPTS, BASE_DELAY, MAX_DELAY);
+    private final Random random = new Random();
+
+    @Test
+    public void temporaryFailuresAreRetryable(){
+        assertTrue(SendRetryPolicy.isRetryable(SmsManager.RESULT_ERROR_RADIO_OFF));
+        assertTrue(SendRetryPolicy.isRetryable(SmsManager.RESULT_ERROR_NO_SERVICE));
+        assertTrue(SendRetryPolicy.isRetryable(SmsManager.RESULT_ERROR_GENERIC_FAILURE));
+    }
+
+    @Test
+    public void permanentFailuresAreNotRetryable(){
+        assertFalse(SendRetryPolicy.isRetryable(SmsManager.RESULT_ERROR_NULL_PDU));
+        assertFalse(SendRetryPolicy.isRetryable(SendResult.RESULT_REJECTED));
+    }
+
+    @Test
+    public void attemptsAreCapped(){
+        assertTrue(policy.shouldRetry(SmsManager.RESULT_ERROR_NO_SERVICE, MAX_ATTEMPTS - 1));
+        assertFalse(policy.shouldRetry(SmsManager.RESULT_ERROR_NO_SERVICE, MAX_ATTEMPTS));
+    }
+
+    @Test
+    public void noRetryNeverRetries(){
+        assertFalse(SendRetryPolicy.NO_RETRY.allowsRetries());
+        assertFalse(SendRetryPolicy.NO_RETRY.shouldRetry(SmsManager.RESULT_ERROR_NO_SERVICE, 1));
+    }
+
+    @Test
+    public void delayGrowsWithinBounds(){
+        for(int attempt = 1; attempt <= 10; attempt++){
+            long expected = Math.min(MAX_DELAY, BASE_DELAY << (attempt - 1));
+            for(int i = 0; i < 100; i++){
+                long delay = policy.getDelayMillis(attempt, random);
+                assertTrue(delay >= expected / 2);
+                assertTrue(delay <= expected);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidAttemptsFail(){
+        new SendRetryPolicy(0, BASE_DELAY, MAX_DELAY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDelaysFail(){
+        new SendRetryPolicy(MAX_ATTEMPTS, MAX_DELAY, BASE_DELAY);
+    }
+}
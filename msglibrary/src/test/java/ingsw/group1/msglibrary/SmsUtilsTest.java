@@ -0,0 +1,89 @@
+package ingsw.group1.msglibrary;
+
+import android.content.Intent;
+import android.os.Build;
+import android.provider.Telephony;
+import android.telephony.SmsMessage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Riccardo De Zen
+ */
+@Config(sdk = Build.VERSION_CODES.P)
+@RunWith(RobolectricTestRunner.class)
+public class SmsUtilsTest {
+
+    private static final String EX_VALID_ADDRESS = "+39892424";
+    private static final String EX_VALID_MSG = "Wassup Mankind";
+    private static final long EX_TIMESTAMP = 1575000000000L;
+    private static final String FIRST_PART = SMSHandler.APP_KEY + "Wassup ";
+    private static final String SECOND_PART = "Mankind";
+
+    /**
+     * Builds a received Intent carrying the given PDUs, as the system delivers them.
+     */
+    private static SmsMessage[] fromIntent(byte[]... pdus){
+        Intent intent = new Intent(Telephony.Sms.Intents.SMS_RECEIVED_ACTION);
+        intent.putExtra("pdus", (Object[]) pdus);
+        intent.putExtra("format", SmsMessage.FORMAT_3GPP);
+        return Telephony.Sms.Intents.getMessagesFromIntent(intent);
+    }
+
+    @Test
+    public void multipartMessageIsJoined(){
+        SMSMessage[] messages = SmsUtils.assemblePertinentMessages(fromIntent(
+                PduScreenTest.gsm7Pdu(FIRST_PART, PduScreenTest.FIRST_PART_HEADER),
+                PduScreenTest.gsm7Pdu(SECOND_PART, PduScreenTest.SECOND_PART_HEADER)
+        ));
+        assertEquals(1, messages.length);
+        assertEquals(FIRST_PART + SECOND_PART, messages[0].getData());
+        assertEquals("+398924244", messages[0].getPeer().getAddress());
+    }
+
+    @Test
+    public void foreignMultipartMessageIsSkipped(){
+        SMSMessage[] messages = SmsUtils.assemblePertinentMessages(fromIntent(
+                PduScreenTest.gsm7Pdu(SECOND_PART, PduScreenTest.FIRST_PART_HEADER),
+                PduScreenTest.gsm7Pdu(FIRST_PART, PduScreenTest.SECOND_PART_HEADER)
+        ));
+        assertEquals(0, messages.length);
+    }
+
+    @Test
+    public void singlePartMessageIsKept(){
+        SMSMessage[] messages = SmsUtils.assemblePertinentMessages(fromIntent(
+                PduScreenTest.gsm7Pdu(FIRST_PART + SECOND_PART)
+        ));
+        assertEquals(1, messages.length);
+        assertEquals(FIRST_PART + SECOND_PART, messages[0].getData());
+    }
+
+    @Test
+    public void receivedMessagesSurviveIntent(){
+        SMSMessage[] messages = {
+                new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), EX_VALID_MSG, EX_TIMESTAMP, false),
+                new SMSMessage(new SMSPeer(EX_VALID_ADDRESS), EX_VALID_MSG + "!", EX_TIMESTAMP + 1, true)
+        };
+        SMSMessage[] received = SmsUtils.getReceivedMessages(
+                SmsUtils.putReceivedMessages(new Intent(), messages)
+        );
+        assertEquals(messages.length, received.length);
+        for(int i = 0; i < messages.length; i++){
+            assertEquals(messages[i].getPeer(), received[i].getPeer());
+            assertEquals(messages[i].getData(), received[i].getData());
+            assertEquals(messages[i].getReceivedAt(), received[i].getReceivedAt());
+            assertEquals(messages[i].isPriority(), received[i].isPriority());
+        }
+    }
+
+    @Test
+    public void intentWithoutMessagesIsEmpty(){
+        assertEquals(0, SmsUtils.getReceivedMessages(new Intent()).length);
+    }
+}
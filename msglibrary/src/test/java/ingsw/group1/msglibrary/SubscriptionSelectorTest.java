@@ -0,0 +1,76 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class SubscriptionSelectorTest {
+
+    private static final int FIRST_SIM = 1;
+    private static final int SECOND_SIM = 2;
+    private static final int SELECTIONS = 10000;
+
+    private SubscriptionSelector selector;
+
+    @Before
+    public void init(){
+        selector = new SubscriptionSelector(new Random(42));
+        selector.setSubscriptions(new int[]{FIRST_SIM, SECOND_SIM});
+    }
+
+    private int countSelections(int subscriptionId){
+        int count = 0;
+        for(int i = 0; i < SELECTIONS; i++)
+            if(selector.select() == subscriptionId) count++;
+        return count;
+    }
+
+    @Test
+    public void noSubscriptions(){
+        selector.setSubscriptions(new int[0]);
+        assertEquals(SubscriptionSelector.NO_SUBSCRIPTION, selector.select());
+    }
+
+    @Test
+    public void healthySubscriptionsShareTraffic(){
+        int first = countSelections(FIRST_SIM);
+        assertTrue(first > SELECTIONS * 0.4 && first < SELECTIONS * 0.6);
+    }
+
+    @Test
+    public void failingSubscriptionGetsLessTraffic(){
+        for(int i = 0; i < 10; i++) selector.onSendResult(FIRST_SIM, false);
+        assertTrue(selector.getWeight(FIRST_SIM) < selector.getWeight(SECOND_SIM));
+        assertTrue(countSelections(FIRST_SIM) < SELECTIONS * 0.3);
+    }
+
+    @Test
+    public void failingSubscriptionIsStillProbed(){
+        for(int i = 0; i < 100; i++) selector.onSendResult(FIRST_SIM, false);
+        assertTrue(countSelections(FIRST_SIM) > 0);
+    }
+
+    @Test
+    public void slowSubscriptionGetsLessTraffic(){
+        for(int i = 0; i < 10; i++){
+            selector.onDelivered(FIRST_SIM, 60000);
+            selector.onDelivered(SECOND_SIM, 1000);
+        }
+        assertTrue(countSelections(FIRST_SIM) < SELECTIONS * 0.3);
+    }
+
+    @Test
+    public void statsSurviveRefresh(){
+        for(int i = 0; i < 10; i++) selector.onSendResult(FIRST_SIM, false);
+        double weight = selector.getWeight(FIRST_SIM);
+        selector.setSubscriptions(new int[]{SECOND_SIM, FIRST_SIM});
+        assertEquals(weight, selector.getWeight(FIRST_SIM), 0);
+    }
+}
@@ -0,0 +1,62 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class TokenBucketTest {
+
+    private static final double SLOW_RATE = 0.001;
+    private static final double FAST_RATE = 1000;
+    //One token every 50 milliseconds.
+    private static final double REFILL_RATE = 20;
+    private static final int BURST = 3;
+
+    @Test
+    public void burstIsAvailableImmediately(){
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, BURST);
+        for(int i = 0; i < BURST; i++)
+            assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void emptyBucketRefusesTokens(){
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, BURST);
+        for(int i = 0; i < BURST; i++) bucket.tryAcquire();
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void acquireWaitsForRefill() throws InterruptedException{
+        TokenBucket bucket = new TokenBucket(REFILL_RATE, 1);
+        long start = System.nanoTime();
+        bucket.acquire();
+        bucket.acquire();
+        long refillNanos = (long) (TimeUnit.SECONDS.toNanos(1) / REFILL_RATE);
+        assertTrue(System.nanoTime() - start >= refillNanos);
+    }
+
+    @Test
+    public void lowerBurstDiscardsTokens(){
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, BURST);
+        bucket.setRate(SLOW_RATE, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRateFails(){
+        new TokenBucket(0, BURST);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBurstFails(){
+        new TokenBucket(FAST_RATE, 0);
+    }
+}
@@ -0,0 +1,149 @@
+package ingsw.group1.msglibrary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class TopicRouterTest {
+
+    private static final String KEY = SMSHandler.APP_KEY;
+    private TopicRouter<String> router;
+    private List<String> notified;
+    private ListenerRegistry.Action<String> collect;
+
+    @Before
+    public void createRouter(){
+        router = new TopicRouter<>();
+        notified = new ArrayList<>();
+        collect = new ListenerRegistry.Action<String>() {
+            @Override
+            public void run(String listener) {
+                notified.add(listener);
+            }
+        };
+    }
+
+    /**
+     * @return the listeners notified for the given text.
+     */
+    private List<String> match(String text){
+        assertEquals(router.forEach(text, KEY.length(), collect), notified.size());
+        List<String> matched = new ArrayList<>(notified);
+        notified.clear();
+        return matched;
+    }
+
+    @Test
+    public void emptyRouterMatchesNothing(){
+        assertTrue(router.isEmpty());
+        assertFalse(router.hasLiveListeners());
+        assertTrue(match(KEY + "chat:hello").isEmpty());
+    }
+
+    @Test
+    public void topicIsMatched(){
+        router.add("chat:", "chat");
+        router.add("loc:", "location");
+        assertEquals(Collections.singletonList("chat"), match(KEY + "chat:hello"));
+        assertEquals(Collections.singletonList("location"), match(KEY + "loc:45,11"));
+    }
+
+    @Test
+    public void longestTopicWins(){
+        router.add("chat", "chat");
+        router.add("chat:group", "group");
+        assertEquals(Collections.singletonList("group"), match(KEY + "chat:group:hi"));
+        assertEquals(Collections.singletonList("chat"), match(KEY + "chat:hi"));
+    }
+
+    @Test
+    public void unmatchedTextMatchesNothing(){
+        router.add("chat:", "chat");
+        assertTrue(match(KEY + "cha").isEmpty());
+        assertTrue(match(KEY + "other").isEmpty());
+    }
+
+    @Test
+    public void allListenersOfTopicMatch(){
+        router.add("chat:", "first");
+        router.add("chat:", "second");
+        assertFalse(router.add("chat:", "second"));
+        assertEquals(Arrays.asList("first", "second"), match(KEY + "chat:hi"));
+    }
+
+    @Test
+    public void removedListenerIsNotMatched(){
+        router.add("chat:", "chat");
+        assertTrue(router.remove("chat:", "chat"));
+        assertFalse(router.remove("chat:", "chat"));
+        assertTrue(router.isEmpty());
+        assertTrue(match(KEY + "chat:hi").isEmpty());
+    }
+
+    @Test
+    public void clearRemovesSubscriptions(){
+        router.add("chat:", "first");
+        router.add("chat:", "second");
+        router.add("loc:", "location");
+        router.clear();
+        assertTrue(router.isEmpty());
+        assertTrue(match(KEY + "chat:hi").isEmpty());
+    }
+
+    @Test
+    public void listenerIsNotifiedOnItsExecutor(){
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor queueing = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        router.add("chat:", "chat", false, queueing);
+        assertEquals(1, router.forEach(KEY + "chat:hi", KEY.length(), collect));
+        assertTrue(notified.isEmpty());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Collections.singletonList("chat"), notified);
+    }
+
+    @Test
+    public void collectedTopicFallsBackToShorterOne() throws InterruptedException{
+        router.add("chat", "chat");
+        router.add("chat:group", new String("group"), true, null);
+        for(int i = 0; i < 50 && match(KEY + "chat:group:hi").contains("group"); i++){
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("chat"), match(KEY + "chat:group:hi"));
+        assertTrue(router.hasLiveListeners());
+    }
+
+    @Test
+    public void collectedListenersAreNotLive() throws InterruptedException{
+        router.add("chat:", new String("chat"), true, null);
+        for(int i = 0; i < 50 && router.hasLiveListeners(); i++){
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(router.hasLiveListeners());
+        assertTrue(match(KEY + "chat:hi").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTopicFails(){
+        router.add("", "listener");
+    }
+}
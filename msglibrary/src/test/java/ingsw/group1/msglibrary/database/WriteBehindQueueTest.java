@@ -0,0 +1,121 @@
+package ingsw.group1.msglibrary.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Riccardo De Zen
+ */
+public class WriteBehindQueueTest {
+
+    private static final long LONG_DELAY_MILLIS = 60000;
+
+    private List<List<Integer>> batches;
+    private WriteBehindQueue<Integer> queue;
+
+    @Before
+    public void createQueue(){
+        batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        queue = new WriteBehindQueue<>(new WriteBehindQueue.Writer<Integer>() {
+            @Override
+            public void write(List<Integer> batch) {
+                batches.add(batch);
+            }
+        }, 3, LONG_DELAY_MILLIS);
+    }
+
+    @After
+    public void closeQueue(){
+        queue.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchThrows(){
+        queue.setBatch(0, 0);
+    }
+
+    @Test
+    public void writesAreCoalesced(){
+        queue.enqueue(new Integer[]{1}, null);
+        queue.enqueue(new Integer[]{2}, null);
+        assertTrue(batches.isEmpty());
+        assertEquals(2, queue.size());
+        queue.flush();
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void fullBatchIsWrittenWithoutDelay() throws InterruptedException{
+        final CountDownLatch written = new CountDownLatch(1);
+        queue.enqueue(new Integer[]{1, 2, 3}, new WriteCallback() {
+            @Override
+            public void onWriteFinished(boolean successful) {
+                if(successful) written.countDown();
+            }
+        });
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(3, batches.get(0).size());
+    }
+
+    @Test
+    public void delayedBatchIsWritten() throws InterruptedException{
+        final CountDownLatch written = new CountDownLatch(1);
+        queue.setBatch(100, 10);
+        queue.enqueue(new Integer[]{1}, new WriteCallback() {
+            @Override
+            public void onWriteFinished(boolean successful) {
+                written.countDown();
+            }
+        });
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedWriteIsReported(){
+        WriteBehindQueue<Integer> failing = new WriteBehindQueue<>(new WriteBehindQueue.Writer<Integer>() {
+            @Override
+            public void write(List<Integer> batch) {
+                throw new IllegalStateException();
+            }
+        }, 3, LONG_DELAY_MILLIS);
+        final boolean[] result = {true};
+        failing.enqueue(new Integer[]{1}, new WriteCallback() {
+            @Override
+            public void onWriteFinished(boolean successful) {
+                result[0] = successful;
+            }
+        });
+        failing.close();
+        assertFalse(result[0]);
+    }
+
+    @Test
+    public void closedQueueRefuses(){
+        queue.enqueue(new Integer[]{1}, null);
+        queue.close();
+        assertEquals(1, batches.size());
+        assertFalse(queue.enqueue(new Integer[]{2}, null));
+    }
+
+    @Test
+    public void closeDoesNotWaitForDelay(){
+        queue.enqueue(new Integer[]{1}, null);
+        long start = System.nanoTime();
+        queue.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, batches.size());
+    }
+}